@@ -16,10 +16,15 @@
  */
 package be.nbb.cli.util;
 
+import be.nbb.cli.util.jaxb.JaxbCache;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheStats;
 import static com.google.common.net.MediaType.JSON_UTF_8;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -57,34 +62,44 @@ public final class BasicCliLauncher<T> {
     public void launch(@Nonnull String[] args) {
         ArgsParser<T> parser = parserSupplier.get();
         T params = null;
+        Stopwatch parsing = Stopwatch.createStarted();
         try {
             params = parser.parse(args);
         } catch (IllegalArgumentException ex) {
             System.err.println(ex.getMessage());
-            System.exit(-1);
+            exit(-1);
         }
+        long parse = parsing.elapsed(TimeUnit.NANOSECONDS);
 
         StandardOptions so = toSo.apply(params);
 
         if (so.isShowHelp()) {
             printHelp(System.out, parser);
-            System.exit(0);
+            exit(0);
         }
 
         if (so.isShowVersion()) {
             printVersion(System.out, commandSupplier.get());
-            System.exit(0);
+            exit(0);
         }
 
-        try {
-            Stopwatch stopwatch = Stopwatch.createUnstarted();
+        try (Invocation invocation = Invocation.open(so)) {
+            Metrics metrics = invocation.getMetrics();
+            metrics.add(Metrics.PARSE, parse);
             if (so.isVerbose()) {
                 printParams(params, System.err);
-                stopwatch.start();
             }
+            Stopwatch stopwatch = Stopwatch.createStarted();
             commandSupplier.get().exec(params);
+            long execution = stopwatch.elapsed(TimeUnit.NANOSECONDS);
             if (so.isVerbose()) {
-                System.err.println("Executed in " + stopwatch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+                System.err.println("Executed in " + TimeUnit.NANOSECONDS.toMillis(execution) + "ms");
+                printJaxbStats(System.err);
+            }
+            if (so.getMetricsFile().isPresent()) {
+                writeMetrics(metrics.getReport(execution), so.getMetricsFile().get());
+            } else if (so.isVerbose()) {
+                printMetrics(metrics.getReport(execution), System.err);
             }
         } catch (Exception ex) {
             if (so.isVerbose()) {
@@ -92,11 +107,18 @@ public final class BasicCliLauncher<T> {
             } else {
                 System.err.println(ex.getMessage());
             }
-            System.exit(-1);
+            exit(-1);
         }
     }
 
     //<editor-fold defaultstate="collapsed" desc="Internal implementation">
+    private static void exit(int status) {
+        if (CommandDaemon.isServing() || CommandPipeline.isRunning()) {
+            throw new CommandDaemon.ExitException(status);
+        }
+        System.exit(status);
+    }
+
     private static <T> void printHelp(@Nonnull PrintStream stream, @Nonnull ArgsParser<T> parser) {
         parser.printHelp(stream);
     }
@@ -105,6 +127,24 @@ public final class BasicCliLauncher<T> {
         Utils.printVersion(command.getClass(), stream);
     }
 
+    private static void printJaxbStats(@Nonnull PrintStream stream) {
+        CacheStats stats = JaxbCache.getStats();
+        if (stats.requestCount() > 0) {
+            stream.println("JAXB contexts: " + stats.hitCount() + " hits, " + stats.missCount() + " misses");
+        }
+    }
+
+    private static void printMetrics(@Nonnull Metrics.Report report, @Nonnull PrintStream stream) throws IOException {
+        SerializerFactory.of(JSON_UTF_8, Metrics.Report.class, true).serialize(report, stream);
+        stream.println();
+    }
+
+    private static void writeMetrics(@Nonnull Metrics.Report report, @Nonnull File file) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file.toPath())) {
+            SerializerFactory.of(JSON_UTF_8, Metrics.Report.class, true).serialize(report, stream);
+        }
+    }
+
     private static <T> void printParams(@Nonnull T params, @Nonnull PrintStream stream) {
         Serializer serializer = SerializerFactory.of(JSON_UTF_8, params.getClass(), true);
         try {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import javax.annotation.Nonnull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Thin client that forwards a command line to a running {@link CommandDaemon}.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+public class CommandClient {
+
+    /**
+     * Checks if the client mode has been requested through system properties.
+     *
+     * @return
+     */
+    public static boolean isEnabled() {
+        return System.getProperty(DaemonProtocol.PORT_PROPERTY) != null;
+    }
+
+    /**
+     * Forwards the arguments and the standard streams to the daemon.
+     *
+     * @param args
+     * @return the exit status of the command
+     * @throws ConnectException if no daemon is listening, if its token is not
+     * available or if it runs in another working directory; nothing has been
+     * read from stdin then
+     * @throws IOException if the daemon cannot be reached
+     */
+    public static int forward(@Nonnull String[] args) throws IOException {
+        return forward(DaemonProtocol.getPort(), args, System.in, System.out, System.err);
+    }
+
+    public static int forward(int port, @Nonnull String[] args, @Nonnull InputStream stdin, @Nonnull OutputStream stdout, @Nonnull OutputStream stderr) throws IOException {
+        return forward(port, DaemonProtocol.getWorkingDir(), args, stdin, stdout, stderr);
+    }
+
+    static int forward(int port, Path workingDir, String[] args, InputStream stdin, OutputStream stdout, OutputStream stderr) throws IOException {
+        byte[] token;
+        try {
+            token = DaemonProtocol.readTokenFile(DaemonProtocol.getTokenFile(port));
+        } catch (NoSuchFileException ex) {
+            throw new ConnectException("No daemon token found for port " + port);
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            DaemonProtocol.writeToken(output, token);
+            DaemonProtocol.writeWorkingDir(output, workingDir);
+            DaemonProtocol.writeArgs(output, args);
+
+            byte channel = input.readByte();
+            if (channel == DaemonProtocol.REFUSED) {
+                throw new ConnectException("The daemon on port " + port + " runs in another working directory");
+            }
+            if (channel == DaemonProtocol.ACCEPTED) {
+                Thread pump = new Thread(() -> {
+                    try {
+                        DaemonProtocol.pumpStdin(stdin, output);
+                    } catch (IOException ex) {
+                        // the daemon closed the connection before reading stdin
+                    }
+                }, "dem-stdin");
+                pump.setDaemon(true);
+                pump.start();
+                channel = input.readByte();
+            }
+
+            byte[] buffer = new byte[DaemonProtocol.CHUNK_SIZE];
+            while (channel != DaemonProtocol.EXIT) {
+                OutputStream target = channel == DaemonProtocol.STDOUT ? stdout : stderr;
+                int remaining = input.readInt();
+                while (remaining > 0) {
+                    int n = input.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (n == -1) {
+                        throw new IOException("Unexpected end of response");
+                    }
+                    target.write(buffer, 0, n);
+                    remaining -= n;
+                }
+                if (channel == DaemonProtocol.STDERR) {
+                    stderr.flush();
+                }
+                channel = input.readByte();
+            }
+            stdout.flush();
+            stderr.flush();
+            return input.readInt();
+        }
+    }
+}
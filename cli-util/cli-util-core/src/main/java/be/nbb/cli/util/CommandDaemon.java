@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Long-lived server that executes commands of a registry on behalf of
+ * {@link CommandClient}, avoiding the JVM startup and warm-up cost of each
+ * invocation.
+ * <p>
+ * The daemon only listens on the loopback interface and only accepts requests
+ * that carry the token it writes at startup in a file readable by its owner
+ * only, so that other local users cannot run commands with its rights. It
+ * refuses requests of clients that run in another working directory since it
+ * would resolve their relative paths against its own.
+ * Requests are executed one at a time, even across daemons of the same
+ * process, since commands use the process-wide standard streams.
+ *
+ * @author Philippe Charles
+ */
+public final class CommandDaemon implements Closeable {
+
+    @Nonnull
+    public static CommandDaemon open(@Nonnull CommandRegistry registry, @Nonnegative int port) throws IOException {
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        try {
+            byte[] token = DaemonProtocol.newToken();
+            Path tokenFile = DaemonProtocol.getTokenFile(server.getLocalPort());
+            DaemonProtocol.writeTokenFile(tokenFile, token);
+            return new CommandDaemon(registry, server, token, tokenFile);
+        } catch (IOException | RuntimeException ex) {
+            server.close();
+            throw ex;
+        }
+    }
+
+    @Nonnull
+    public static CommandDaemon open(@Nonnull CommandRegistry registry) throws IOException {
+        return open(registry, DaemonProtocol.getPort());
+    }
+
+    private final CommandRegistry registry;
+    private final ServerSocket server;
+    private final byte[] token;
+    private final Path tokenFile;
+
+    private CommandDaemon(CommandRegistry registry, ServerSocket server, byte[] token, Path tokenFile) {
+        this.registry = registry;
+        this.server = server;
+        this.token = token;
+        this.tokenFile = tokenFile;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Serves requests until this daemon is closed. A failing command or a
+     * broken connection only ends the request of its client.
+     *
+     * @throws IOException if the daemon can no longer accept connections
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException ex) {
+                if (!server.isClosed()) {
+                    throw ex;
+                }
+                continue;
+            }
+            try (Socket o = socket) {
+                handle(o);
+            } catch (IOException ex) {
+                // the client went away; serve the next one
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+        } finally {
+            Files.deleteIfExists(tokenFile);
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final ThreadLocal<Boolean> SERVING = ThreadLocal.withInitial(() -> false);
+    private static final Object STREAMS = new Object();
+    private static final int DRAIN_TIMEOUT = 1000;
+
+    static boolean isServing() {
+        return SERVING.get();
+    }
+
+    static final class ExitException extends RuntimeException {
+
+        private final int status;
+
+        ExitException(int status) {
+            super(null, null, false, false);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (DaemonProtocol.checkToken(input, token)) {
+            Path workingDir = DaemonProtocol.readWorkingDir(input);
+            String[] args = DaemonProtocol.readArgs(input);
+            if (DaemonProtocol.isSameDir(workingDir, DaemonProtocol.getWorkingDir())) {
+                DaemonProtocol.writeReply(output, DaemonProtocol.ACCEPTED);
+                int status;
+                synchronized (STREAMS) {
+                    status = exec(args, input, output);
+                }
+                DaemonProtocol.writeExit(output, status);
+            } else {
+                DaemonProtocol.writeReply(output, DaemonProtocol.REFUSED);
+            }
+        } else {
+            byte[] message = "Invalid daemon token\n".getBytes(StandardCharsets.UTF_8);
+            DaemonProtocol.writeFrame(output, DaemonProtocol.STDERR, message, 0, message.length);
+            DaemonProtocol.writeExit(output, -1);
+        }
+
+        socket.shutdownOutput();
+        drain(socket, input);
+    }
+
+    private int exec(String[] args, DataInputStream input, DataOutputStream output) {
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDOUT), DaemonProtocol.CHUNK_SIZE), false);
+        PrintStream err = new PrintStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDERR), true);
+
+        int status = 0;
+        System.setIn(new DaemonProtocol.ChunkedInputStream(input));
+        System.setOut(out);
+        System.setErr(err);
+        SERVING.set(true);
+        try {
+            registry.exec(args);
+        } catch (ExitException ex) {
+            status = ex.status;
+        } catch (Throwable ex) {
+            err.println(ex.getMessage() != null ? ex.getMessage() : ex.toString());
+            status = -1;
+        } finally {
+            SERVING.set(false);
+            out.flush();
+            err.flush();
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+        return status;
+    }
+
+    /**
+     * Reads what is left of the request (unread stdin) until the client closes
+     * the connection, so that closing the socket does not reset it before the
+     * client has read the exit frame.
+     */
+    private static void drain(Socket socket, InputStream input) throws IOException {
+        socket.setSoTimeout(DRAIN_TIMEOUT);
+        byte[] buffer = new byte[DaemonProtocol.CHUNK_SIZE];
+        try {
+            while (input.read(buffer) != -1) {
+                // discard
+            }
+        } catch (SocketTimeoutException ex) {
+            // the client keeps its side open; give up
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import com.google.common.net.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.Value;
+import org.openide.util.NbBundle;
+
+/**
+ * Runs a chain of commands of a registry in a single process, each stage
+ * feeding the next one through a bounded in-memory channel instead of the
+ * standard streams.
+ * <p>
+ * Stages are separated by {@link #SEPARATOR} and are started together. A
+ * value written through {@link OutputOptions#write(Class, Object)} is handed
+ * as is to the {@link InputOptions#read(Class)} of the next stage, so that
+ * nothing is serialized between stages that agree on the type. Such a value
+ * is a whole collection: the next stage waits until the previous one has
+ * produced all of it, so these stages actually run one after another. Only
+ * raw streams opened by streaming commands are exchanged in chunks, and only
+ * stages exchanging them overlap. The first stage reads the standard input
+ * and the last one writes the standard output, unless files are specified.
+ *
+ * @author Philippe Charles
+ */
+@NbBundle.Messages({
+    "# {0} - app name",
+    "commandPipeline.usage=usage: {0} pipe <command> [<args>] ! <command> [<args>] ...\n",
+    "# {0} - app name",
+    "# {1} - command name",
+    "commandPipeline.invalid={0}: ''{1}'' is not a valid command.\n",
+    "commandPipeline.noInput=No input from the previous stage",
+    "commandPipeline.aborted=Aborted after a failure of the previous stage"
+})
+public final class CommandPipeline {
+
+    public static final String SEPARATOR = "!";
+
+    /**
+     * Splits a command line into the arguments of each stage.
+     *
+     * @param args
+     * @return
+     */
+    @Nonnull
+    public static List<String[]> split(@Nonnull String[] args) {
+        List<String[]> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= args.length; i++) {
+            if (i == args.length || SEPARATOR.equals(args[i])) {
+                result.add(Arrays.copyOfRange(args, start, i));
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executes the stages of a command line and waits for all of them.
+     *
+     * @param registry
+     * @param args
+     * @return the exit status of the first failing stage, or 0
+     */
+    public static int exec(@Nonnull CommandRegistry registry, @Nonnull String[] args) {
+        List<String[]> stages = split(args);
+        if (stages.stream().anyMatch(o -> o.length == 0)) {
+            System.err.println(Bundle.commandPipeline_usage(registry.getName()));
+            return -1;
+        }
+
+        List<Command> commands = new ArrayList<>();
+        for (String[] stage : stages) {
+            Optional<? extends Command> command = registry.getCommands().stream().filter(o -> o.getName().equals(stage[0])).findFirst();
+            if (!command.isPresent()) {
+                System.err.println(Bundle.commandPipeline_invalid(registry.getName(), stage[0]));
+                return -1;
+            }
+            commands.add(command.get());
+        }
+
+        int n = stages.size();
+        Channel[] channels = new Channel[n + 1];
+        for (int i = 1; i < n; i++) {
+            channels[i] = new Channel(CAPACITY);
+        }
+        int[] status = new int[n];
+        Thread[] threads = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            String[] stage = stages.get(i);
+            threads[i] = new Thread(() -> status[index] = run(commands.get(index), Arrays.copyOfRange(stage, 1, stage.length), channels[index], channels[index + 1]), "pipe-" + stage[0]);
+            threads[i].start();
+        }
+        try {
+            for (Thread o : threads) {
+                o.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        return Arrays.stream(status).filter(o -> o != 0).findFirst().orElse(0);
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int CAPACITY = 16;
+    private static final int CHUNK_SIZE = 65536;
+    private static final long POLL_MILLIS = 100;
+
+    private static final ThreadLocal<Boolean> RUNNING = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Channel> INPUT = new ThreadLocal<>();
+    private static final ThreadLocal<Channel> OUTPUT = new ThreadLocal<>();
+
+    static boolean isRunning() {
+        return RUNNING.get();
+    }
+
+    @Nullable
+    static Channel getInput() {
+        return INPUT.get();
+    }
+
+    @Nullable
+    static Channel getOutput() {
+        return OUTPUT.get();
+    }
+
+    private static int run(Command command, String[] args, Channel input, Channel output) {
+        RUNNING.set(true);
+        INPUT.set(input);
+        OUTPUT.set(output);
+        // failed until proven otherwise so that errors abort the next stage
+        int status = -1;
+        try {
+            command.exec(args);
+            status = 0;
+        } catch (CommandDaemon.ExitException ex) {
+            status = ex.getStatus();
+        } catch (Throwable ex) {
+            // errors of a command are reported by its launcher; this one is unexpected
+            ex.printStackTrace(System.err);
+        } finally {
+            if (input != null) {
+                input.abandon();
+            }
+            if (output != null) {
+                output.close(status != 0);
+            }
+            RUNNING.remove();
+            INPUT.remove();
+            OUTPUT.remove();
+        }
+        return status;
+    }
+
+    @Value
+    private static class Item<X> {
+
+        Class<X> clazz;
+        X value;
+    }
+
+    /**
+     * Bounded queue of values or chunks of bytes between two stages. The
+     * producer blocks when the consumer lags behind and its writes are dropped
+     * once the consumer is done.
+     */
+    static final class Channel {
+
+        private static final Object END = new Object();
+        private static final Object FAILED = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private volatile boolean abandoned;
+
+        Channel(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        <X> void write(Class<X> clazz, X value) throws IOException {
+            put(new Item<>(clazz, value));
+        }
+
+        OutputStream openOutputStream() {
+            return new ChunkOutputStream();
+        }
+
+        <X> X read(Class<X> clazz, MediaType mediaType) throws IOException {
+            Object first = take();
+            if (first instanceof Item && clazz.isInstance(((Item<?>) first).getValue())) {
+                return clazz.cast(((Item<?>) first).getValue());
+            }
+            return SerializerFactory.of(mediaType, clazz, false).deserialize(toStream(first, mediaType));
+        }
+
+        InputStream openInputStream(MediaType mediaType) throws IOException {
+            return toStream(take(), mediaType);
+        }
+
+        void abandon() {
+            abandoned = true;
+            queue.clear();
+        }
+
+        void close(boolean failed) {
+            try {
+                put(failed ? FAILED : END);
+            } catch (InterruptedIOException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void put(Object item) throws InterruptedIOException {
+            try {
+                while (!abandoned && !queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // wait for the consumer
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        private Object take() throws IOException {
+            Object result;
+            try {
+                result = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (result == FAILED) {
+                throw new IOException(Bundle.commandPipeline_aborted());
+            }
+            return result;
+        }
+
+        private InputStream toStream(Object first, MediaType mediaType) throws IOException {
+            if (first == END) {
+                throw new EOFException(Bundle.commandPipeline_noInput());
+            }
+            if (first instanceof Item) {
+                return new ByteArrayInputStream(serialize((Item<?>) first, mediaType));
+            }
+            return new ChunkInputStream((byte[]) first);
+        }
+
+        private static <X> byte[] serialize(Item<X> item, MediaType mediaType) throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            SerializerFactory.of(mediaType, item.getClazz(), false).serialize(item.getValue(), result);
+            return result.toByteArray();
+        }
+
+        private final class ChunkOutputStream extends OutputStream {
+
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+            private int count = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == buffer.length) {
+                    drain();
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (count == buffer.length) {
+                        drain();
+                    }
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (count > 0) {
+                    drain();
+                }
+            }
+
+            private void drain() throws IOException {
+                put(Arrays.copyOf(buffer, count));
+                count = 0;
+            }
+        }
+
+        private final class ChunkInputStream extends InputStream {
+
+            private byte[] chunk;
+            private int pos;
+            private boolean eof;
+
+            ChunkInputStream(byte[] first) {
+                this.chunk = first;
+                this.pos = 0;
+                this.eof = false;
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                while (!eof && pos == chunk.length) {
+                    next();
+                }
+                if (eof) {
+                    return -1;
+                }
+                int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return eof ? 0 : chunk.length - pos;
+            }
+
+            private void next() throws IOException {
+                Object item = take();
+                if (item == END) {
+                    eof = true;
+                } else if (item instanceof byte[]) {
+                    chunk = (byte[]) item;
+                    pos = 0;
+                } else {
+                    throw new IOException("Unexpected value in a stream");
+                }
+            }
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Wire format shared by {@link CommandDaemon} and {@link CommandClient}.
+ * <p>
+ * Request: token, working directory of the client, argument count, arguments
+ * (modified UTF-8), then stdin as a sequence of length-prefixed chunks
+ * terminated by an empty chunk.<br>
+ * Response: an accepted or refused byte, then a sequence of frames (channel
+ * byte + payload) terminated by an exit frame carrying the exit status. The
+ * client only sends stdin once the request is accepted, so that a refused
+ * request can still be executed locally.
+ *
+ * @author Philippe Charles
+ */
+final class DaemonProtocol {
+
+    private DaemonProtocol() {
+        // static class
+    }
+
+    static final String PORT_PROPERTY = "dem.daemon.port";
+    static final int DEFAULT_PORT = 4747;
+
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 3;
+    static final byte ACCEPTED = 4;
+    static final byte REFUSED = 5;
+
+    static final int CHUNK_SIZE = 8192;
+    static final int TOKEN_SIZE = 32;
+
+    static int getPort() {
+        String value = System.getProperty(PORT_PROPERTY);
+        return value != null ? Integer.parseInt(value) : DEFAULT_PORT;
+    }
+
+    /**
+     * File holding the token of the daemon listening on a port, in the home
+     * directory of the user.
+     */
+    @Nonnull
+    static Path getTokenFile(@Nonnegative int port) {
+        return Paths.get(System.getProperty("user.home"), ".dem", "daemon-" + port + ".token");
+    }
+
+    @Nonnull
+    static byte[] newToken() {
+        byte[] result = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(result);
+        return result;
+    }
+
+    static void writeTokenFile(@Nonnull Path file, @Nonnull byte[] token) throws IOException {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(file.getParent(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Files.deleteIfExists(file);
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, token, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    @Nonnull
+    static byte[] readTokenFile(@Nonnull Path file) throws IOException {
+        return Files.readAllBytes(file);
+    }
+
+    static void writeToken(@Nonnull DataOutputStream output, @Nonnull byte[] token) throws IOException {
+        output.writeInt(token.length);
+        output.write(token);
+    }
+
+    /**
+     * Reads the token of a request and compares it in constant time.
+     */
+    static boolean checkToken(@Nonnull DataInputStream input, @Nonnull byte[] expected) throws IOException {
+        int length = input.readInt();
+        if (length != expected.length) {
+            return false;
+        }
+        byte[] actual = new byte[length];
+        input.readFully(actual);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    static void writeWorkingDir(@Nonnull DataOutputStream output, @Nonnull Path dir) throws IOException {
+        output.writeUTF(dir.toAbsolutePath().toString());
+    }
+
+    @Nonnull
+    static Path readWorkingDir(@Nonnull DataInputStream input) throws IOException {
+        return Paths.get(input.readUTF());
+    }
+
+    @Nonnull
+    static Path getWorkingDir() {
+        return Paths.get(System.getProperty("user.dir"));
+    }
+
+    /**
+     * Checks if a command line of a client can be executed by the daemon.
+     * Relative paths are resolved against the working directory of the
+     * process, which cannot be changed, so the client and the daemon must
+     * share it.
+     */
+    static boolean isSameDir(@Nonnull Path client, @Nonnull Path daemon) {
+        try {
+            return Files.isSameFile(client, daemon);
+        } catch (IOException ex) {
+            return client.toAbsolutePath().normalize().equals(daemon.toAbsolutePath().normalize());
+        }
+    }
+
+    static void writeReply(@Nonnull DataOutputStream output, byte reply) throws IOException {
+        synchronized (output) {
+            output.writeByte(reply);
+            output.flush();
+        }
+    }
+
+    static void writeArgs(@Nonnull DataOutputStream output, @Nonnull String[] args) throws IOException {
+        output.writeInt(args.length);
+        for (String o : args) {
+            output.writeUTF(o);
+        }
+        output.flush();
+    }
+
+    @Nonnull
+    static String[] readArgs(@Nonnull DataInputStream input) throws IOException {
+        String[] result = new String[input.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = input.readUTF();
+        }
+        return result;
+    }
+
+    static void writeFrame(@Nonnull DataOutputStream output, byte channel, @Nonnull byte[] b, int off, int len) throws IOException {
+        synchronized (output) {
+            output.writeByte(channel);
+            output.writeInt(len);
+            output.write(b, off, len);
+            output.flush();
+        }
+    }
+
+    static void writeExit(@Nonnull DataOutputStream output, int status) throws IOException {
+        synchronized (output) {
+            output.writeByte(EXIT);
+            output.writeInt(status);
+            output.flush();
+        }
+    }
+
+    /**
+     * Client side: copies local stdin to the daemon as chunks.
+     */
+    static void pumpStdin(@Nonnull InputStream stdin, @Nonnull DataOutputStream output) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        int n;
+        while ((n = stdin.read(buffer)) != -1) {
+            if (n > 0) {
+                output.writeInt(n);
+                output.write(buffer, 0, n);
+                output.flush();
+            }
+        }
+        output.writeInt(0);
+        output.flush();
+    }
+
+    /**
+     * Daemon side: stdin seen by the command.
+     */
+    static final class ChunkedInputStream extends InputStream {
+
+        private final DataInputStream input;
+        private int remaining = 0;
+        private boolean eof = false;
+
+        ChunkedInputStream(DataInputStream input) {
+            this.input = input;
+        }
+
+        private boolean fill() throws IOException {
+            while (!eof && remaining == 0) {
+                remaining = input.readInt();
+                if (remaining == 0) {
+                    eof = true;
+                }
+            }
+            return !eof;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            remaining--;
+            return input.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = input.read(b, off, Math.min(len, remaining));
+            if (n == -1) {
+                throw new IOException("Unexpected end of request");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // do not close the connection
+        }
+    }
+
+    /**
+     * Daemon side: stdout/stderr seen by the command.
+     */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream output;
+        private final byte channel;
+
+        FrameOutputStream(DataOutputStream output, byte channel) {
+            this.output = output;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                writeFrame(output, channel, b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // do not close the connection
+        }
+    }
+}
@@ -16,11 +16,15 @@
  */
 package be.nbb.cli.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -52,13 +56,67 @@ public class ForkJoinTasks {
 
     @Nonnull
     public static <X, Y> List<Y> invoke(@Nonnull Function<List<X>, List<Y>> processor, @Nonnegative int threshold, @Nonnull List<X> input) {
-        if (Runtime.getRuntime().availableProcessors() == 1 || input.size() < threshold) {
+        Invocation invocation = Invocation.getCurrent();
+        if (invocation.getThreads() <= 1 || input.size() < threshold) {
             return processor.apply(input);
         }
-        ForkJoinPool pool = new ForkJoinPool();
-        List<Y> result = pool.invoke(asTask(processor, threshold, input));
-        pool.shutdown();
-        return result;
+        return invocation.getPool().invoke(asTask(processor, threshold, input));
+    }
+
+    /**
+     * Processes a sequence of unknown length on the pool of the current
+     * invocation while keeping at most four items per thread in flight.
+     * Results are handed to the consumer in input order.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param input
+     * @param processor
+     * @param output
+     */
+    public static <X, Y> void forEachOrdered(@Nonnull Iterator<X> input, @Nonnull Function<X, Y> processor, @Nonnull Consumer<Y> output) {
+        forEachOrdered(input, processor, 4 * Invocation.getCurrent().getThreads(), output);
+    }
+
+    /**
+     * Processes a sequence of unknown length on the pool of the current
+     * invocation while keeping at most <code>window</code> items in flight.
+     * Results are handed to the consumer in input order.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param input
+     * @param processor
+     * @param window
+     * @param output
+     */
+    public static <X, Y> void forEachOrdered(@Nonnull Iterator<X> input, @Nonnull Function<X, Y> processor, @Nonnegative int window, @Nonnull Consumer<Y> output) {
+        Invocation invocation = Invocation.getCurrent();
+        Metrics metrics = invocation.getMetrics();
+        Function<X, Y> timed = o -> {
+            long start = System.nanoTime();
+            try {
+                return processor.apply(o);
+            } finally {
+                metrics.recordItem(System.nanoTime() - start);
+            }
+        };
+        if (invocation.getThreads() <= 1 || window <= 1) {
+            input.forEachRemaining(o -> output.accept(timed.apply(o)));
+            return;
+        }
+        ForkJoinPool pool = invocation.getPool();
+        Deque<ForkJoinTask<Y>> pending = new ArrayDeque<>(window);
+        while (input.hasNext()) {
+            X item = input.next();
+            pending.add(pool.submit(() -> timed.apply(item)));
+            if (pending.size() >= window) {
+                output.accept(pending.poll().join());
+            }
+        }
+        while (!pending.isEmpty()) {
+            output.accept(pending.poll().join());
+        }
     }
 
     //<editor-fold defaultstate="collapsed" desc="Internal implementation">
@@ -18,7 +18,10 @@ package be.nbb.cli.util;
 
 import com.google.common.net.MediaType;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 import javax.annotation.Nonnull;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -50,13 +53,42 @@ public final class InputOptions {
     @Nonnull
     public <X> X read(@Nonnull Class<X> clazz) throws IOException {
         Serializer<X> serializer = SerializerFactory.of(mediaType, clazz, false);
-        if (getFile().isPresent()) {
-            return serializer.deserialize(getFile().get());
-        } else {
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.DESERIALIZE)) {
+            if (getFile().isPresent()) {
+                return serializer.deserialize(getFile().get());
+            }
+            CommandPipeline.Channel channel = CommandPipeline.getInput();
+            if (channel != null) {
+                return channel.read(clazz, mediaType);
+            }
             return serializer.deserialize(System.in);
         }
     }
 
+    /**
+     * Opens the raw input for streaming. Closing the returned stream does not
+     * close the standard input nor the channel of a pipeline.
+     *
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public InputStream openStream() throws IOException {
+        if (getFile().isPresent()) {
+            return new FileInputStream(getFile().get());
+        }
+        CommandPipeline.Channel channel = CommandPipeline.getInput();
+        if (channel != null) {
+            return channel.openInputStream(mediaType);
+        }
+        return new FilterInputStream(System.in) {
+            @Override
+            public void close() throws IOException {
+                // keep stdin open
+            }
+        };
+    }
+
     @XmlRootElement
     public static final class XmlBean {
 
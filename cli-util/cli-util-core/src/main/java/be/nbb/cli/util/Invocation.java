@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Settings and resources of a single command execution.
+ * <p>
+ * An invocation is opened by the launcher around the execution of a command
+ * and bound to the calling thread, so that commands running concurrently in
+ * the same process (daemon, pipeline) do not share their settings and
+ * metrics. Its worker
+ * pool is created on first use, sized by the number of threads of the
+ * invocation, and shut down when the invocation is closed. The workers of the
+ * pool are bound to the invocation too.
+ *
+ * @author Philippe Charles
+ */
+public final class Invocation implements Closeable {
+
+    /**
+     * Opens an invocation and binds it to the current thread until it is
+     * closed.
+     *
+     * @param so
+     * @return
+     */
+    @Nonnull
+    public static Invocation open(@Nonnull StandardOptions so) {
+        Invocation result = new Invocation(
+                so.getThreads() > 0 ? so.getThreads() : Runtime.getRuntime().availableProcessors(),
+                TimeUnit.SECONDS.toMillis(so.getTimeout()),
+                CURRENT.get(), null);
+        CURRENT.set(result);
+        return result;
+    }
+
+    /**
+     * Gets the invocation bound to the current thread or a default one that
+     * uses the common pool and has no time budget.
+     *
+     * @return
+     */
+    @Nonnull
+    public static Invocation getCurrent() {
+        Invocation result = CURRENT.get();
+        return result != null ? result : DEFAULT;
+    }
+
+    private final int threads;
+    private final long timeout;
+    private final Invocation previous;
+    private final Metrics metrics;
+    private ForkJoinPool pool;
+
+    private Invocation(int threads, long timeout, Invocation previous, ForkJoinPool pool) {
+        this.threads = threads;
+        this.timeout = timeout;
+        this.previous = previous;
+        this.metrics = new Metrics();
+        this.pool = pool;
+    }
+
+    /**
+     * Number of worker threads.
+     *
+     * @return
+     */
+    @Nonnegative
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Time budget of a single item in milliseconds; zero means no limit.
+     *
+     * @return
+     */
+    @Nonnegative
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Gets the timings of this invocation.
+     *
+     * @return
+     */
+    @Nonnull
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the worker pool of this invocation.
+     *
+     * @return
+     */
+    @Nonnull
+    public synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads, this::newWorker, null, false);
+        }
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (pool != null && pool != ForkJoinPool.commonPool()) {
+                pool.shutdownNow();
+            }
+        }
+        if (CURRENT.get() == this) {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+
+    private static final Invocation DEFAULT = new Invocation(ForkJoinPool.getCommonPoolParallelism(), 0, null, ForkJoinPool.commonPool());
+
+    private ForkJoinWorkerThread newWorker(ForkJoinPool owner) {
+        return new Worker(owner, this);
+    }
+
+    private static final class Worker extends ForkJoinWorkerThread {
+
+        private final Invocation invocation;
+
+        private Worker(ForkJoinPool pool, Invocation invocation) {
+            super(pool);
+            this.invocation = invocation;
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            CURRENT.set(invocation);
+        }
+    }
+    //</editor-fold>
+}
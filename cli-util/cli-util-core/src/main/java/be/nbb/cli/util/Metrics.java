@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import lombok.Value;
+
+/**
+ * Timings of a command, collected by the launcher.
+ * <p>
+ * Phases are accumulated by name; the input and output helpers record the
+ * deserialize, serialize and write phases and the launcher derives the compute
+ * phase from the remaining execution time. Per-item durations are reported by
+ * batch processing through {@link #recordItem(long)}.
+ * <p>
+ * Every invocation has its own instance, available through
+ * {@link #current()}, so that commands running concurrently in the same
+ * process do not mix their timings. Item durations are kept in a fixed-size
+ * histogram with logarithmic buckets: memory does not depend on the number of
+ * items and reported percentiles are within a few percent of the exact ones.
+ *
+ * @author Philippe Charles
+ */
+public final class Metrics {
+
+    public static final String PARSE = "parse";
+    public static final String DESERIALIZE = "deserialize";
+    public static final String COMPUTE = "compute";
+    public static final String SERIALIZE = "serialize";
+    public static final String WRITE = "write";
+
+    /**
+     * Gets the metrics of the current invocation.
+     *
+     * @return
+     */
+    @Nonnull
+    public static Metrics current() {
+        return Invocation.getCurrent().getMetrics();
+    }
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private int itemCount = 0;
+    private long itemMax = 0;
+
+    /**
+     * Starts timing a phase; the duration is added when the timer is closed.
+     *
+     * @param phase
+     * @return
+     */
+    @Nonnull
+    public Timer start(@Nonnull String phase) {
+        long start = System.nanoTime();
+        return () -> add(phase, System.nanoTime() - start);
+    }
+
+    public synchronized void add(@Nonnull String phase, @Nonnegative long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Records the processing duration of a single item.
+     *
+     * @param nanos
+     */
+    public synchronized void recordItem(@Nonnegative long nanos) {
+        buckets[getBucket(nanos)]++;
+        itemCount++;
+        itemMax = Math.max(itemMax, nanos);
+    }
+
+    /**
+     * Wraps a stream so that the time spent in its write and flush operations
+     * is added to the write phase.
+     *
+     * @param stream
+     * @return
+     */
+    @Nonnull
+    public OutputStream timed(@Nonnull OutputStream stream) {
+        return new TimedOutputStream(stream, this);
+    }
+
+    /**
+     * Creates a report of the collected timings.
+     *
+     * @param execution the duration of the command execution, in nanoseconds
+     * @return
+     */
+    @Nonnull
+    public synchronized Report getReport(@Nonnegative long execution) {
+        long deserialize = phases.getOrDefault(DESERIALIZE, 0L);
+        long write = phases.getOrDefault(WRITE, 0L);
+        long serialize = Math.max(0, phases.getOrDefault(SERIALIZE, 0L) - write);
+        long compute = Math.max(0, execution - deserialize - serialize - write);
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put(PARSE, toMillis(phases.getOrDefault(PARSE, 0L)));
+        result.put(DESERIALIZE, toMillis(deserialize));
+        result.put(COMPUTE, toMillis(compute));
+        result.put(SERIALIZE, toMillis(serialize));
+        result.put(WRITE, toMillis(write));
+        phases.forEach((k, v) -> result.putIfAbsent(k, toMillis(v)));
+
+        double itemsPerSecond = compute > 0 ? itemCount / (compute / 1e9) : 0;
+        return new Report(result, itemCount, itemsPerSecond,
+                toMillis(percentile(0.5)), toMillis(percentile(0.95)),
+                toMillis(percentile(0.99)), toMillis(itemMax));
+    }
+
+    public interface Timer extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Timings of a command; durations are in milliseconds. The serialize phase
+     * excludes the time spent writing to the output. Item percentiles are
+     * estimated from a histogram while the maximum is exact.
+     */
+    @Value
+    public static class Report {
+
+        Map<String, Double> phases;
+        int items;
+        double itemsPerSecond;
+        double p50;
+        double p95;
+        double p99;
+        double max;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    /**
+     * Buckets per doubling of the duration; the relative error of a percentile
+     * is at most 2^(1/16)-1, about 4.4%.
+     */
+    private static final int BUCKETS_PER_OCTAVE = 16;
+    private static final int BUCKET_COUNT = Long.SIZE * BUCKETS_PER_OCTAVE;
+
+    private static int getBucket(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        int result = (int) (Math.log(nanos) / Math.log(2) * BUCKETS_PER_OCTAVE);
+        return Math.max(0, Math.min(BUCKET_COUNT - 1, result));
+    }
+
+    private long percentile(double p) {
+        if (itemCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * itemCount));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulated += buckets[i];
+            if (cumulated >= rank) {
+                // geometric middle of the bucket, bounded by the exact maximum
+                long value = (long) Math.pow(2, (i + 0.5) / BUCKETS_PER_OCTAVE);
+                return Math.min(value, itemMax);
+            }
+        }
+        return itemMax;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class TimedOutputStream extends FilterOutputStream {
+
+        private final Metrics metrics;
+
+        private TimedOutputStream(OutputStream out, Metrics metrics) {
+            super(out);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            metrics.add(WRITE, System.nanoTime() - start);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            metrics.add(WRITE, System.nanoTime() - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            metrics.add(WRITE, System.nanoTime() - start);
+        }
+    }
+    //</editor-fold>
+}
@@ -18,7 +18,10 @@ package be.nbb.cli.util;
 
 import com.google.common.net.MediaType;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Optional;
 import javax.annotation.Nonnull;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -50,12 +53,45 @@ public final class OutputOptions {
 
     @Nonnull
     public <X> void write(@Nonnull Class<X> clazz, @Nonnull X value) throws IOException {
+        CommandPipeline.Channel channel = CommandPipeline.getOutput();
+        if (!getFile().isPresent() && channel != null) {
+            channel.write(clazz, value);
+            return;
+        }
         Serializer<X> serializer = SerializerFactory.of(getMediaType(), clazz, isFormatted());
+        Metrics metrics = Metrics.current();
+        try (Metrics.Timer timer = metrics.start(Metrics.SERIALIZE); OutputStream stream = metrics.timed(openStream())) {
+            serializer.serialize(value, stream);
+        }
+    }
+
+    /**
+     * Opens the raw output for streaming. Closing the returned stream only
+     * flushes the standard output.
+     *
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public OutputStream openStream() throws IOException {
         if (getFile().isPresent()) {
-            serializer.serialize(value, getFile().get());
-        } else {
-            serializer.serialize(value, System.out);
+            return new FileOutputStream(getFile().get());
+        }
+        CommandPipeline.Channel channel = CommandPipeline.getOutput();
+        if (channel != null) {
+            return channel.openOutputStream();
         }
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
     }
 
     @XmlRootElement
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import com.google.common.net.MediaType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.Value;
+import org.openide.util.Lookup;
+
+/**
+ * Resolution cache of {@link SerializerFactory#of}; avoids scanning the
+ * lookup on every call.
+ *
+ * @author Philippe Charles
+ */
+final class SerializerFactories {
+
+    private SerializerFactories() {
+        // static class
+    }
+
+    @Nullable
+    static SerializerFactory find(@Nonnull MediaType mediaType, @Nonnull Class<?> type) {
+        return CACHE.computeIfAbsent(new Key(mediaType, type), SerializerFactories::lookup);
+    }
+
+    private static final ConcurrentMap<Key, SerializerFactory> CACHE = new ConcurrentHashMap<>();
+
+    private static SerializerFactory lookup(Key key) {
+        return Lookup.getDefault().lookupAll(SerializerFactory.class).stream()
+                .filter(o -> o.canHandle(key.getMediaType(), key.getType()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Value
+    private static class Key {
+
+        MediaType mediaType;
+        Class<?> type;
+    }
+}
@@ -18,7 +18,6 @@ package be.nbb.cli.util;
 
 import com.google.common.net.MediaType;
 import javax.annotation.Nonnull;
-import org.openide.util.Lookup;
 
 /**
  *
@@ -34,10 +33,10 @@ public interface SerializerFactory {
 
     @Nonnull
     public static <X> Serializer<X> of(@Nonnull MediaType mediaType, @Nonnull Class<X> type, boolean formattedOutput) {
-        return Lookup.getDefault().lookupAll(SerializerFactory.class).stream()
-                .filter(o -> o.canHandle(mediaType, type))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Don't know how to handle media type '" + mediaType + "' for class '" + type.getName() + "'"))
-                .create(type, formattedOutput);
+        SerializerFactory factory = SerializerFactories.find(mediaType, type);
+        if (factory == null) {
+            throw new IllegalArgumentException("Don't know how to handle media type '" + mediaType + "' for class '" + type.getName() + "'");
+        }
+        return factory.create(type, formattedOutput);
     }
 }
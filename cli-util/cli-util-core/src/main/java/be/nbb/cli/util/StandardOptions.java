@@ -16,6 +16,9 @@
  */
 package be.nbb.cli.util;
 
+import java.io.File;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
@@ -23,10 +26,27 @@ import lombok.Data;
  * @author Philippe Charles
  */
 @Data
+@AllArgsConstructor
 public final class StandardOptions {
 
     private final boolean showHelp;
     private final boolean showVersion;
     private final boolean verbose;
+    /**
+     * Number of worker threads; zero means default.
+     */
+    private final int threads;
+    /**
+     * Time budget of a single item in seconds; zero means no limit.
+     */
+    private final int timeout;
+    /**
+     * Optional file that receives the timing metrics of the command.
+     */
+    private final Optional<File> metricsFile;
+
+    public StandardOptions(boolean showHelp, boolean showVersion, boolean verbose) {
+        this(showHelp, showVersion, verbose, 0, 0, Optional.empty());
+    }
 
 }
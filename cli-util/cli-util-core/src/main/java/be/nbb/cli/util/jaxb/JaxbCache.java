@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util.jaxb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nonnull;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Bounded cache of JAXB contexts by bound class.
+ * <p>
+ * Contexts are thread-safe and shared. Marshallers and unmarshallers are not,
+ * so one instance per thread and per context is kept. Their event handler,
+ * listener, schema and attachment handler are reset on each request, but
+ * adapters are not; they must not be retained beyond the current operation.
+ * The instances of a thread are weakly bound to the cache entry of their
+ * context so that they are released once the context has been evicted.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+public class JaxbCache {
+
+    @Nonnull
+    public static JAXBContext getContext(@Nonnull Class<?> type) throws JAXBException {
+        return getEntry(type).context;
+    }
+
+    @Nonnull
+    public static Marshaller getMarshaller(@Nonnull Class<?> type, boolean formattedOutput) throws JAXBException {
+        Entry entry = getEntry(type);
+        Map<Entry, Marshaller> marshallers = MARSHALLERS.get();
+        Marshaller result = marshallers.get(entry);
+        if (result == null) {
+            result = entry.context.createMarshaller();
+            marshallers.put(entry, result);
+        }
+        result.setEventHandler(null);
+        result.setListener(null);
+        result.setSchema(null);
+        result.setAttachmentMarshaller(null);
+        result.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+        result.setProperty(Marshaller.JAXB_FRAGMENT, false);
+        return result;
+    }
+
+    @Nonnull
+    public static Unmarshaller getUnmarshaller(@Nonnull Class<?> type) throws JAXBException {
+        Entry entry = getEntry(type);
+        Map<Entry, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller result = unmarshallers.get(entry);
+        if (result == null) {
+            result = entry.context.createUnmarshaller();
+            unmarshallers.put(entry, result);
+        }
+        result.setEventHandler(null);
+        result.setListener(null);
+        result.setSchema(null);
+        result.setAttachmentUnmarshaller(null);
+        return result;
+    }
+
+    /**
+     * Gets the hit/miss counters of the context cache.
+     *
+     * @return
+     */
+    @Nonnull
+    public static CacheStats getStats() {
+        return CONTEXTS.stats();
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int MAX_CONTEXTS = 64;
+
+    private static final ThreadLocal<Map<Entry, Marshaller>> MARSHALLERS = ThreadLocal.withInitial(WeakHashMap::new);
+    private static final ThreadLocal<Map<Entry, Unmarshaller>> UNMARSHALLERS = ThreadLocal.withInitial(WeakHashMap::new);
+
+    private static final Cache<Class<?>, Entry> CONTEXTS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CONTEXTS)
+            .recordStats()
+            .<Class<?>, Entry>removalListener(o -> {
+                // the other threads release theirs when the entry is collected
+                MARSHALLERS.get().remove(o.getValue());
+                UNMARSHALLERS.get().remove(o.getValue());
+            })
+            .build();
+
+    private static Entry getEntry(Class<?> type) throws JAXBException {
+        try {
+            return CONTEXTS.get(type, () -> new Entry(JAXBContext.newInstance(type)));
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JAXBException) {
+                throw (JAXBException) ex.getCause();
+            }
+            throw new JAXBException(ex.getCause());
+        }
+    }
+
+    /**
+     * Key of the per-thread instances; compared by identity.
+     */
+    private static final class Entry {
+
+        private final JAXBContext context;
+
+        private Entry(JAXBContext context) {
+            this.context = context;
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util.jaxb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Pull reader that unmarshals the items of a JAXB collection one at a time
+ * instead of loading the whole document in memory.
+ * <p>
+ * Items are the direct children of the root element whose local name is the
+ * specified item name; deeper elements with the same name are part of their
+ * enclosing element. The content that precedes the first item is kept aside
+ * and can be unmarshalled as an empty collection with
+ * {@link #getHeader(java.lang.Class)}.
+ *
+ * @author Philippe Charles
+ * @param <T>
+ */
+public final class XmlItemReader<T> implements Closeable, Iterable<T> {
+
+    @Nonnull
+    public static <T> XmlItemReader<T> of(@Nonnull InputStream stream, @Nonnull Class<T> itemType, @Nonnull String itemName) throws IOException {
+        try {
+            XMLEventReader events = newInputFactory().createXMLEventReader(stream);
+            XmlItemReader<T> result = new XmlItemReader<>(stream, events, JaxbCache.getContext(itemType).createUnmarshaller(), itemType, itemName);
+            result.readHeader();
+            return result;
+        } catch (JAXBException | XMLStreamException ex) {
+            stream.close();
+            throw new IOException(ex);
+        }
+    }
+
+    private final InputStream stream;
+    private final XMLEventReader events;
+    private final Unmarshaller unmarshaller;
+    private final Class<T> itemType;
+    private final String itemName;
+    private String header;
+    private int depth;
+
+    private XmlItemReader(InputStream stream, XMLEventReader events, Unmarshaller unmarshaller, Class<T> itemType, String itemName) {
+        this.stream = stream;
+        this.events = events;
+        this.unmarshaller = unmarshaller;
+        this.itemType = itemType;
+        this.itemName = itemName;
+    }
+
+    /**
+     * Unmarshals the content preceding the first item.
+     *
+     * @param <C>
+     * @param collectionType
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public <C> C getHeader(@Nonnull Class<C> collectionType) throws IOException {
+        try {
+            return JaxbCache.getUnmarshaller(collectionType)
+                    .unmarshal(newInputFactory().createXMLEventReader(new StringReader(header)), collectionType)
+                    .getValue();
+        } catch (JAXBException | XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Reads the next item.
+     *
+     * @return an item or null if the end of the collection has been reached
+     * @throws IOException
+     */
+    @Nullable
+    public T next() throws IOException {
+        try {
+            while (events.hasNext()) {
+                XMLEvent event = events.peek();
+                if (isItem(event)) {
+                    return unmarshaller.unmarshal(events, itemType).getValue();
+                }
+                track(events.nextEvent());
+            }
+            return null;
+        } catch (JAXBException | XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Iterates over the remaining items. I/O errors are reported as
+     * {@link UncheckedIOException}.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private T next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = XmlItemReader.this.next();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            events.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            stream.close();
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory result = XMLInputFactory.newFactory();
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return result;
+    }
+
+    private boolean isItem(XMLEvent event) {
+        return depth == 1 && event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(itemName);
+    }
+
+    private void track(XMLEvent event) {
+        if (event.isStartElement()) {
+            depth++;
+        } else if (event.isEndElement()) {
+            depth--;
+        }
+    }
+
+    private void readHeader() throws XMLStreamException {
+        List<XMLEvent> head = new ArrayList<>();
+        Deque<StartElement> open = new ArrayDeque<>();
+        while (events.hasNext() && !isItem(events.peek())) {
+            XMLEvent event = events.nextEvent();
+            track(event);
+            if (event.isStartElement()) {
+                open.push(event.asStartElement());
+            } else if (event.isEndElement()) {
+                open.pop();
+            }
+            head.add(event);
+        }
+
+        XMLEventFactory factory = XMLEventFactory.newFactory();
+        StringWriter result = new StringWriter();
+        XMLEventWriter writer = XMLOutputFactory.newFactory().createXMLEventWriter(result);
+        for (XMLEvent o : head) {
+            if (!o.isStartDocument() && !o.isEndDocument()) {
+                writer.add(o);
+            }
+        }
+        while (!open.isEmpty()) {
+            writer.add(factory.createEndElement(open.pop().getName(), null));
+        }
+        writer.close();
+        header = result.toString();
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util.jaxb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Push writer that marshals the items of a JAXB collection one at a time
+ * instead of building the whole object graph first.
+ * <p>
+ * The enclosing document is obtained by marshalling a prototype of the
+ * collection that contains a single placeholder item, a direct child of the
+ * root element; the placeholder is then replaced by the written items.
+ *
+ * @author Philippe Charles
+ * @param <T>
+ */
+public final class XmlItemWriter<T> implements Closeable {
+
+    @Nonnull
+    public static <T> XmlItemWriter<T> of(@Nonnull OutputStream stream, @Nonnull Object prototype, @Nonnull Class<T> itemType, @Nonnull String itemName) throws IOException {
+        try {
+            XMLEventWriter events = XMLOutputFactory.newFactory().createXMLEventWriter(stream, "UTF-8");
+            Marshaller marshaller = JaxbCache.getContext(itemType).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            XmlItemWriter<T> result = new XmlItemWriter<>(stream, events, marshaller, itemType);
+            result.writeHeader(prototype, itemName);
+            return result;
+        } catch (JAXBException | XMLStreamException ex) {
+            stream.close();
+            throw new IOException(ex);
+        }
+    }
+
+    private final OutputStream stream;
+    private final XMLEventWriter events;
+    private final Marshaller marshaller;
+    private final Class<T> itemType;
+    private final List<XMLEvent> tail;
+    private QName itemQName;
+
+    private XmlItemWriter(OutputStream stream, XMLEventWriter events, Marshaller marshaller, Class<T> itemType) {
+        this.stream = stream;
+        this.events = events;
+        this.marshaller = marshaller;
+        this.itemType = itemType;
+        this.tail = new ArrayList<>();
+    }
+
+    public void write(@Nonnull T item) throws IOException {
+        try {
+            marshaller.marshal(new JAXBElement<>(itemQName, itemType, item), events);
+        } catch (JAXBException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (XMLEvent o : tail) {
+                events.add(o);
+            }
+            events.flush();
+            events.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            stream.close();
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private void writeHeader(Object prototype, String itemName) throws JAXBException, XMLStreamException, IOException {
+        StringWriter document = new StringWriter();
+        JaxbCache.getMarshaller(prototype.getClass(), false).marshal(prototype, document);
+
+        XMLEventReader reader = XMLInputFactory.newFactory().createXMLEventReader(new StringReader(document.toString()));
+        int depth = 0;
+        int placeholderDepth = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (placeholderDepth > 0) {
+                if (event.isStartElement()) {
+                    placeholderDepth++;
+                } else if (event.isEndElement()) {
+                    placeholderDepth--;
+                }
+            } else if (itemQName == null && depth == 1 && event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(itemName)) {
+                itemQName = event.asStartElement().getName();
+                placeholderDepth = 1;
+            } else {
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+                if (itemQName == null) {
+                    events.add(event);
+                } else {
+                    tail.add(event);
+                }
+            }
+        }
+        reader.close();
+
+        if (itemQName == null) {
+            throw new IOException("Placeholder item '" + itemName + "' not found in prototype");
+        }
+    }
+    //</editor-fold>
+}
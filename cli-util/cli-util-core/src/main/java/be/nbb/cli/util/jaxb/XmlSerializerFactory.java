@@ -23,7 +23,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -44,8 +43,9 @@ public final class XmlSerializerFactory implements SerializerFactory {
     @Override
     public <X> Serializer<X> create(Class<X> type, boolean formattedOutput) {
         try {
-            JAXBContext context = JAXBContext.newInstance(type);
-            return new JaxbSerializer(context, formattedOutput);
+            // fails early on invalid bindings
+            JaxbCache.getContext(type);
+            return new JaxbSerializer(type, formattedOutput);
         } catch (JAXBException ex) {
             throw new RuntimeException(ex);
         }
@@ -54,22 +54,20 @@ public final class XmlSerializerFactory implements SerializerFactory {
     //<editor-fold defaultstate="collapsed" desc="Implementation details">
     private static final class JaxbSerializer<X> implements Serializer<X> {
 
-        private final JAXBContext context;
+        private final Class<X> type;
         private final boolean formattedOutput;
 
-        public JaxbSerializer(JAXBContext context, boolean formattedOutput) {
-            this.context = context;
+        public JaxbSerializer(Class<X> type, boolean formattedOutput) {
+            this.type = type;
             this.formattedOutput = formattedOutput;
         }
 
         private Marshaller getMarshaller() throws JAXBException {
-            Marshaller result = context.createMarshaller();
-            result.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
-            return result;
+            return JaxbCache.getMarshaller(type, formattedOutput);
         }
 
         private Unmarshaller getUnmarshaller() throws JAXBException {
-            return context.createUnmarshaller();
+            return JaxbCache.getUnmarshaller(type);
         }
 
         @Override
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class CommandPipelineTest {
+
+    @Test
+    public void testSplit() {
+        assertEquals(1, CommandPipeline.split(new String[0]).size());
+        assertArrayEquals(new String[]{"ts2sa", "-o", "x.xml"}, CommandPipeline.split(new String[]{"ts2sa", "-o", "x.xml"}).get(0));
+        assertEquals(3, CommandPipeline.split(new String[]{"a", "!", "b", "-x", "!", "c"}).size());
+        assertArrayEquals(new String[]{"b", "-x"}, CommandPipeline.split(new String[]{"a", "!", "b", "-x", "!", "c"}).get(1));
+    }
+
+    @Test
+    public void testValues() {
+        StringBuilder value = new StringBuilder("hello");
+        AtomicReference<StringBuilder> result = new AtomicReference<>();
+        CommandRegistry registry = registry(
+                command("produce", () -> OUTPUT.write(StringBuilder.class, value)),
+                command("append", () -> OUTPUT.write(StringBuilder.class, INPUT.read(StringBuilder.class).append("!"))),
+                command("consume", () -> result.set(INPUT.read(StringBuilder.class))));
+
+        assertEquals(0, CommandPipeline.exec(registry, new String[]{"produce", "!", "append", "!", "append", "!", "consume"}));
+        assertSame(value, result.get());
+        assertEquals("hello!!", result.get().toString());
+    }
+
+    @Test
+    public void testStreams() {
+        AtomicReference<Long> result = new AtomicReference<>();
+        CommandRegistry registry = registry(
+                command("produce", () -> {
+                    try (OutputStream stream = OUTPUT.openStream()) {
+                        for (int i = 0; i < 300000; i++) {
+                            stream.write(i);
+                        }
+                    }
+                }),
+                command("consume", () -> {
+                    try (InputStream stream = INPUT.openStream()) {
+                        long count = 0;
+                        while (stream.read() != -1) {
+                            count++;
+                        }
+                        result.set(count);
+                    }
+                }));
+
+        assertEquals(0, CommandPipeline.exec(registry, new String[]{"produce", "!", "consume"}));
+        assertEquals(300000L, result.get().longValue());
+    }
+
+    @Test
+    public void testFailure() {
+        CommandRegistry registry = registry(
+                command("fail", () -> {
+                    throw new CommandDaemon.ExitException(-2);
+                }),
+                command("consume", () -> INPUT.read(StringBuilder.class)));
+
+        assertEquals(-2, CommandPipeline.exec(registry, new String[]{"fail", "!", "consume"}));
+        assertEquals(-1, CommandPipeline.exec(registry, new String[]{"fail", "!", "missing"}));
+        assertEquals(-1, CommandPipeline.exec(registry, new String[]{"fail", "!", "!", "consume"}));
+    }
+
+    @Test
+    public void testError() {
+        AtomicReference<Boolean> reached = new AtomicReference<>(false);
+        CommandRegistry registry = registry(
+                command("fail", () -> {
+                    throw new StackOverflowError();
+                }),
+                command("consume", () -> {
+                    INPUT.read(StringBuilder.class);
+                    reached.set(true);
+                }));
+
+        assertEquals(-1, CommandPipeline.exec(registry, new String[]{"fail", "!", "consume"}));
+        assertFalse(reached.get());
+    }
+
+    @Test
+    public void testInvocations() {
+        int[] threads = new int[2];
+        Metrics[] metrics = new Metrics[2];
+        CommandRegistry registry = registry(
+                command("first", () -> {
+                    try (Invocation o = Invocation.open(new StandardOptions(false, false, false, 1, 0, Optional.empty()))) {
+                        threads[0] = Invocation.getCurrent().getThreads();
+                        metrics[0] = Metrics.current();
+                        OUTPUT.write(StringBuilder.class, new StringBuilder());
+                    }
+                }),
+                command("second", () -> {
+                    try (Invocation o = Invocation.open(new StandardOptions(false, false, false, 3, 0, Optional.empty()))) {
+                        INPUT.read(StringBuilder.class);
+                        threads[1] = Invocation.getCurrent().getThreads();
+                        metrics[1] = Metrics.current();
+                    }
+                }));
+
+        assertEquals(0, CommandPipeline.exec(registry, new String[]{"first", "!", "second"}));
+        assertArrayEquals(new int[]{1, 3}, threads);
+        assertNotSame(metrics[0], metrics[1]);
+    }
+
+    private static final InputOptions INPUT = InputOptions.create(Optional.empty(), Optional.empty());
+    private static final OutputOptions OUTPUT = OutputOptions.create(Optional.empty(), Optional.empty(), false);
+
+    private interface Body {
+
+        void exec() throws IOException;
+    }
+
+    private static Command command(String name, Body body) {
+        return new Command() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void exec(String[] args) {
+                try {
+                    body.exec();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+    }
+
+    private static CommandRegistry registry(Command... commands) {
+        return CommandRegistry.builder().name("test").commands(Arrays.asList(commands)).build();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DaemonProtocolTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testRequest() throws IOException {
+        byte[] token = DaemonProtocol.newToken();
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(request);
+        DaemonProtocol.writeToken(output, token);
+        DaemonProtocol.writeWorkingDir(output, temp.getRoot().toPath());
+        DaemonProtocol.writeArgs(output, new String[]{"ts2sa", "-o", "é.xml"});
+        DaemonProtocol.pumpStdin(new ByteArrayInputStream("hello".getBytes(UTF_8)), output);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(request.toByteArray()));
+        assertTrue(DaemonProtocol.checkToken(input, token));
+        assertEquals(temp.getRoot().toPath().toAbsolutePath(), DaemonProtocol.readWorkingDir(input));
+        assertArrayEquals(new String[]{"ts2sa", "-o", "é.xml"}, DaemonProtocol.readArgs(input));
+        assertEquals("hello", readAll(new DaemonProtocol.ChunkedInputStream(input)));
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void testResponse() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(response);
+        new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDOUT).write("out".getBytes(UTF_8));
+        new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.STDERR).write("err".getBytes(UTF_8));
+        DaemonProtocol.writeExit(output, -1);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+        assertEquals(DaemonProtocol.STDOUT, input.readByte());
+        assertEquals(3, input.readInt());
+        input.skipBytes(3);
+        assertEquals(DaemonProtocol.STDERR, input.readByte());
+        assertEquals(3, input.readInt());
+        input.skipBytes(3);
+        assertEquals(DaemonProtocol.EXIT, input.readByte());
+        assertEquals(-1, input.readInt());
+    }
+
+    @Test
+    public void testWorkingDir() throws IOException {
+        Path dir = temp.newFolder("work").toPath();
+        assertTrue(DaemonProtocol.isSameDir(dir, dir.resolve("sub").resolve("..")));
+        assertTrue(DaemonProtocol.isSameDir(dir, temp.getRoot().toPath().resolve("work")));
+        assertFalse(DaemonProtocol.isSameDir(dir, temp.getRoot().toPath()));
+        assertFalse(DaemonProtocol.isSameDir(dir.resolve("missing"), dir));
+    }
+
+    @Test
+    public void testToken() throws IOException {
+        byte[] token = DaemonProtocol.newToken();
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DaemonProtocol.writeToken(new DataOutputStream(request), token);
+
+        byte[] other = token.clone();
+        other[0]++;
+        assertFalse(DaemonProtocol.checkToken(new DataInputStream(new ByteArrayInputStream(request.toByteArray())), other));
+        assertFalse(DaemonProtocol.checkToken(new DataInputStream(new ByteArrayInputStream(request.toByteArray())), new byte[1]));
+
+        Path file = temp.getRoot().toPath().resolve("dem").resolve("daemon.token");
+        DaemonProtocol.writeTokenFile(file, token);
+        assertArrayEquals(token, DaemonProtocol.readTokenFile(file));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+    }
+
+    private static String readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[2];
+        int n;
+        while ((n = stream.read(buffer)) != -1) {
+            result.write(buffer, 0, n);
+        }
+        return new String(result.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class MetricsTest {
+
+    @Test
+    public void testReport() {
+        Metrics metrics = new Metrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordItem(i * 1_000_000L);
+        }
+        metrics.add(Metrics.DESERIALIZE, 100_000_000L);
+        metrics.add(Metrics.SERIALIZE, 300_000_000L);
+        metrics.add(Metrics.WRITE, 200_000_000L);
+
+        Metrics.Report report = metrics.getReport(1_400_000_000L);
+        assertEquals(100, report.getItems());
+        assertEquals(50, report.getP50(), 50 * TOLERANCE);
+        assertEquals(95, report.getP95(), 95 * TOLERANCE);
+        assertEquals(99, report.getP99(), 99 * TOLERANCE);
+        assertEquals(100, report.getMax(), 0);
+        assertEquals(100, report.getPhases().get(Metrics.DESERIALIZE), 0);
+        assertEquals(100, report.getPhases().get(Metrics.SERIALIZE), 0);
+        assertEquals(200, report.getPhases().get(Metrics.WRITE), 0);
+        assertEquals(1000, report.getPhases().get(Metrics.COMPUTE), 0);
+        assertEquals(100, report.getItemsPerSecond(), 1e-9);
+
+        assertEquals(0, new Metrics().getReport(0).getItems());
+    }
+
+    @Test
+    public void testHistogram() {
+        Random random = new Random(0);
+        long[] values = new long[100_000];
+        Metrics metrics = new Metrics();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextGaussian() * 2) * 1_000_000L);
+            metrics.recordItem(values[i]);
+        }
+        Arrays.sort(values);
+
+        Metrics.Report report = metrics.getReport(0);
+        assertEquals(values.length, report.getItems());
+        assertEquals(values[49_999] / 1e6, report.getP50(), values[49_999] / 1e6 * TOLERANCE);
+        assertEquals(values[94_999] / 1e6, report.getP95(), values[94_999] / 1e6 * TOLERANCE);
+        assertEquals(values[98_999] / 1e6, report.getP99(), values[98_999] / 1e6 * TOLERANCE);
+        assertEquals(values[values.length - 1] / 1e6, report.getMax(), 0);
+    }
+
+    @Test
+    public void testCurrent() throws Exception {
+        Metrics outer = Metrics.current();
+        try (Invocation invocation = Invocation.open(new StandardOptions(false, false, false))) {
+            assertSame(invocation.getMetrics(), Metrics.current());
+            assertNotSame(outer, Metrics.current());
+            invocation.getPool().submit(() -> assertSame(invocation.getMetrics(), Metrics.current())).get();
+        }
+        assertSame(outer, Metrics.current());
+    }
+
+    private static final double TOLERANCE = 0.045;
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class XmlItemReaderTest {
+
+    @Test
+    public void testEmptyCollection() throws IOException {
+        for (String xml : new String[]{"<collection name=\"empty\"/>", "<collection name=\"empty\">\n</collection>"}) {
+            try (XmlItemReader<XmlItem> reader = read(xml)) {
+                XmlCollection header = reader.getHeader(XmlCollection.class);
+                assertEquals("empty", header.name);
+                assertTrue(header.items.isEmpty());
+                assertNull(reader.next());
+            }
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<collection name=\"col\" source=\"src\">\n"
+                + "  <info><ts>first</ts></info>\n"
+                + "  <ts name=\"a\"/>\n"
+                + "</collection>";
+        try (XmlItemReader<XmlItem> reader = read(xml)) {
+            XmlCollection header = reader.getHeader(XmlCollection.class);
+            assertEquals("col", header.name);
+            assertEquals("src", header.source);
+            assertEquals("first", header.info.ts);
+            assertTrue(header.items.isEmpty());
+            assertEquals("a", reader.next().name);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testNestedItemName() throws IOException {
+        String xml = "<collection name=\"col\">\n"
+                + "  <info><ts>first</ts></info>\n"
+                + "  <ts name=\"a\"><ts name=\"a1\"/></ts>\n"
+                + "  <ts name=\"b\"/>\n"
+                + "  <info><ts>last</ts></info>\n"
+                + "</collection>";
+        try (XmlItemReader<XmlItem> reader = read(xml)) {
+            assertEquals("first", reader.getHeader(XmlCollection.class).info.ts);
+            List<XmlItem> items = new ArrayList<>();
+            reader.forEach(items::add);
+            assertEquals(2, items.size());
+            assertEquals("a", items.get(0).name);
+            assertEquals("a1", items.get(0).child.name);
+            assertEquals("b", items.get(1).name);
+            assertNull(items.get(1).child);
+        }
+    }
+
+    static XmlItemReader<XmlItem> read(String xml) throws IOException {
+        return XmlItemReader.of(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), XmlItem.class, "ts");
+    }
+
+    @XmlRootElement(name = "collection")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class XmlCollection {
+
+        @XmlAttribute
+        public String name;
+        @XmlAttribute
+        public String source;
+        @XmlElement
+        public XmlInfo info;
+        @XmlElement(name = "ts")
+        public List<XmlItem> items = new ArrayList<>();
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class XmlInfo {
+
+        @XmlElement
+        public String ts;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class XmlItem {
+
+        @XmlAttribute
+        public String name;
+        @XmlElement(name = "ts")
+        public XmlItem child;
+    }
+}
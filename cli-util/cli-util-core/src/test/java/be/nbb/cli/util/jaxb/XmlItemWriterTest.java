@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.cli.util.jaxb;
+
+import be.nbb.cli.util.jaxb.XmlItemReaderTest.XmlCollection;
+import be.nbb.cli.util.jaxb.XmlItemReaderTest.XmlInfo;
+import be.nbb.cli.util.jaxb.XmlItemReaderTest.XmlItem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class XmlItemWriterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (XmlItemWriter<XmlItem> writer = XmlItemWriter.of(output, newPrototype(), XmlItem.class, "ts")) {
+            writer.write(newItem("a", newItem("a1", null)));
+            writer.write(newItem("b", null));
+        }
+
+        try (XmlItemReader<XmlItem> reader = XmlItemReaderTest.read(output.toString(StandardCharsets.UTF_8.name()))) {
+            XmlCollection header = reader.getHeader(XmlCollection.class);
+            assertEquals("col", header.name);
+            assertEquals("src", header.source);
+            assertEquals("first", header.info.ts);
+            assertTrue(header.items.isEmpty());
+
+            List<XmlItem> items = new ArrayList<>();
+            reader.forEach(items::add);
+            assertEquals(2, items.size());
+            assertEquals("a", items.get(0).name);
+            assertEquals("a1", items.get(0).child.name);
+            assertEquals("b", items.get(1).name);
+            assertNull(items.get(1).child);
+        }
+    }
+
+    @Test
+    public void testEmptyRoundTrip() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XmlItemWriter.of(output, newPrototype(), XmlItem.class, "ts").close();
+
+        try (XmlItemReader<XmlItem> reader = XmlItemReader.of(new ByteArrayInputStream(output.toByteArray()), XmlItem.class, "ts")) {
+            XmlCollection header = reader.getHeader(XmlCollection.class);
+            assertEquals("col", header.name);
+            assertEquals("first", header.info.ts);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingPlaceholder() throws IOException {
+        XmlCollection prototype = newPrototype();
+        prototype.items.clear();
+        XmlItemWriter.of(new ByteArrayOutputStream(), prototype, XmlItem.class, "ts");
+    }
+
+    private static XmlCollection newPrototype() {
+        XmlCollection result = new XmlCollection();
+        result.name = "col";
+        result.source = "src";
+        result.info = new XmlInfo();
+        result.info.ts = "first";
+        result.items.add(new XmlItem());
+        return result;
+    }
+
+    private static XmlItem newItem(String name, XmlItem child) {
+        XmlItem result = new XmlItem();
+        result.name = name;
+        result.child = child;
+        return result;
+    }
+}
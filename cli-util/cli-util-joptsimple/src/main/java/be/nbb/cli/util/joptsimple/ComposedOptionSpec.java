@@ -26,6 +26,8 @@ import javax.annotation.Nonnull;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import joptsimple.ValueConversionException;
+import joptsimple.ValueConverter;
 import org.openide.util.NbBundle;
 
 /**
@@ -39,7 +41,20 @@ public interface ComposedOptionSpec<T> {
 
     @Nonnull
     public static ComposedOptionSpec<StandardOptions> newStandardOptionsSpec(@Nonnull OptionParser parser) {
-        return new StandardOptionsSpec(parser);
+        return newStandardOptionsSpec(parser, false);
+    }
+
+    /**
+     * Creates the standard options of a command.
+     *
+     * @param parser
+     * @param timeBudget true if the command applies a time budget to each of
+     * its series; otherwise the timeout option is rejected
+     * @return
+     */
+    @Nonnull
+    public static ComposedOptionSpec<StandardOptions> newStandardOptionsSpec(@Nonnull OptionParser parser, boolean timeBudget) {
+        return new StandardOptionsSpec(parser, timeBudget);
     }
 
     @Nonnull
@@ -57,18 +72,49 @@ public interface ComposedOptionSpec<T> {
         return Optional.ofNullable(options.has(spec) ? spec.value(options) : null);
     }
 
+    static final ValueConverter<Integer> POSITIVE_INTEGER = new ValueConverter<Integer>() {
+        @Override
+        public Integer convert(String value) {
+            try {
+                int result = Integer.parseInt(value);
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException ex) {
+                // reported below
+            }
+            throw new ValueConversionException("'" + value + "' is not a positive integer");
+        }
+
+        @Override
+        public Class<Integer> valueType() {
+            return Integer.class;
+        }
+
+        @Override
+        public String valuePattern() {
+            return null;
+        }
+    };
+
     @NbBundle.Messages({
         "standardOptions.help=Show help",
         "standardOptions.version=Show version",
-        "standardOptions.verbose=Verbose mode"
+        "standardOptions.verbose=Verbose mode",
+        "standardOptions.threads=Number of worker threads",
+        "standardOptions.timeout=Time budget of a single time series in seconds; a series that exceeds it is reported as invalid",
+        "standardOptions.metricsFile=Write timing metrics as JSON to a file"
     })
     static final class StandardOptionsSpec implements ComposedOptionSpec<StandardOptions> {
 
         private final OptionSpec<Void> help;
         private final OptionSpec<Void> version;
         private final OptionSpec<Void> verbose;
+        private final OptionSpec<Integer> threads;
+        private final OptionSpec<Integer> timeout;
+        private final OptionSpec<File> metricsFile;
 
-        private StandardOptionsSpec(OptionParser p) {
+        private StandardOptionsSpec(OptionParser p, boolean timeBudget) {
             this.help = p
                     .acceptsAll(asList("?", "help"), Bundle.standardOptions_help())
                     .forHelp();
@@ -76,11 +122,27 @@ public interface ComposedOptionSpec<T> {
                     .accepts("version", Bundle.standardOptions_version());
             this.verbose = p
                     .acceptsAll(asList("v", "verbose"), Bundle.standardOptions_verbose());
+            this.threads = p
+                    .accepts("threads", Bundle.standardOptions_threads())
+                    .withRequiredArg()
+                    .withValuesConvertedBy(POSITIVE_INTEGER)
+                    .describedAs("count");
+            this.timeout = timeBudget ? p
+                    .accepts("timeout", Bundle.standardOptions_timeout())
+                    .withRequiredArg()
+                    .withValuesConvertedBy(POSITIVE_INTEGER)
+                    .describedAs("seconds") : null;
+            this.metricsFile = p
+                    .accepts("metrics-file", Bundle.standardOptions_metricsFile())
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .describedAs("file");
         }
 
         @Override
         public StandardOptions value(OptionSet o) {
-            return new StandardOptions(o.has(help), o.has(version), o.has(verbose));
+            // zero means default threads and no time budget
+            return new StandardOptions(o.has(help), o.has(version), o.has(verbose), optional(o, threads).orElse(0), timeout != null ? optional(o, timeout).orElse(0) : 0, optional(o, metricsFile));
         }
     }
 
@@ -30,4 +30,6 @@ public class DemetraMediaTypes {
     public static final MediaType TS_COLLECTION_XML = parse("application/vnd.demetra.tscollection+xml");
     public static final MediaType TS_COLLECTION_JSON = parse("application/vnd.demetra.tscollection+json");
     public static final MediaType TS_COLLECTION_YAML = parse("application/vnd.demetra.tscollection+yaml");
+    public static final MediaType TS_COLLECTION_BINARY = parse("application/vnd.demetra.tscollection+binary");
+    public static final MediaType TS_STORE = parse("application/vnd.demetra.tsstore");
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import be.nbb.cli.util.Serializer;
+import be.nbb.cli.util.SerializerFactory;
+import com.google.common.net.MediaType;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_COLLECTION_BINARY;
+import ec.tss.xml.XmlMetaData;
+import ec.tss.xml.XmlTs;
+import ec.tss.xml.XmlTsCollection;
+import ec.tstoolkit.MetaData;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Map;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Compact binary encoding of time series collections intended for pipes
+ * between commands. The fields of the xml beans are written as is, without
+ * going through {@link ec.tss.TsCollectionInformation}, and observations
+ * (including missing values) are copied as raw little-endian doubles instead
+ * of being formatted as text.
+ *
+ * @author Philippe Charles
+ */
+@ServiceProvider(service = SerializerFactory.class)
+public final class TsCollectionBinarySerializerFactory implements SerializerFactory {
+
+    @Override
+    public boolean canHandle(MediaType mediaType, Class<?> type) {
+        return TS_COLLECTION_BINARY.is(mediaType) && XmlTsCollection.class.equals(type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <X> Serializer<X> create(Class<X> type, boolean formattedOutput) {
+        return (Serializer<X>) new BinarySerializer();
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int MAGIC = 0x44545343; // "DTSC"
+    private static final byte VERSION = 2;
+    private static final int NULL_LENGTH = -1;
+
+    private static final class BinarySerializer implements Serializer<XmlTsCollection> {
+
+        @Override
+        public void serialize(XmlTsCollection value, OutputStream output) throws IOException {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(output));
+            writeCollection(stream, value);
+            stream.flush();
+        }
+
+        @Override
+        public XmlTsCollection deserialize(InputStream input) throws IOException {
+            return readCollection(new DataInputStream(new BufferedInputStream(input)));
+        }
+    }
+
+    private static void writeCollection(DataOutputStream output, XmlTsCollection col) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        writeString(output, col.name);
+        writeString(output, col.source);
+        writeString(output, col.identifier);
+        writeMetaData(output, col.metaData);
+        if (col.tslist == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        output.writeInt(col.tslist.length);
+        for (XmlTs o : col.tslist) {
+            writeTs(output, o);
+        }
+    }
+
+    private static XmlTsCollection readCollection(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a binary time series collection");
+        }
+        byte version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        XmlTsCollection result = new XmlTsCollection();
+        result.name = readString(input);
+        result.source = readString(input);
+        result.identifier = readString(input);
+        result.metaData = readMetaData(input);
+        int size = input.readInt();
+        if (size != NULL_LENGTH) {
+            result.tslist = new XmlTs[size];
+            for (int i = 0; i < size; i++) {
+                result.tslist[i] = readTs(input);
+            }
+        }
+        return result;
+    }
+
+    private static void writeTs(DataOutputStream output, XmlTs ts) throws IOException {
+        writeString(output, ts.name);
+        writeString(output, ts.source);
+        writeString(output, ts.identifier);
+        writeMetaData(output, ts.metaData);
+        writeInteger(output, ts.freq);
+        writeInteger(output, ts.firstYear);
+        writeInteger(output, ts.firstPeriod);
+        writeValues(output, ts.data);
+    }
+
+    private static XmlTs readTs(DataInputStream input) throws IOException {
+        XmlTs result = new XmlTs();
+        result.name = readString(input);
+        result.source = readString(input);
+        result.identifier = readString(input);
+        result.metaData = readMetaData(input);
+        result.freq = readInteger(input);
+        result.firstYear = readInteger(input);
+        result.firstPeriod = readInteger(input);
+        result.data = readValues(input);
+        return result;
+    }
+
+    private static void writeValues(DataOutputStream output, double[] values) throws IOException {
+        if (values == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        output.writeInt(values.length);
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asDoubleBuffer().put(values);
+        output.write(buffer.array());
+    }
+
+    private static double[] readValues(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length * Double.BYTES];
+        input.readFully(bytes);
+        double[] result = new double[length];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(result);
+        return result;
+    }
+
+    private static void writeInteger(DataOutputStream output, Integer value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readInt() : null;
+    }
+
+    private static void writeMetaData(DataOutputStream output, XmlMetaData xml) throws IOException {
+        MetaData metaData = xml != null ? xml.create() : null;
+        if (metaData == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        output.writeInt(metaData.size());
+        for (Map.Entry<String, String> o : metaData.entrySet()) {
+            writeString(output, o.getKey());
+            writeString(output, o.getValue());
+        }
+    }
+
+    private static XmlMetaData readMetaData(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+        MetaData metaData = new MetaData();
+        for (int i = 0; i < size; i++) {
+            metaData.put(readString(input), readString(input));
+        }
+        XmlMetaData result = new XmlMetaData();
+        result.copy(metaData);
+        return result;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+    //</editor-fold>
+}
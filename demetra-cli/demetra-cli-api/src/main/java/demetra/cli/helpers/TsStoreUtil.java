@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.OutputOptions;
+import be.nbb.demetra.toolset.TsStore;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_STORE;
+import ec.tss.TsCollectionInformation;
+import java.io.File;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Access to memory-mapped time series stores from the command options.
+ * <p>
+ * A store is selected by its media type, either explicitly or through the
+ * ".dts" file extension. Stores require random access and therefore cannot be
+ * read from the standard input or written to the standard output.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+public class TsStoreUtil {
+
+    public static boolean isStore(@Nonnull InputOptions options) {
+        return TS_STORE.is(options.getMediaType());
+    }
+
+    @Nonnull
+    public static TsStore open(@Nonnull InputOptions options) throws IOException, IllegalArgumentException {
+        File file = options.getFile().orElseThrow(() -> new IllegalArgumentException("A time series store must be read from a file"));
+        return TsStore.open(file.toPath());
+    }
+
+    @Nonnull
+    public static TsStore.Writer create(@Nonnull OutputOptions options, @Nonnull TsCollectionInformation header) throws IOException, IllegalArgumentException {
+        File file = options.getFile().orElseThrow(() -> new IllegalArgumentException("A time series store must be written to a file"));
+        return TsStore.create(file.toPath(), header);
+    }
+}
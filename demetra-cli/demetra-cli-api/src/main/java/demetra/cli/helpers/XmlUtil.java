@@ -18,13 +18,24 @@ package demetra.cli.helpers;
  */
 
 
+import be.nbb.cli.util.ForkJoinTasks;
 import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.Metrics;
 import be.nbb.cli.util.OutputOptions;
+import be.nbb.cli.util.jaxb.XmlItemReader;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import be.nbb.demetra.toolset.ColumnarTsCollection;
+import com.google.common.net.MediaType;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_COLLECTION_XML;
 import ec.tss.TsCollectionInformation;
 import ec.tss.xml.IXmlConverter;
 import ec.tss.xml.IXmlInfoConverter;
+import ec.tss.xml.XmlTs;
 import ec.tss.xml.XmlTsCollection;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
 
 /**
@@ -38,6 +49,30 @@ public class XmlUtil {
         return readValue(options, XmlTsCollection.class);
     }
 
+    /**
+     * Reads a collection into a columnar representation. XML inputs are
+     * pulled one series at a time so that the whole document is never held
+     * in memory; other formats are read as usual and then converted.
+     *
+     * @param options
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public static ColumnarTsCollection readColumnarTsCollection(@Nonnull InputOptions options) throws IOException {
+        if (!isStreamable(options.getMediaType())) {
+            return ColumnarTsCollection.of(readTsCollection(options));
+        }
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.DESERIALIZE); XmlItemReader<XmlTs> reader = newTsReader(options)) {
+            ColumnarTsCollection.Builder result = ColumnarTsCollection.builder().header(reader.getHeader(XmlTsCollection.class).create());
+            XmlTs item;
+            while ((item = reader.next()) != null) {
+                result.add(item.create());
+            }
+            return result.build();
+        }
+    }
+
     @Nonnull
     public static <Y, X extends IXmlConverter<Y>> Y readValue(@Nonnull InputOptions options, @Nonnull Class<X> clazz) throws IOException {
         return options.read(clazz).create();
@@ -58,4 +93,86 @@ public class XmlUtil {
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Opens a reader that pulls the series of a collection one at a time.
+     *
+     * @param options
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if the input is not XML
+     */
+    @Nonnull
+    public static XmlItemReader<XmlTs> newTsReader(@Nonnull InputOptions options) throws IOException, IllegalArgumentException {
+        checkStreamable(options.getMediaType());
+        return XmlItemReader.of(options.openStream(), XmlTs.class, "ts");
+    }
+
+    /**
+     * Opens a writer that pushes the items of a collection one at a time.
+     *
+     * @param <X>
+     * @param options
+     * @param prototype a collection containing a single placeholder item
+     * @param itemType
+     * @param itemName
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if the output is not XML
+     */
+    @Nonnull
+    public static <X> XmlItemWriter<X> newItemWriter(@Nonnull OutputOptions options, @Nonnull Object prototype, @Nonnull Class<X> itemType, @Nonnull String itemName) throws IOException, IllegalArgumentException {
+        checkStreamable(options.getMediaType());
+        return XmlItemWriter.of(options.openStream(), prototype, itemType, itemName);
+    }
+
+    /**
+     * Processes the items of a reader in parallel and writes the results in
+     * input order, keeping only a small window of items in memory.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param reader
+     * @param processor
+     * @param writer
+     * @throws IOException
+     */
+    public static <X, Y> void transform(@Nonnull XmlItemReader<X> reader, @Nonnull Function<X, Y> processor, @Nonnull XmlItemWriter<Y> writer) throws IOException {
+        transform(reader.iterator(), processor, writer);
+    }
+
+    /**
+     * Processes a sequence of items in parallel and writes the results in
+     * input order.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param input
+     * @param processor
+     * @param writer
+     * @throws IOException
+     */
+    public static <X, Y> void transform(@Nonnull Iterator<X> input, @Nonnull Function<X, Y> processor, @Nonnull XmlItemWriter<Y> writer) throws IOException {
+        try {
+            ForkJoinTasks.forEachOrdered(input, processor, o -> {
+                try {
+                    writer.write(o);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static boolean isStreamable(MediaType mediaType) {
+        return MediaType.XML_UTF_8.is(mediaType) || TS_COLLECTION_XML.is(mediaType);
+    }
+
+    private static void checkStreamable(MediaType mediaType) throws IllegalArgumentException {
+        if (!isStreamable(mediaType)) {
+            throw new IllegalArgumentException("Streaming is only supported for XML, not '" + mediaType + "'");
+        }
+    }
 }
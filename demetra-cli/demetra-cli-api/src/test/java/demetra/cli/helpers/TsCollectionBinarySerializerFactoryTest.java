@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import be.nbb.cli.util.Serializer;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_COLLECTION_BINARY;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsMoniker;
+import ec.tss.xml.XmlTsCollection;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class TsCollectionBinarySerializerFactoryTest {
+
+    static TsCollectionInformation getSample() {
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = "col";
+        result.moniker = new TsMoniker("src", "id");
+        result.metaData = new MetaData();
+        result.metaData.put("k", "v");
+
+        TsInformation a = new TsInformation();
+        a.name = "a";
+        a.moniker = new TsMoniker("src", "a");
+        a.metaData = new MetaData();
+        a.metaData.put("unit", "€");
+        a.data = new TsData(TsFrequency.Quarterly, 2010, 1, new double[]{1, Double.NaN, 3.5, -0.0}, false);
+        result.items.add(a);
+
+        TsInformation b = new TsInformation();
+        b.name = "b";
+        result.items.add(b);
+        return result;
+    }
+
+    static byte[] serialize(Serializer<XmlTsCollection> serializer, XmlTsCollection value) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        serializer.serialize(value, result);
+        return result.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TsCollectionBinarySerializerFactory factory = new TsCollectionBinarySerializerFactory();
+        assertThat(factory.canHandle(TS_COLLECTION_BINARY, XmlTsCollection.class)).isTrue();
+        Serializer<XmlTsCollection> serializer = factory.create(XmlTsCollection.class, false);
+
+        XmlTsCollection input = new XmlTsCollection();
+        input.copy(getSample());
+
+        byte[] bytes = serialize(serializer, input);
+        XmlTsCollection output = serializer.deserialize(new ByteArrayInputStream(bytes));
+        assertThat(serialize(serializer, output)).isEqualTo(bytes);
+
+        TsCollectionInformation expected = input.create();
+        TsCollectionInformation actual = output.create();
+        assertThat(actual.name).isEqualTo(expected.name);
+        assertThat(actual.moniker).isEqualTo(expected.moniker);
+        assertThat(actual.metaData).isEqualTo(expected.metaData);
+        assertThat(actual.items).hasSize(2);
+        for (int i = 0; i < expected.items.size(); i++) {
+            TsInformation x = expected.items.get(i);
+            TsInformation y = actual.items.get(i);
+            assertThat(y.name).isEqualTo(x.name);
+            assertThat(y.moniker).isEqualTo(x.moniker);
+            assertThat(y.metaData).isEqualTo(x.metaData);
+            if (x.data == null) {
+                assertThat(y.data).isNull();
+            } else {
+                assertThat(y.data.getStart()).isEqualTo(x.data.getStart());
+                assertThat(y.data.getValues().internalStorage()).isEqualTo(x.data.getValues().internalStorage());
+            }
+        }
+        assertThat(actual.items.get(0).data.getValues().internalStorage()[1]).isNaN();
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidInput() throws IOException {
+        new TsCollectionBinarySerializerFactory().create(XmlTsCollection.class, false).deserialize(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved 
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and 
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class TsStoreFileTypeDetectorTest {
+
+    @Test
+    public void test() throws IOException {
+        TsStoreFileTypeDetector d = new TsStoreFileTypeDetector();
+
+        assertThat(d.probeContentType(Paths.get("data.dts"))).isEqualTo(DemetraMediaTypes.TS_STORE.toString());
+        assertThat(d.probeContentType(Paths.get("DATA.DTS"))).isEqualTo(DemetraMediaTypes.TS_STORE.toString());
+        assertThat(d.probeContentType(Paths.get("dir", "data.dts"))).isEqualTo(DemetraMediaTypes.TS_STORE.toString());
+        assertThat(d.probeContentType(Paths.get("data.xml"))).isNull();
+        assertThat(d.probeContentType(Paths.get("data.dts.xml"))).isNull();
+        assertThat(d.probeContentType(Paths.get("dts"))).isNull();
+    }
+}
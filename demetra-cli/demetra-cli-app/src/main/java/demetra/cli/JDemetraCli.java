@@ -18,10 +18,17 @@ package demetra.cli;
 
 import be.nbb.cli.util.AppassemblerProperty;
 import be.nbb.cli.util.Command;
+import be.nbb.cli.util.CommandClient;
+import be.nbb.cli.util.CommandDaemon;
+import be.nbb.cli.util.CommandPipeline;
 import be.nbb.cli.util.CommandRegistry;
+import be.nbb.cli.util.Invocation;
 import be.nbb.cli.util.Utils;
+import be.nbb.demetra.toolset.BatchExecutor;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import lombok.extern.slf4j.Slf4j;
 import org.openide.util.Lookup;
 
@@ -38,10 +45,57 @@ public final class JDemetraCli {
         } catch (IOException ex) {
             log.warn("While loading system properties", ex);
         }
-        CommandRegistry.builder()
+
+        BatchExecutor.setDefault(JDemetraCli::newExecutor);
+
+        if (args.length > 0 && DAEMON.equals(args[0])) {
+            serve(args);
+            return;
+        }
+
+        if (args.length > 0 && PIPE.equals(args[0])) {
+            System.exit(CommandPipeline.exec(createRegistry(), Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        if (CommandClient.isEnabled()) {
+            try {
+                System.exit(CommandClient.forward(args));
+            } catch (ConnectException ex) {
+                log.debug("Daemon not available, falling back to local execution", ex);
+            } catch (IOException ex) {
+                log.error("While forwarding to daemon", ex);
+                System.exit(-1);
+            }
+        }
+
+        createRegistry().exec(args);
+    }
+
+    private static final String DAEMON = "daemon";
+    private static final String PIPE = "pipe";
+
+    private static BatchExecutor newExecutor() {
+        Invocation invocation = Invocation.getCurrent();
+        return new BatchExecutor(invocation.getPool(), invocation.getThreads(), 1, true, invocation.getTimeout(), invocation.getMetrics()::recordItem);
+    }
+
+    private static CommandRegistry createRegistry() {
+        return CommandRegistry.builder()
                 .name(AppassemblerProperty.APP_NAME.value())
                 .commands(Lookup.getDefault().lookupAll(Command.class))
-                .build()
-                .exec(args);
+                .build();
+    }
+
+    private static void serve(String[] args) {
+        CommandRegistry registry = createRegistry();
+        try (CommandDaemon daemon = args.length > 1
+                ? CommandDaemon.open(registry, Integer.parseInt(args[1]))
+                : CommandDaemon.open(registry)) {
+            log.info("Daemon listening on port {}", daemon.getPort());
+            daemon.serve();
+        } catch (IOException | NumberFormatException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(-1);
+        }
     }
 }
@@ -26,8 +26,6 @@ import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
 import be.nbb.cli.util.OutputOptions;
 import be.nbb.cli.util.StandardOptions;
-import ec.tss.TsCollectionInformation;
-import ec.tss.xml.XmlTsCollection;
 import ec.tstoolkit.modelling.DefaultTransformationType;
 import ec.tstoolkit.timeseries.regression.OutlierType;
 import static ec.tstoolkit.timeseries.regression.OutlierType.AO;
@@ -45,8 +43,16 @@ import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
 import be.nbb.demetra.toolset.AnomalyDetectionTool;
 import be.nbb.demetra.toolset.AnomalyDetectionTool.DefaultSpec;
 import be.nbb.demetra.toolset.AnomalyDetectionTool.OutliersOptions;
+import be.nbb.demetra.toolset.AnomalyDetectionTool.OutliersTs;
 import be.nbb.demetra.toolset.AnomalyDetectionTool.OutliersTsCollection;
+import be.nbb.demetra.toolset.TsCollectionView;
+import be.nbb.demetra.toolset.TsStore;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import demetra.cli.helpers.SlowItemReport;
+import demetra.cli.helpers.TsStoreUtil;
 import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import org.openide.util.NbBundle;
 
@@ -73,21 +79,64 @@ public final class Ts2Outliers implements BasicCommand<Ts2Outliers.Parameters> {
 
     @Override
     public void exec(Parameters params) throws Exception {
-        TsCollectionInformation input = XmlUtil.readValue(params.input, XmlTsCollection.class);
+        if (TsStoreUtil.isStore(params.input)) {
+            execStore(params);
+        } else {
+            exec(params, XmlUtil.readColumnarTsCollection(params.input));
+        }
+    }
 
+    private void exec(Parameters params, TsCollectionView input) throws Exception {
         if (params.so.isVerbose()) {
-            System.err.println("Processing " + input.items.size() + " time series");
+            System.err.println("Processing " + input.asList().size() + " time series");
         }
 
         OutliersTsCollection output = AnomalyDetectionTool.getDefault().getOutliers(input, params.spec);
 
+        if (params.so.isVerbose() && output.getReport() != null) {
+            System.err.println(output.getReport());
+            SlowItemReport.print(System.err, output.getReport(), input.asList(), i -> output.getItems().get(i).getInvalidDataCause());
+        }
+
         XmlUtil.writeValue(params.output, XmlOutliersTsCollection.class, output);
     }
 
+    /**
+     * Streams the series of a store to the output so that neither the input
+     * nor the results are held in memory.
+     */
+    private void execStore(Parameters params) throws IOException {
+        AnomalyDetectionTool tool = AnomalyDetectionTool.getDefault();
+        try (TsStore store = TsStoreUtil.open(params.input)) {
+            if (params.so.isVerbose()) {
+                System.err.println("Processing " + store.size() + " time series");
+            }
+            XmlOutliersTsCollection prototype = newPrototype(store.getHeader());
+            try (XmlItemWriter<XmlOutliersTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlOutliersTs.class, "outliers_ts")) {
+                XmlUtil.transform(store.asList().iterator(), o -> toXml(tool.getOutliers(o, params.spec)), writer);
+            }
+        }
+    }
+
+    private static XmlOutliersTsCollection newPrototype(TsCollectionInformation input) {
+        XmlOutliersTsCollection result = new XmlOutliersTsCollection();
+        result.name = input.name;
+        result.source = input.moniker.getSource();
+        result.identifier = input.moniker.getId();
+        result.items = new XmlOutliersTs[]{new XmlOutliersTs()};
+        return result;
+    }
+
+    private static XmlOutliersTs toXml(OutliersTs ts) {
+        XmlOutliersTs result = new XmlOutliersTs();
+        result.copy(ts);
+        return result;
+    }
+
     @VisibleForTesting
     static final class Parser extends JOptSimpleArgsParser<Parameters> {
 
-        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser, true);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<AnomalyDetectionTool.OutliersOptions> spec = new OutliersOptionsSpec(parser);
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
@@ -28,12 +28,14 @@ import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSp
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.optional;
 import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
 import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.BatchExecutor;
 import be.nbb.demetra.toolset.BenchmarkingTool;
 import be.nbb.demetra.toolset.BenchmarkingTool.DentonOptions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.MediaType;
+import static demetra.cli.benchmarking.Util.getData;
 import static demetra.cli.benchmarking.Util.toTsCollectionInformation;
-import static demetra.cli.benchmarking.Util.zip;
+import static demetra.cli.benchmarking.Util.withData;
 import static demetra.cli.helpers.XmlUtil.readTsCollection;
 import static demetra.cli.helpers.XmlUtil.writeTsCollection;
 import demetra.xml.MediaTypeAdapter;
@@ -43,7 +45,6 @@ import ec.tstoolkit.timeseries.TsAggregationType;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
 import java.io.File;
 import static java.util.Arrays.asList;
-import java.util.Map;
 import java.util.Optional;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import joptsimple.OptionParser;
@@ -90,29 +91,19 @@ public final class Denton implements BasicCommand<Denton.Parameters> {
         if (p.input.xFile.isPresent()) {
             TsCollectionInformation x = readTsCollection(InputOptions.of(p.input.xFile.get(), p.input.mediaType));
 
-            TsCollectionInformation result = zip(x.items, y.items)
-                    .parallelStream()
-                    .map(o -> exec(tool, o, p.options))
-                    .collect(toTsCollectionInformation());
+            TsCollectionInformation result = withData(x, tool.computeDenton(getData(x), getData(y), p.options));
 
             writeTsCollection(p.output, result);
         } else if (p.input.freq.isPresent()) {
-            TsCollectionInformation result = y.items
-                    .parallelStream()
-                    .map(o -> exec(tool, p.input.freq.get(), o, p.options))
+            TsCollectionInformation result = BatchExecutor.getDefault()
+                    .map(y.items, o -> exec(tool, p.input.freq.get(), o, p.options))
+                    .stream()
                     .collect(toTsCollectionInformation());
 
             writeTsCollection(p.output, result);
         }
     }
 
-    private static TsInformation exec(BenchmarkingTool tool, Map.Entry<TsInformation, TsInformation> input, DentonOptions options) {
-        TsInformation result = new TsInformation();
-        result.name = input.getKey().name;
-        result.data = tool.computeDenton(input.getKey().data, input.getValue().data, options);
-        return result;
-    }
-
     private static TsInformation exec(BenchmarkingTool tool, TsFrequency freq, TsInformation info, DentonOptions options) {
         TsInformation result = new TsInformation();
         result.name = info.name;
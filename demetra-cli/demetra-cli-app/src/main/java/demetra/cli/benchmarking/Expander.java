@@ -33,13 +33,13 @@ import be.nbb.demetra.toolset.BenchmarkingTool.ExpanderOptions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.MediaType;
 import static demetra.cli.benchmarking.Util.domainConverter;
-import static demetra.cli.benchmarking.Util.toTsCollectionInformation;
+import static demetra.cli.benchmarking.Util.getData;
+import static demetra.cli.benchmarking.Util.withData;
 import static demetra.cli.helpers.XmlUtil.readTsCollection;
 import static demetra.cli.helpers.XmlUtil.writeTsCollection;
 import demetra.xml.MediaTypeAdapter;
 import ec.benchmarking.simplets.TsExpander;
 import ec.tss.TsCollectionInformation;
-import ec.tss.TsInformation;
 import ec.tstoolkit.timeseries.TsAggregationType;
 import ec.tstoolkit.timeseries.simplets.TsDomain;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
@@ -51,8 +51,13 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import lombok.AllArgsConstructor;
+import org.openide.util.NbBundle;
 
 /**
+ * Expands low-frequency series to a higher frequency or to a domain.
+ * Identical series are expanded once. The parameter of the model is
+ * estimated for each distinct series, unless a parameter is given for all of
+ * them; there is no pooled estimation over a group of series.
  *
  * @author Philippe Charles
  */
@@ -89,36 +94,12 @@ public final class Expander implements BasicCommand<Expander.Parameters> {
         BenchmarkingTool tool = BenchmarkingTool.getDefault();
 
         if (p.input.domain.isPresent()) {
-            TsCollectionInformation result = y.items
-                    .parallelStream()
-                    .map(o -> exec(tool, p.input.domain.get(), o, p.options))
-                    .collect(toTsCollectionInformation());
-
-            writeTsCollection(p.output, result);
+            writeTsCollection(p.output, withData(y, tool.expand(p.input.domain.get(), getData(y), p.options)));
         } else if (p.input.freq.isPresent()) {
-            TsCollectionInformation result = y.items
-                    .parallelStream()
-                    .map(o -> exec(tool, p.input.freq.get(), o, p.options))
-                    .collect(toTsCollectionInformation());
-
-            writeTsCollection(p.output, result);
+            writeTsCollection(p.output, withData(y, tool.expand(p.input.freq.get(), getData(y), p.options)));
         }
     }
 
-    private static TsInformation exec(BenchmarkingTool tool, TsFrequency freq, TsInformation info, ExpanderOptions options) {
-        TsInformation result = new TsInformation();
-        result.name = info.name;
-        result.data = tool.expand(freq, info.data, options);
-        return result;
-    }
-
-    private static TsInformation exec(BenchmarkingTool tool, TsDomain domain, TsInformation info, ExpanderOptions options) {
-        TsInformation result = new TsInformation();
-        result.name = info.name;
-        result.data = tool.expand(domain, info.data, options);
-        return result;
-    }
-
     @VisibleForTesting
     static final class Parser extends JOptSimpleArgsParser<Parameters> {
 
@@ -171,6 +152,10 @@ public final class Expander implements BasicCommand<Expander.Parameters> {
         }
     }
 
+    @NbBundle.Messages({
+        "expander.useParameter=Use the given parameter for every series instead of estimating it for each distinct series",
+        "expander.parameter=Parameter of the model of every series if useParameter is set"
+    })
     private static final class OptionsSpec implements ComposedOptionSpec<ExpanderOptions> {
 
         private final OptionSpec<Boolean> useParameter;
@@ -183,13 +168,13 @@ public final class Expander implements BasicCommand<Expander.Parameters> {
 
         public OptionsSpec(OptionParser p) {
             this.useParameter = p
-                    .acceptsAll(asList("useParameter"), "TODO")
+                    .acceptsAll(asList("useParameter"), Bundle.expander_useParameter())
                     .withRequiredArg()
                     .ofType(Boolean.class)
                     .defaultsTo(false)
                     .describedAs("bool");
             this.parameter = p
-                    .acceptsAll(asList("parameter"), "TODO")
+                    .acceptsAll(asList("parameter"), Bundle.expander_parameter())
                     .withRequiredArg()
                     .ofType(double.class)
                     .defaultsTo(.9)
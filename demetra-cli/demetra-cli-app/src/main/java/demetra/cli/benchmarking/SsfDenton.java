@@ -28,6 +28,7 @@ import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSp
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.optional;
 import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
 import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.BatchExecutor;
 import be.nbb.demetra.toolset.BenchmarkingTool;
 import be.nbb.demetra.toolset.BenchmarkingTool.SsfDentonOptions;
 import com.google.common.annotations.VisibleForTesting;
@@ -85,9 +86,9 @@ public final class SsfDenton implements BasicCommand<SsfDenton.Parameters> {
 
         BenchmarkingTool tool = BenchmarkingTool.getDefault();
 
-        TsCollectionInformation result = zip(x.items, y.items)
-                .parallelStream()
-                .map(o -> exec(tool, o, p.options))
+        TsCollectionInformation result = BatchExecutor.getDefault()
+                .map(zip(x.items, y.items), o -> exec(tool, o, p.options))
+                .stream()
                 .collect(toTsCollectionInformation());
 
         writeTsCollection(p.output, result);
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarking;
+
+import be.nbb.cli.util.BasicCliLauncher;
+import be.nbb.cli.util.BasicCommand;
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.OutputOptions;
+import be.nbb.cli.util.StandardOptions;
+import be.nbb.cli.util.Utils;
+import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.optional;
+import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
+import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.BenchmarkingTool;
+import be.nbb.demetra.toolset.BenchmarkingTool.Reconciliation;
+import be.nbb.demetra.toolset.BenchmarkingTool.ReconciliationOptions;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.MediaType;
+import static demetra.cli.benchmarking.Util.getData;
+import static demetra.cli.benchmarking.Util.withData;
+import static demetra.cli.helpers.XmlUtil.readTsCollection;
+import static demetra.cli.helpers.XmlUtil.writeTsCollection;
+import demetra.xml.MediaTypeAdapter;
+import ec.tss.TsCollectionInformation;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import java.io.File;
+import java.io.IOException;
+import static java.util.Arrays.asList;
+import java.util.Optional;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import lombok.AllArgsConstructor;
+
+/**
+ * Benchmarks series to their temporal constraints and to a contemporaneous
+ * total at the same time.
+ *
+ * @author Philippe Charles
+ */
+public final class Ts2Reconcile implements BasicCommand<Ts2Reconcile.Parameters> {
+
+    @CommandRegistration
+    public static void main(String[] args) {
+        BasicCliLauncher.run(args, Parser::new, Ts2Reconcile::new, o -> o.so);
+    }
+
+    @AllArgsConstructor
+    public static final class Parameters {
+
+        StandardOptions so;
+        public ReconcileInput input;
+        public ReconciliationOptions options;
+        public OutputOptions output;
+    }
+
+    @AllArgsConstructor
+    public static final class ReconcileInput {
+
+        private final File xFile;
+        private final File yFile;
+        private final Optional<File> totalFile;
+        @XmlJavaTypeAdapter(MediaTypeAdapter.class)
+        private final MediaType mediaType;
+    }
+
+    @Override
+    public void exec(Parameters p) throws Exception {
+        TsCollectionInformation x = readTsCollection(InputOptions.of(p.input.xFile, p.input.mediaType));
+        TsCollectionInformation y = readTsCollection(InputOptions.of(p.input.yFile, p.input.mediaType));
+        TsData total = p.input.totalFile.isPresent() ? readTotal(InputOptions.of(p.input.totalFile.get(), p.input.mediaType)) : null;
+
+        if (p.so.isVerbose()) {
+            System.err.println("Reconciling " + x.items.size() + " time series");
+        }
+
+        Reconciliation reconciliation = BenchmarkingTool.getDefault().reconcile(getData(x), getData(y), total, p.options);
+
+        if (p.so.isVerbose()) {
+            System.err.println(reconciliation.getIterations() + " iterations, max discrepancy: " + reconciliation.getResidual());
+        }
+
+        writeTsCollection(p.output, withData(x, reconciliation.getSeries()));
+    }
+
+    private static TsData readTotal(InputOptions options) throws IOException {
+        TsCollectionInformation info = readTsCollection(options);
+        if (info.items.size() != 1) {
+            throw new IllegalArgumentException("Expected one total, found: " + info.items.size());
+        }
+        return info.items.get(0).data;
+    }
+
+    @VisibleForTesting
+    static final class Parser extends JOptSimpleArgsParser<Parameters> {
+
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final InputSpec input = new InputSpec(parser);
+        private final OptionsSpec options = new OptionsSpec(parser);
+        private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
+
+        @Override
+        protected Parameters parse(OptionSet o) {
+            return new Parameters(so.value(o), input.value(o), options.value(o), output.value(o));
+        }
+    }
+
+    private static final class InputSpec implements ComposedOptionSpec<ReconcileInput> {
+
+        private final OptionSpec<File> xFile;
+        private final OptionSpec<File> yFile;
+        private final OptionSpec<File> totalFile;
+        private final OptionSpec<String> mediaType;
+
+        public InputSpec(OptionParser p) {
+            this.xFile = p
+                    .acceptsAll(asList("x", "series"), "Series to benchmark")
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .required()
+                    .describedAs("file");
+            this.yFile = p
+                    .acceptsAll(asList("y", "constrains"), "Temporal constraints, one per series")
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .required()
+                    .describedAs("file");
+            this.totalFile = p
+                    .accepts("total", "Contemporaneous total; defaults to the sum of the series")
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .describedAs("file");
+            this.mediaType = p
+                    .acceptsAll(asList("it", "input-type"), "Media type of the inputs")
+                    .withRequiredArg()
+                    .ofType(String.class)
+                    .describedAs("mediaType");
+        }
+
+        @Override
+        public ReconcileInput value(OptionSet o) {
+            return new ReconcileInput(xFile.value(o), yFile.value(o), optional(o, totalFile), Utils.getMediaType(optional(o, mediaType), optional(o, xFile)).orElse(MediaType.XML_UTF_8));
+        }
+    }
+
+    private static final class OptionsSpec implements ComposedOptionSpec<ReconciliationOptions> {
+
+        private final OptionSpec<Boolean> multiplicative;
+        private final OptionSpec<Boolean> modified;
+        private final OptionSpec<Integer> differencing;
+        private final OptionSpec<TsAggregationType> aggregationType;
+        private final OptionSpec<Double> precision;
+        private final OptionSpec<Integer> maxIterations;
+
+        public OptionsSpec(OptionParser p) {
+            this.multiplicative = p
+                    .acceptsAll(asList("multiplicative"), "Proportional (true) or additive (false) benchmarking")
+                    .withRequiredArg()
+                    .ofType(Boolean.class)
+                    .defaultsTo(true)
+                    .describedAs("bool");
+            this.modified = p
+                    .acceptsAll(asList("modified"), "Modified Denton, without initial conditions")
+                    .withRequiredArg()
+                    .ofType(Boolean.class)
+                    .defaultsTo(true)
+                    .describedAs("bool");
+            this.differencing = p
+                    .acceptsAll(asList("differencing"), "Differencing order")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(1)
+                    .describedAs("int");
+            this.aggregationType = p
+                    .acceptsAll(asList("aggregation-type"), "Temporal aggregation of the constraints")
+                    .withRequiredArg()
+                    .ofType(TsAggregationType.class)
+                    .defaultsTo(TsAggregationType.Sum)
+                    .describedAs("aggregationType");
+            this.precision = p
+                    .acceptsAll(asList("precision"), "Relative precision of the contemporaneous constraints")
+                    .withRequiredArg()
+                    .ofType(Double.class)
+                    .defaultsTo(1e-9)
+                    .describedAs("double");
+            this.maxIterations = p
+                    .acceptsAll(asList("max-iterations"), "Maximum number of conjugate gradient iterations")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(1000)
+                    .describedAs("int");
+        }
+
+        @Override
+        public ReconciliationOptions value(OptionSet o) {
+            return new ReconciliationOptions(multiplicative.value(o), modified.value(o), differencing.value(o), aggregationType.value(o), precision.value(o), maxIterations.value(o));
+        }
+    }
+}
@@ -19,6 +19,7 @@ package demetra.cli.benchmarking;
 import com.google.common.collect.Maps;
 import ec.tss.TsCollectionInformation;
 import ec.tss.TsInformation;
+import ec.tstoolkit.timeseries.simplets.TsData;
 import ec.tstoolkit.timeseries.simplets.TsDomain;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
 import java.util.AbstractList;
@@ -65,6 +66,30 @@ class Util {
         });
     }
 
+    @Nonnull
+    public static List<TsData> getData(@Nonnull TsCollectionInformation info) {
+        return info.items.stream().map(o -> o.data).collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a collection of series named after the items of another one.
+     *
+     * @param names the collection that provides the names
+     * @param data the data of the new items, by position
+     * @return a new collection
+     */
+    @Nonnull
+    public static TsCollectionInformation withData(@Nonnull TsCollectionInformation names, @Nonnull List<TsData> data) {
+        TsCollectionInformation result = new TsCollectionInformation();
+        for (int i = 0; i < data.size(); i++) {
+            TsInformation item = new TsInformation();
+            item.name = names.items.get(i).name;
+            item.data = data.get(i);
+            result.items.add(item);
+        }
+        return result;
+    }
+
     @Nonnull
     public static ValueConverter<TsDomain> domainConverter() {
         return new ValueConverter<TsDomain>() {
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Descriptive statistics of each period across a set of time series.
+ * <p>
+ * Series are added one at a time and aligned on the union of their domains,
+ * which is extended as needed; only per-period accumulators are kept, so the
+ * memory depends on the length of the domain and not on the number of series.
+ * Adding a series sweeps the accumulators of its periods, which are stored as
+ * one array per quantity.
+ * <p>
+ * Variance, skewness and kurtosis are population moments updated online;
+ * kurtosis is not in excess. The median is estimated by {@link P2Quantile},
+ * which is exact up to five values per period.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author Philippe Charles
+ */
+final class CrossSectionalStats {
+
+    private final EnumSet<DStatsItem> items;
+    private final boolean moments;
+    private final boolean median;
+    private int freq;
+    private int base;
+    private int length;
+    private int[] obs;
+    private int[] count;
+    private double[] sum;
+    private double[] sumSquare;
+    private double[] min;
+    private double[] max;
+    private double[] mean;
+    private double[] m2;
+    private double[] m3;
+    private double[] m4;
+    private final P2Quantile medians;
+
+    CrossSectionalStats(@Nonnull Set<DStatsItem> items) {
+        this.items = items.isEmpty() ? EnumSet.noneOf(DStatsItem.class) : EnumSet.copyOf(items);
+        this.moments = items.contains(DStatsItem.var)
+                || items.contains(DStatsItem.stdev)
+                || items.contains(DStatsItem.skewness)
+                || items.contains(DStatsItem.kurtosis);
+        this.median = items.contains(DStatsItem.median);
+        this.medians = median ? new P2Quantile(.5, 0) : null;
+        this.freq = 0;
+        this.base = 0;
+        this.length = 0;
+        allocate(0);
+    }
+
+    /**
+     * Adds the observations of a series.
+     *
+     * @param data the data of the series, ignored if null
+     * @throws IllegalArgumentException if its frequency differs from the
+     * frequency of the previous series
+     */
+    void add(@Nullable TsData data) throws IllegalArgumentException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        TsPeriod start = data.getStart();
+        int f = start.getFrequency().intValue();
+        int id = start.getYear() * f + start.getPosition();
+        if (freq == 0) {
+            freq = f;
+            base = id;
+        } else if (freq != f) {
+            throw new IllegalArgumentException("Cross-sectional statistics require time series of the same frequency");
+        }
+        double[] values = data.getValues().internalStorage();
+        ensureDomain(id - base, id - base + values.length);
+        int from = id - base;
+        for (int i = 0; i < values.length; i++) {
+            accept(from + i, values[i]);
+        }
+    }
+
+    /**
+     * Creates one series per requested item on the union of the domains.
+     *
+     * @param name the name of the resulting collection
+     * @return a new collection
+     */
+    @Nonnull
+    TsCollectionInformation build(@Nullable String name) {
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = name;
+        result.type = TsInformationType.All;
+        for (DStatsItem item : items) {
+            TsInformation ts = new TsInformation();
+            ts.name = item.name();
+            ts.type = TsInformationType.All;
+            if (freq != 0) {
+                double[] values = new double[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = get(item, i);
+                }
+                ts.data = new TsData(TsFrequency.valueOf(freq), base / freq, base % freq, values, false);
+            }
+            result.items.add(ts);
+        }
+        return result;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private void allocate(int capacity) {
+        obs = new int[capacity];
+        count = new int[capacity];
+        sum = new double[capacity];
+        sumSquare = new double[capacity];
+        min = new double[capacity];
+        max = new double[capacity];
+        mean = new double[moments ? capacity : 0];
+        m2 = new double[moments ? capacity : 0];
+        m3 = new double[moments ? capacity : 0];
+        m4 = new double[moments ? capacity : 0];
+    }
+
+    private void ensureDomain(int from, int to) {
+        int shift = Math.max(-from, 0);
+        int newLength = Math.max(to, length) + shift;
+        if (shift == 0 && newLength == length) {
+            return;
+        }
+        int[] oldObs = obs, oldCount = count;
+        double[] oldSum = sum, oldSumSquare = sumSquare, oldMin = min, oldMax = max;
+        double[] oldMean = mean, oldM2 = m2, oldM3 = m3, oldM4 = m4;
+        allocate(newLength);
+        System.arraycopy(oldObs, 0, obs, shift, length);
+        System.arraycopy(oldCount, 0, count, shift, length);
+        System.arraycopy(oldSum, 0, sum, shift, length);
+        System.arraycopy(oldSumSquare, 0, sumSquare, shift, length);
+        System.arraycopy(oldMin, 0, min, shift, length);
+        System.arraycopy(oldMax, 0, max, shift, length);
+        if (moments) {
+            System.arraycopy(oldMean, 0, mean, shift, length);
+            System.arraycopy(oldM2, 0, m2, shift, length);
+            System.arraycopy(oldM3, 0, m3, shift, length);
+            System.arraycopy(oldM4, 0, m4, shift, length);
+        }
+        if (median) {
+            medians.resize(newLength, shift, length);
+        }
+        base -= shift;
+        length = newLength;
+    }
+
+    private void accept(int i, double x) {
+        obs[i]++;
+        if (Double.isNaN(x)) {
+            return;
+        }
+        int n = ++count[i];
+        if (n == 1) {
+            min[i] = x;
+            max[i] = x;
+        } else if (x < min[i]) {
+            min[i] = x;
+        } else if (x > max[i]) {
+            max[i] = x;
+        }
+        sum[i] += x;
+        sumSquare[i] += x * x;
+        if (moments) {
+            acceptMoments(i, n, x);
+        }
+        if (median) {
+            medians.accept(i, n, x);
+        }
+    }
+
+    private void acceptMoments(int i, int n, double x) {
+        double delta = x - mean[i];
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        double term = delta * deltaN * (n - 1);
+        mean[i] += deltaN;
+        m4[i] += term * deltaN2 * ((double) n * n - 3 * n + 3) + 6 * deltaN2 * m2[i] - 4 * deltaN * m3[i];
+        m3[i] += term * deltaN * (n - 2) - 3 * deltaN * m2[i];
+        m2[i] += term;
+    }
+
+    private double get(DStatsItem item, int i) {
+        int n = count[i];
+        switch (item) {
+            case obs:
+                return obs[i];
+            case dataCount:
+                return n;
+            case missingValues:
+                return obs[i] - n;
+            case sum:
+                return sum[i];
+            case sumSquare:
+                return sumSquare[i];
+            case average:
+                return n > 0 ? sum[i] / n : Double.NaN;
+            case rmse:
+                return n > 0 ? Math.sqrt(sumSquare[i] / n) : Double.NaN;
+            case min:
+                return n > 0 ? min[i] : Double.NaN;
+            case max:
+                return n > 0 ? max[i] : Double.NaN;
+            case median:
+                return medians.get(i, n);
+            case var:
+                return n > 0 ? m2[i] / n : Double.NaN;
+            case stdev:
+                return n > 0 ? Math.sqrt(m2[i] / n) : Double.NaN;
+            case skewness:
+                return m2[i] > 0 ? Math.sqrt(n) * m3[i] / Math.pow(m2[i], 1.5) : Double.NaN;
+            case kurtosis:
+                return m2[i] > 0 ? n * m4[i] / (m2[i] * m2[i]) : Double.NaN;
+            default:
+                throw new IllegalArgumentException(item.name());
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import ec.tss.xml.XmlTs;
+import ec.tstoolkit.data.DescriptiveStatistics;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Computes the requested descriptive statistics of a series in a single pass
+ * over its values.
+ * <p>
+ * Counts, sums, extrema and their derived items are accumulated together; the
+ * median is obtained by selection on a copy of the non-missing values, which
+ * is only made if the median is requested. The variance-based items keep the
+ * conventions of {@link DescriptiveStatistics} and are delegated to it when
+ * requested. Instances are immutable and thread-safe.
+ *
+ * @author Philippe Charles
+ */
+final class DStatsEngine {
+
+    @Nonnull
+    static DStatsEngine of(@Nonnull Set<DStatsItem> items) {
+        return new DStatsEngine(items.isEmpty() ? EnumSet.noneOf(DStatsItem.class) : EnumSet.copyOf(items));
+    }
+
+    private final EnumSet<DStatsItem> items;
+    private final boolean moments;
+
+    private DStatsEngine(EnumSet<DStatsItem> items) {
+        this.items = items;
+        this.moments = items.contains(DStatsItem.var)
+                || items.contains(DStatsItem.stdev)
+                || items.contains(DStatsItem.skewness)
+                || items.contains(DStatsItem.kurtosis);
+    }
+
+    @Nonnull
+    XmlDStatsTs process(@Nonnull XmlTs ts) {
+        XmlDStatsTs result = new XmlDStatsTs();
+        result.name = ts.name;
+        result.source = ts.source;
+        result.identifier = ts.identifier;
+        compute(ts.data != null ? ts.data : new double[0], result);
+        return result;
+    }
+
+    /**
+     * Computes the median of the non-missing values of an array.
+     *
+     * @param data the values; missing values are NaN
+     * @return the median or NaN if there is no value
+     */
+    static double median(@Nonnull double[] data) {
+        double[] tmp = new double[data.length];
+        int n = 0;
+        for (double o : data) {
+            if (!Double.isNaN(o)) {
+                tmp[n++] = o;
+            }
+        }
+        return median(tmp, n);
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private void compute(double[] data, XmlDStatsTs result) {
+        int n = 0;
+        double sum = 0, sumSquare = 0;
+        double min = Double.NaN, max = Double.NaN;
+        for (double o : data) {
+            if (!Double.isNaN(o)) {
+                if (n == 0) {
+                    min = o;
+                    max = o;
+                } else if (o < min) {
+                    min = o;
+                } else if (o > max) {
+                    max = o;
+                }
+                sum += o;
+                sumSquare += o * o;
+                n++;
+            }
+        }
+        result.observationsCount = ifRequested(DStatsItem.obs, data.length);
+        result.missingValuesCount = ifRequested(DStatsItem.missingValues, data.length - n);
+        result.dataCount = ifRequested(DStatsItem.dataCount, n);
+        result.sum = ifRequested(DStatsItem.sum, sum);
+        result.sumSquare = ifRequested(DStatsItem.sumSquare, sumSquare);
+        result.min = ifRequested(DStatsItem.min, min);
+        result.max = ifRequested(DStatsItem.max, max);
+        result.average = ifRequested(DStatsItem.average, sum / n);
+        result.rmse = ifRequested(DStatsItem.rmse, Math.sqrt(sumSquare / n));
+        if (items.contains(DStatsItem.median)) {
+            result.median = median(data);
+        }
+        if (moments) {
+            DescriptiveStatistics stats = new DescriptiveStatistics(data);
+            result.var = ifRequested(DStatsItem.var, stats.getVar());
+            result.stdev = ifRequested(DStatsItem.stdev, stats.getStdev());
+            result.skewness = ifRequested(DStatsItem.skewness, stats.getSkewness());
+            result.kurtosis = ifRequested(DStatsItem.kurtosis, stats.getKurtosis());
+        }
+    }
+
+    @Nullable
+    private Integer ifRequested(DStatsItem item, int value) {
+        return items.contains(item) ? value : null;
+    }
+
+    @Nullable
+    private Double ifRequested(DStatsItem item, double value) {
+        return items.contains(item) ? value : null;
+    }
+
+    private static double median(double[] values, int n) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        int k = (n - 1) / 2;
+        select(values, n, k);
+        if (n % 2 != 0) {
+            return values[k];
+        }
+        double upper = values[k + 1];
+        for (int i = k + 2; i < n; i++) {
+            if (values[i] < upper) {
+                upper = values[i];
+            }
+        }
+        return (values[k] + upper) / 2;
+    }
+
+    /**
+     * Partially orders the first n values so that the k-th smallest value is
+     * at position k, with smaller values before it and larger values after it.
+     */
+    private static void select(double[] values, int n, int k) {
+        int left = 0, right = n - 1;
+        while (right > left) {
+            int mid = (left + right) >>> 1;
+            if (values[mid] < values[left]) {
+                swap(values, mid, left);
+            }
+            if (values[right] < values[left]) {
+                swap(values, right, left);
+            }
+            if (values[right] < values[mid]) {
+                swap(values, right, mid);
+            }
+            double pivot = values[mid];
+            int i = left, j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+    //</editor-fold>
+}
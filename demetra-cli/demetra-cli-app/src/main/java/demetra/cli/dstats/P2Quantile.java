@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import java.util.Arrays;
+import javax.annotation.Nonnegative;
+
+/**
+ * Streaming estimate of a quantile with the P-square algorithm of Jain and
+ * Chlamtac, for a set of independent cells.
+ * <p>
+ * Each cell keeps five markers (minimum, p/2, p, (1+p)/2 and maximum) and
+ * their positions in flat arrays, so that the memory does not depend on the
+ * number of values. Up to five values per cell, the quantile is exact and
+ * interpolated between order statistics at rank (n-1)p, like most statistical
+ * packages; beyond that it is the estimate of the middle marker.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author Philippe Charles
+ */
+final class P2Quantile {
+
+    private final double p;
+    private final double[] increments;
+    private double[] markers;
+    private int[] positions;
+
+    /**
+     * Creates an estimator.
+     *
+     * @param p the probability of the quantile
+     * @param capacity the initial number of cells
+     * @throws IllegalArgumentException if p is not strictly between 0 and 1
+     */
+    P2Quantile(double p, @Nonnegative int capacity) throws IllegalArgumentException {
+        if (!(p > 0 && p < 1)) {
+            throw new IllegalArgumentException("Invalid probability: " + p);
+        }
+        this.p = p;
+        this.increments = new double[]{0, p / 2, p, (1 + p) / 2, 1};
+        this.markers = new double[capacity * MARKERS];
+        this.positions = new int[capacity * MARKERS];
+    }
+
+    /**
+     * Changes the number of cells, moving the existing ones.
+     *
+     * @param capacity the new number of cells
+     * @param shift the index of the first existing cell in the new layout
+     * @param length the number of existing cells to keep
+     */
+    void resize(@Nonnegative int capacity, @Nonnegative int shift, @Nonnegative int length) {
+        double[] oldMarkers = markers;
+        int[] oldPositions = positions;
+        markers = new double[capacity * MARKERS];
+        positions = new int[capacity * MARKERS];
+        System.arraycopy(oldMarkers, 0, markers, shift * MARKERS, length * MARKERS);
+        System.arraycopy(oldPositions, 0, positions, shift * MARKERS, length * MARKERS);
+    }
+
+    /**
+     * Adds a value to a cell.
+     *
+     * @param cell
+     * @param n the number of values of the cell, including this one
+     * @param x a value that is not NaN
+     */
+    void accept(@Nonnegative int cell, @Nonnegative int n, double x) {
+        int offset = cell * MARKERS;
+        if (n <= MARKERS) {
+            markers[offset + n - 1] = x;
+            if (n == MARKERS) {
+                Arrays.sort(markers, offset, offset + MARKERS);
+                for (int j = 0; j < MARKERS; j++) {
+                    positions[offset + j] = j + 1;
+                }
+            }
+            return;
+        }
+        int k;
+        if (x < markers[offset]) {
+            markers[offset] = x;
+            k = 0;
+        } else if (x >= markers[offset + MARKERS - 1]) {
+            markers[offset + MARKERS - 1] = x;
+            k = MARKERS - 2;
+        } else {
+            k = 0;
+            while (x >= markers[offset + k + 1]) {
+                k++;
+            }
+        }
+        for (int j = k + 1; j < MARKERS; j++) {
+            positions[offset + j]++;
+        }
+        for (int j = 1; j < MARKERS - 1; j++) {
+            double desired = 1 + (n - 1) * increments[j];
+            double d = desired - positions[offset + j];
+            int below = positions[offset + j - 1] - positions[offset + j];
+            int above = positions[offset + j + 1] - positions[offset + j];
+            if ((d >= 1 && above > 1) || (d <= -1 && below < -1)) {
+                int s = d >= 0 ? 1 : -1;
+                double q = parabolic(offset + j, s);
+                if (markers[offset + j - 1] < q && q < markers[offset + j + 1]) {
+                    markers[offset + j] = q;
+                } else {
+                    markers[offset + j] += s * (markers[offset + j + s] - markers[offset + j]) / (positions[offset + j + s] - positions[offset + j]);
+                }
+                positions[offset + j] += s;
+            }
+        }
+    }
+
+    /**
+     * Gets the quantile of a cell.
+     *
+     * @param cell
+     * @param n the number of values of the cell
+     * @return the quantile or NaN if the cell is empty
+     */
+    double get(@Nonnegative int cell, @Nonnegative int n) {
+        int offset = cell * MARKERS;
+        if (n > MARKERS) {
+            return markers[offset + 2];
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double[] tmp = Arrays.copyOfRange(markers, offset, offset + n);
+        Arrays.sort(tmp);
+        return interpolate(tmp, p);
+    }
+
+    /**
+     * Computes the quantile of sorted values by linear interpolation between
+     * the order statistics around rank (n-1)p.
+     *
+     * @param sorted
+     * @param p
+     * @return
+     */
+    static double interpolate(double[] sorted, double p) {
+        double h = (sorted.length - 1) * p;
+        int lower = (int) Math.floor(h);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (h - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int MARKERS = 5;
+
+    private double parabolic(int i, int s) {
+        double q = markers[i], qm = markers[i - 1], qp = markers[i + 1];
+        double n = positions[i], nm = positions[i - 1], np = positions[i + 1];
+        return q + s / (np - nm) * ((n - nm + s) * (qp - q) / (np - n) + (np - n - s) * (q - qm) / (n - nm));
+    }
+    //</editor-fold>
+}
@@ -26,9 +26,17 @@ import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
 import be.nbb.cli.util.OutputOptions;
 import be.nbb.cli.util.StandardOptions;
+import be.nbb.cli.util.jaxb.XmlItemReader;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import be.nbb.demetra.toolset.BatchExecutor;
+import be.nbb.demetra.toolset.TsStore;
+import demetra.cli.helpers.TsStoreUtil;
+import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
 import ec.tss.xml.XmlTs;
 import ec.tss.xml.XmlTsCollection;
-import ec.tstoolkit.data.DescriptiveStatistics;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 import joptsimple.OptionParser;
@@ -56,74 +64,92 @@ public final class Ts2DStats implements BasicCommand<Ts2DStats.Parameters> {
         StandardOptions so;
         public InputOptions input;
         public Set<DStatsItem> items;
+        public boolean streaming;
+        public boolean crossSection;
         public OutputOptions output;
     }
 
     @Override
     public void exec(Parameters params) throws Exception {
-        XmlTsCollection col = params.input.read(XmlTsCollection.class);
-        XmlDStatsTsCollection result = process(col);
-        filter(result, params.items);
-        params.output.write(XmlDStatsTsCollection.class, result);
+        if (params.crossSection) {
+            execCrossSection(params);
+            return;
+        }
+        DStatsEngine engine = DStatsEngine.of(params.items);
+        if (TsStoreUtil.isStore(params.input)) {
+            execStore(params, engine);
+        } else if (params.streaming) {
+            execStreaming(params, engine);
+        } else {
+            XmlTsCollection col = params.input.read(XmlTsCollection.class);
+            params.output.write(XmlDStatsTsCollection.class, process(col, engine));
+        }
     }
 
-    @VisibleForTesting
-    static XmlDStatsTsCollection process(XmlTsCollection col) {
-        XmlDStatsTsCollection result = new XmlDStatsTsCollection();
-        result.name = col.name;
-        result.source = col.source;
-        result.identifier = col.identifier;
-        if (col.tslist != null) {
-            result.items = new XmlDStatsTs[col.tslist.length];
-            for (int i = 0; i < result.items.length; i++) {
-                result.items[i] = process(col.tslist[i]);
+    private void execStreaming(Parameters params, DStatsEngine engine) throws IOException {
+        try (XmlItemReader<XmlTs> reader = XmlUtil.newTsReader(params.input)) {
+            XmlTsCollection header = reader.getHeader(XmlTsCollection.class);
+            XmlDStatsTsCollection prototype = newPrototype(header.name, header.source, header.identifier);
+            try (XmlItemWriter<XmlDStatsTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlDStatsTs.class, "dstats_ts")) {
+                XmlUtil.transform(reader, engine::process, writer);
+            }
+        }
+    }
+
+    private void execStore(Parameters params, DStatsEngine engine) throws IOException {
+        try (TsStore store = TsStoreUtil.open(params.input)) {
+            TsCollectionInformation header = store.getHeader();
+            XmlDStatsTsCollection prototype = newPrototype(header.name, header.moniker.getSource(), header.moniker.getId());
+            try (XmlItemWriter<XmlDStatsTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlDStatsTs.class, "dstats_ts")) {
+                XmlUtil.transform(store.asList().iterator(), o -> {
+                    XmlTs ts = new XmlTs();
+                    ts.copy(o);
+                    return engine.process(ts);
+                }, writer);
             }
         }
-        return result;
+    }
+
+    private void execCrossSection(Parameters params) throws IOException {
+        CrossSectionalStats stats = new CrossSectionalStats(params.items);
+        String name;
+        if (TsStoreUtil.isStore(params.input)) {
+            try (TsStore store = TsStoreUtil.open(params.input)) {
+                name = store.getHeader().name;
+                store.asList().forEach(o -> stats.add(o.data));
+            }
+        } else if (params.streaming) {
+            try (XmlItemReader<XmlTs> reader = XmlUtil.newTsReader(params.input)) {
+                name = reader.getHeader(XmlTsCollection.class).name;
+                XmlTs ts;
+                while ((ts = reader.next()) != null) {
+                    stats.add(ts.create().data);
+                }
+            }
+        } else {
+            TsCollectionInformation col = XmlUtil.readTsCollection(params.input);
+            name = col.name;
+            col.items.forEach(o -> stats.add(o.data));
+        }
+        XmlUtil.writeTsCollection(params.output, stats.build(name));
     }
 
     @VisibleForTesting
-    static XmlDStatsTs process(XmlTs ts) {
-        XmlDStatsTs result = new XmlDStatsTs();
-        result.name = ts.name;
-        result.source = ts.source;
-        result.identifier = ts.identifier;
-        DescriptiveStatistics stats = new DescriptiveStatistics(ts.data);
-        result.average = stats.getAverage();
-        result.dataCount = stats.getDataCount();
-        result.kurtosis = stats.getKurtosis();
-        result.max = stats.getMax();
-        result.median = stats.getMedian();
-        result.min = stats.getMin();
-        result.missingValuesCount = stats.getMissingValuesCount();
-        result.observationsCount = stats.getObservationsCount();
-        result.rmse = stats.getRmse();
-        result.skewness = stats.getSkewness();
-        result.stdev = stats.getStdev();
-        result.sum = stats.getSum();
-        result.sumSquare = stats.getSumSquare();
-        result.var = stats.getVar();
+    static XmlDStatsTsCollection process(XmlTsCollection col, DStatsEngine engine) {
+        XmlDStatsTsCollection result = newPrototype(col.name, col.source, col.identifier);
+        result.items = col.tslist != null
+                ? BatchExecutor.getDefault().map(Arrays.asList(col.tslist), engine::process).toArray(new XmlDStatsTs[col.tslist.length])
+                : null;
         return result;
     }
 
-    @VisibleForTesting
-    static void filter(XmlDStatsTsCollection input, Set<DStatsItem> items) {
-        for (XmlDStatsTs o : input.items) {
-            o.average = items.contains(DStatsItem.average) ? o.average : null;
-            o.dataCount = items.contains(DStatsItem.dataCount) ? o.dataCount : null;
-            o.kurtosis = items.contains(DStatsItem.kurtosis) ? o.kurtosis : null;
-            o.max = items.contains(DStatsItem.max) ? o.max : null;
-            o.median = items.contains(DStatsItem.median) ? o.median : null;
-            o.min = items.contains(DStatsItem.min) ? o.min : null;
-            o.missingValuesCount = items.contains(DStatsItem.missingValues) ? o.missingValuesCount : null;
-            o.observationsCount = items.contains(DStatsItem.obs) ? o.observationsCount : null;
-            o.rmse = items.contains(DStatsItem.rmse) ? o.rmse : null;
-            o.skewness = items.contains(DStatsItem.skewness) ? o.skewness : null;
-            o.stdev = items.contains(DStatsItem.stdev) ? o.stdev : null;
-            o.sum = items.contains(DStatsItem.sum) ? o.sum : null;
-            o.sumSquare = items.contains(DStatsItem.sumSquare) ? o.sumSquare : null;
-            o.var = items.contains(DStatsItem.var) ? o.var : null;
-        }
+    private static XmlDStatsTsCollection newPrototype(String name, String source, String identifier) {
+        XmlDStatsTsCollection result = new XmlDStatsTsCollection();
+        result.name = name;
+        result.source = source;
+        result.identifier = identifier;
+        result.items = new XmlDStatsTs[]{new XmlDStatsTs()};
+        return result;
     }
 
     @VisibleForTesting
@@ -132,6 +158,8 @@ public final class Ts2DStats implements BasicCommand<Ts2DStats.Parameters> {
         private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<EnumSet<DStatsItem>> items = new ItemsToIncludeOptionsSpec(parser);
+        private final OptionSpec<Void> streaming = parser.accepts("stream", Bundle.ts2dstats_stream());
+        private final OptionSpec<Void> crossSection = parser.accepts("cross-section", Bundle.ts2dstats_crossSection());
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
 
         @Override
@@ -139,6 +167,8 @@ public final class Ts2DStats implements BasicCommand<Ts2DStats.Parameters> {
             Parameters result = new Parameters();
             result.input = input.value(o);
             result.items = items.value(o);
+            result.streaming = o.has(streaming);
+            result.crossSection = o.has(crossSection);
             result.output = output.value(o);
             result.so = so.value(o);
             return result;
@@ -147,7 +177,9 @@ public final class Ts2DStats implements BasicCommand<Ts2DStats.Parameters> {
 
     @NbBundle.Messages({
         "# {0} - spec list",
-        "ts2dstats.items=Comma-separated list of items to include [{0}]"
+        "ts2dstats.items=Comma-separated list of items to include [{0}]",
+        "ts2dstats.stream=Process time series one at a time (XML only); implied by a store input",
+        "ts2dstats.crossSection=Compute the statistics of each period across the time series, as one time series per item"
     })
     private static final class ItemsToIncludeOptionsSpec implements ComposedOptionSpec<EnumSet<DStatsItem>> {
 
@@ -16,13 +16,13 @@
  */
 package demetra.cli.hackathon;
 
+import be.nbb.demetra.toolset.BatchExecutor;
 import be.nbb.demetra.toolset.Record;
 import ec.tss.TsCollectionInformation;
 import ec.tss.TsInformation;
 import ec.tstoolkit.design.ServiceDefinition;
 import ec.tstoolkit.information.InformationSet;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import lombok.Data;
 import lombok.Value;
@@ -70,7 +70,7 @@ public interface MyCommandTool {
 
     @Nonnull
     default List<InformationSet> create(TsCollectionInformation info, Options options) {
-        return info.items.parallelStream().map(o -> create(o, options).generate()).collect(Collectors.toList());
+        return BatchExecutor.getDefault().map(info.items, o -> create(o, options).generate());
     }
 
     public static MyCommandTool getDefault() {
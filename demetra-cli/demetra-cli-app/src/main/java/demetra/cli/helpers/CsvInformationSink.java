@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import be.nbb.cli.util.Metrics;
+import ec.tss.formatters.CsvInformationFormatter;
+import ec.tstoolkit.information.InformationSet;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * CSV output that accepts results one at a time, as soon as they are produced.
+ * <p>
+ * With a fixed schema, rows are written to the output immediately. Without
+ * it, columns are added as new items appear; rows are then spooled to a
+ * temporary file and copied to the output on close, behind the final header
+ * and padded to its width.
+ * <p>
+ * Rows are formatted by {@link CsvInformationFormatter}, read back as lists of
+ * fields and written field by field, so that quoted fields may contain
+ * separators and line breaks. Rows must be accepted in output order;
+ * instances are not thread-safe.
+ *
+ * @author Philippe Charles
+ */
+public final class CsvInformationSink implements Closeable {
+
+    /**
+     * Creates a sink whose columns are known in advance.
+     *
+     * @param output
+     * @param items the columns
+     * @param fullName
+     * @return a new sink
+     */
+    @Nonnull
+    public static CsvInformationSink of(@Nonnull Writer output, @Nonnull List<String> items, boolean fullName) {
+        return new CsvInformationSink(output, fullName, items, null, null);
+    }
+
+    /**
+     * Creates a sink whose columns are the union of the items of its rows, in
+     * order of appearance.
+     *
+     * @param output
+     * @param fullName
+     * @return a new sink
+     * @throws IOException if the temporary file cannot be created
+     */
+    @Nonnull
+    public static CsvInformationSink of(@Nonnull Writer output, boolean fullName) throws IOException {
+        Path spool = Files.createTempFile("csv", ".tmp");
+        return new CsvInformationSink(output, fullName, Collections.emptyList(), spool, Files.newBufferedWriter(spool, StandardCharsets.UTF_8));
+    }
+
+    private final Writer output;
+    private final boolean fullName;
+    private final List<String> names;
+    private final Set<String> index;
+    private final Path spool;
+    private final Writer spoolWriter;
+    private final CsvInformationFormatter formatter;
+    private List<String> header;
+    private int rows;
+
+    private CsvInformationSink(Writer output, boolean fullName, List<String> items, Path spool, Writer spoolWriter) {
+        this.output = output;
+        this.fullName = fullName;
+        this.names = new ArrayList<>(items);
+        this.index = new HashSet<>(items);
+        this.spool = spool;
+        this.spoolWriter = spoolWriter;
+        this.formatter = new CsvInformationFormatter();
+        this.header = null;
+        this.rows = 0;
+    }
+
+    /**
+     * Writes a row.
+     *
+     * @param row
+     * @throws IOException
+     */
+    public void accept(@Nonnull InformationSet row) throws IOException {
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.SERIALIZE)) {
+            write(row);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.SERIALIZE); Writer closing = output) {
+            if (rows == 0) {
+                formatter.format(output, Collections.emptyList(), names, fullName);
+            } else if (spool != null) {
+                spoolWriter.close();
+                copySpool();
+            }
+        } finally {
+            if (spool != null) {
+                spoolWriter.close();
+                Files.deleteIfExists(spool);
+            }
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private void write(InformationSet row) throws IOException {
+        if (spool != null) {
+            extendSchema(row);
+        }
+        StringWriter buffer = new StringWriter();
+        formatter.format(buffer, Collections.singletonList(row), names, fullName);
+        Reader reader = new StringReader(buffer.toString());
+        List<String> rowHeader = readRecord(reader);
+        List<String> fields = readRecord(reader);
+        if (rowHeader == null) {
+            throw new IOException("Missing header");
+        }
+        if (spool != null) {
+            writeRecord(spoolWriter, fields, rowHeader.size());
+        } else {
+            if (header == null) {
+                writeRecord(output, rowHeader, rowHeader.size());
+            }
+            writeRecord(output, fields, rowHeader.size());
+        }
+        header = rowHeader;
+        rows++;
+    }
+
+    private void extendSchema(InformationSet row) {
+        List<String> tmp = new ArrayList<>();
+        row.fillDictionary(null, tmp);
+        for (String o : tmp) {
+            if (index.add(o)) {
+                names.add(o);
+            }
+        }
+    }
+
+    private void copySpool() throws IOException {
+        writeRecord(output, header, header.size());
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writeRecord(output, readRecord(reader), header.size());
+            }
+        }
+    }
+
+    /**
+     * Writes the fields of a record as they are, padded with empty fields up
+     * to the given width.
+     */
+    static void writeRecord(Writer writer, @Nullable List<String> fields, int width) throws IOException {
+        int size = fields != null ? fields.size() : 0;
+        for (int i = 0; i < width; i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            if (i < size) {
+                writer.write(fields.get(i));
+            }
+        }
+        writer.write(NEW_LINE);
+    }
+
+    /**
+     * Reads the fields of the next record, keeping their quotes so that they
+     * can be written back unchanged.
+     *
+     * @return the fields or null at the end of the input
+     */
+    @Nullable
+    static List<String> readRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (; c != -1; c = reader.read()) {
+            if (c == QUOTE) {
+                quoted = !quoted;
+                field.append((char) c);
+            } else if (quoted) {
+                field.append((char) c);
+            } else if (c == SEPARATOR) {
+                result.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        result.add(field.toString());
+        return result;
+    }
+    //</editor-fold>
+}
@@ -5,23 +5,30 @@
  */
 package demetra.cli.helpers;
 
+import be.nbb.cli.util.Metrics;
+import be.nbb.cli.util.ForkJoinTasks;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.optional;
 import ec.tss.formatters.CsvInformationFormatter;
 import ec.tstoolkit.information.InformationSet;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import static java.util.Arrays.asList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Set;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -65,34 +72,98 @@ public class CsvOutputOptions {
     }
 
     public void write(@Nonnull List<InformationSet> info, List<String> items, boolean fullname) throws IOException {
-        try (Writer wr = writer()) {
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.SERIALIZE); Writer wr = writer()) {
             CsvInformationFormatter fmt = new CsvInformationFormatter();
             fmt.format(wr, info, items, fullname);
         }
     }
 
     public void write(@Nonnull List<InformationSet> info, boolean fullname) throws IOException {
-        try (Writer wr = writer()) {
-            List<String> items = new ArrayList<>();
+        try (Metrics.Timer timer = Metrics.current().start(Metrics.SERIALIZE); Writer wr = writer()) {
+            Set<String> items = new LinkedHashSet<>();
             for (InformationSet set : info) {
-                List<String> tmp = new ArrayList();
+                List<String> tmp = new ArrayList<>();
                 set.fillDictionary(null, tmp);
-                for (String s : tmp){
-                    if (! items.contains(s))
-                        items.add(s);
-                }
+                items.addAll(tmp);
             }
             CsvInformationFormatter fmt = new CsvInformationFormatter();
             fmt.format(wr, info, new ArrayList<>(items), fullname);
         }
     }
-    
-    private Writer writer() throws FileNotFoundException {
+
+    /**
+     * Opens a sink whose rows are written as soon as they are accepted.
+     *
+     * @param items the columns
+     * @param fullname
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public CsvInformationSink openSink(@Nonnull List<String> items, boolean fullname) throws IOException {
+        return CsvInformationSink.of(writer(), items, fullname);
+    }
+
+    /**
+     * Opens a sink whose columns are discovered from its rows.
+     *
+     * @param fullname
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public CsvInformationSink openSink(boolean fullname) throws IOException {
+        Writer writer = writer();
+        try {
+            return CsvInformationSink.of(writer, fullname);
+        } catch (IOException ex) {
+            writer.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Processes a sequence of items in parallel and writes the results in
+     * input order as soon as they are available.
+     *
+     * @param <X>
+     * @param input
+     * @param processor
+     * @param sink
+     * @throws IOException
+     */
+    public static <X> void transform(@Nonnull Iterator<X> input, @Nonnull Function<X, InformationSet> processor, @Nonnull CsvInformationSink sink) throws IOException {
+        try {
+            ForkJoinTasks.forEachOrdered(input, processor, o -> {
+                try {
+                    sink.accept(o);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private Writer writer() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Metrics.current().timed(openStream()), StandardCharsets.UTF_8));
+    }
+
+    private OutputStream openStream() throws IOException {
         if (getFile().isPresent()) {
-            FileOutputStream matrix = new FileOutputStream(getFile().get());
-            return new OutputStreamWriter(matrix, StandardCharsets.ISO_8859_1);
-        } else {
-            return new OutputStreamWriter(System.out, StandardCharsets.ISO_8859_1);
+            return new FileOutputStream(getFile().get());
         }
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import be.nbb.demetra.toolset.BatchExecutor;
+import ec.tss.TsInformation;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.function.IntFunction;
+import javax.annotation.Nonnull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Ranked report of the slowest time series of a batch, with the
+ * characteristics that usually drive the cost of a processing.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+public class SlowItemReport {
+
+    /**
+     * Prints the slowest items of a batch.
+     *
+     * @param stream
+     * @param report the report of the batch
+     * @param input the time series processed by the batch
+     * @param status the invalid data cause of an item by position, if any
+     */
+    public static void print(@Nonnull PrintStream stream, @Nonnull BatchExecutor.Report report, @Nonnull List<TsInformation> input, @Nonnull IntFunction<String> status) {
+        if (report.getSlowest().isEmpty()) {
+            return;
+        }
+        stream.println("Slowest time series:");
+        int rank = 1;
+        for (BatchExecutor.Report.Item o : report.getSlowest()) {
+            TsInformation info = input.get(o.getIndex());
+            String cause = status.apply(o.getIndex());
+            stream.println(String.format("%3d. %.1fms '%s' %s%s", rank++, o.getDuration(), info.name, describe(info.data), cause != null ? " [" + cause + "]" : ""));
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static String describe(TsData data) {
+        if (data == null) {
+            return "(no data)";
+        }
+        if (data.isEmpty()) {
+            return "(empty)";
+        }
+        return String.format("(freq=%d, start=%s, length=%d, missing=%d)",
+                data.getFrequency().intValue(), data.getStart(), data.getLength(), data.getValues().getMissingValuesCount());
+    }
+    //</editor-fold>
+}
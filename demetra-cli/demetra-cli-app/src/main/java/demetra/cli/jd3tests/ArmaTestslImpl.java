@@ -51,7 +51,7 @@ public final class ArmaTestslImpl implements ArmaTestsTool {
         ArmaTestsResults result = new ArmaTestsResults();
         result.setName(info.name);
         try {
-            PreprocessingModel model = TramoSpecification.TRfull.build().process(info.data, null);
+            PreprocessingModel model = PreprocessingCache.get(info.data, TramoSpecification.TRfull);
             SarimaComponent arima = model.description.getArimaComponent();
             result.setPauto(arima.getP());
             result.setQauto(arima.getQ());
@@ -39,7 +39,7 @@ public final class DifferencingTestslImpl implements DifferencingTestsTool {
         DifferencingTestsResults result = new DifferencingTestsResults();
         result.setName(info.name);
         try {
-            PreprocessingModel model = TramoSpecification.TRfull.build().process(info.data, null);
+            PreprocessingModel model = PreprocessingCache.get(info.data, TramoSpecification.TRfull);
             SarimaComponent arima = model.description.getArimaComponent();
             result.setDauto(arima.getD());
             result.setBdauto(arima.getBD());
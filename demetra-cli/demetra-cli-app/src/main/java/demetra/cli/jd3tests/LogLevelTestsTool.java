@@ -16,6 +16,7 @@
  */
 package demetra.cli.jd3tests;
 
+import be.nbb.demetra.toolset.BatchExecutor;
 import demetra.cli.tests.*;
 import be.nbb.demetra.toolset.Record;
 import ec.tss.TsCollectionInformation;
@@ -24,7 +25,6 @@ import ec.tstoolkit.design.ServiceDefinition;
 import ec.tstoolkit.information.InformationSet;
 import ec.tstoolkit.information.StatisticalTest;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import lombok.Data;
 import lombok.Value;
@@ -64,7 +64,7 @@ public interface LogLevelTestsTool {
 
     @Nonnull
     default List<InformationSet> create(TsCollectionInformation info, Options options) {
-        return info.items.parallelStream().map(o -> create(o, options).generate()).collect(Collectors.toList());
+        return BatchExecutor.getDefault().map(info.items, o -> create(o, options).generate());
     }
 
     public static LogLevelTestsTool getDefault() {
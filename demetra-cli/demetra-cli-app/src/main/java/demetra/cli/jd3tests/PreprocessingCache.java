@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.jd3tests;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import ec.tstoolkit.modelling.arima.PreprocessingModel;
+import ec.tstoolkit.modelling.arima.tramo.TramoSpecification;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Bounded cache of TRAMO preprocessing models shared by the diagnostics.
+ * <p>
+ * Models are keyed on the content of the series (domain and values) and on
+ * the specification so that the tests run on the same series reuse a single
+ * RegARIMA fit. Concurrent requests for the same key wait for the first fit.
+ * Cached models are shared and must not be modified.
+ * <p>
+ * The cache is only used while a scope is open, that is when a command runs
+ * several tests per series. Otherwise models are fitted on each request and
+ * nothing is retained.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+class PreprocessingCache {
+
+    /**
+     * System property that overrides the maximum number of cached models.
+     */
+    public static final String SIZE_PROPERTY = "dem.preprocessing.cacheSize";
+
+    /**
+     * Gets the preprocessing model of a series, fitting it if needed.
+     *
+     * @param data
+     * @param spec
+     * @return a model or null if the processing failed
+     */
+    @Nullable
+    public static PreprocessingModel get(@Nonnull TsData data, @Nonnull TramoSpecification spec) {
+        if (SCOPES.get() == 0) {
+            return spec.build().process(data, null);
+        }
+        try {
+            return MODELS.get(new Key(data.getStart(), data.getValues().internalStorage().clone(), spec), () -> Optional.ofNullable(spec.build().process(data, null))).orElse(null);
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    public static CacheStats getStats() {
+        return MODELS.stats();
+    }
+
+    /**
+     * Enables the cache until the returned scope is closed; the models are
+     * released when the last open scope is closed.
+     *
+     * @return
+     */
+    @Nonnull
+    public static Scope open() {
+        SCOPES.incrementAndGet();
+        return new Scope();
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private boolean closed = false;
+
+        private Scope() {
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (SCOPES.decrementAndGet() == 0) {
+                    MODELS.invalidateAll();
+                }
+            }
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int DEFAULT_SIZE = 512;
+
+    private static final Cache<Key, Optional<PreprocessingModel>> MODELS = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE))
+            .recordStats()
+            .build();
+
+    private static final AtomicInteger SCOPES = new AtomicInteger();
+
+    @Value
+    private static class Key {
+
+        TsPeriod start;
+        double[] values;
+        TramoSpecification spec;
+    }
+    //</editor-fold>
+}
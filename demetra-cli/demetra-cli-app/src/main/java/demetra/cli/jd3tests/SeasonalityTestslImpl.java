@@ -40,7 +40,7 @@ public final class SeasonalityTestslImpl implements SeasonalityTestsTool {
         SeasonalityTestsResults result = new SeasonalityTestsResults();
         result.setName(info.name);
         try {
-            PreprocessingModel model = TramoSpecification.TRfull.build().process(info.data, null);
+            PreprocessingModel model = PreprocessingCache.get(info.data, TramoSpecification.TRfull);
             result.setSeas(model.description.getArimaComponent().getSpecification().hasSeasonalPart());
             try {
                 FTest ftest = new FTest();
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.jd3tests;
+
+import be.nbb.cli.util.BasicCliLauncher;
+import be.nbb.cli.util.BasicCommand;
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.StandardOptions;
+import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newInputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
+import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
+import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.BatchExecutor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import demetra.cli.helpers.CsvOutputOptions;
+import static demetra.cli.helpers.CsvOutputOptions.newCsvOutputOptionsSpec;
+import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.xml.XmlTsCollection;
+import ec.tstoolkit.information.InformationSet;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import lombok.AllArgsConstructor;
+import org.openide.util.NbBundle;
+
+/**
+ * Computes several diagnostics from time series in a single pass.
+ * <p>
+ * The input is parsed once and the selected tests of a series are run by the
+ * same task so that they share its preprocessing model when more than one of
+ * them needs it. The results are
+ * written as one wide CSV whose columns are prefixed by the diagnostic name.
+ *
+ * @author Philippe Charles
+ */
+public final class Ts2Diagnostics implements BasicCommand<Ts2Diagnostics.Parameters> {
+
+    @CommandRegistration
+    public static void main(String[] args) {
+        BasicCliLauncher.run(args, Parser::new, Ts2Diagnostics::new, o -> o.so);
+    }
+
+    @AllArgsConstructor
+    public static class Parameters {
+
+        StandardOptions so;
+        public InputOptions input;
+        public Set<Diagnostic> diagnostics;
+        public HrTestsTool.Options hr;
+        public CsvOutputOptions output;
+    }
+
+    @Override
+    public void exec(Parameters params) throws Exception {
+        TsCollectionInformation input = XmlUtil.readValue(params.input, XmlTsCollection.class);
+
+        if (params.so.isVerbose()) {
+            System.err.println("Processing " + input.items.size() + " time series with " + params.diagnostics);
+        }
+
+        List<InformationSet> output;
+        if (sharesPreprocessing(params.diagnostics)) {
+            try (PreprocessingCache.Scope scope = PreprocessingCache.open()) {
+                output = BatchExecutor.getDefault().map(input.items, o -> process(o, params.diagnostics, params.hr));
+            }
+            if (params.so.isVerbose()) {
+                System.err.println("Preprocessing cache: " + PreprocessingCache.getStats());
+            }
+        } else {
+            output = BatchExecutor.getDefault().map(input.items, o -> process(o, params.diagnostics, params.hr));
+        }
+
+        params.output.write(output, items(output, params.diagnostics), true);
+    }
+
+    @VisibleForTesting
+    static InformationSet process(TsInformation info, Set<Diagnostic> diagnostics, HrTestsTool.Options hr) {
+        InformationSet result = new InformationSet();
+        result.set("series", info.name);
+        for (Diagnostic o : diagnostics) {
+            result.set(o.name(), process(info, o, hr));
+        }
+        return result;
+    }
+
+    /**
+     * Columns of the output, grouped by diagnostic. The items of the
+     * diagnostics that output their whole dictionary are collected in a
+     * single pass over the results, in order of appearance.
+     */
+    @VisibleForTesting
+    static List<String> items(List<InformationSet> output, Set<Diagnostic> diagnostics) {
+        Set<String> found = new LinkedHashSet<>();
+        if (diagnostics.stream().anyMatch(o -> getFixedItems(o) == null)) {
+            List<String> tmp = new ArrayList<>();
+            for (InformationSet set : output) {
+                tmp.clear();
+                set.fillDictionary(null, tmp);
+                found.addAll(tmp);
+            }
+        }
+        Set<String> result = new LinkedHashSet<>();
+        result.add("series");
+        for (Diagnostic o : diagnostics) {
+            String prefix = o.name() + ".";
+            List<String> items = getFixedItems(o);
+            if (items != null) {
+                items.forEach(item -> result.add(prefix + item));
+            } else {
+                found.stream()
+                        .filter(item -> item.startsWith(prefix) && !item.equals(prefix + "series"))
+                        .forEach(result::add);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    @VisibleForTesting
+    static final class Parser extends JOptSimpleArgsParser<Parameters> {
+
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
+        private final ComposedOptionSpec<EnumSet<Diagnostic>> diagnostics = new DiagnosticsOptionsSpec(parser);
+        private final ComposedOptionSpec<HrTestsTool.Options> hr = new HrOptionsSpec(parser);
+        private final ComposedOptionSpec<CsvOutputOptions> output = newCsvOutputOptionsSpec(parser);
+
+        @Override
+        protected Parameters parse(OptionSet o) {
+            return new Parameters(so.value(o), input.value(o), diagnostics.value(o), hr.value(o), output.value(o));
+        }
+    }
+
+    @NbBundle.Messages({
+        "# {0} - diagnostic list",
+        "ts2diagnostics.diagnostics=Comma-separated list of diagnostics to compute [{0}]"
+    })
+    private static final class DiagnosticsOptionsSpec implements ComposedOptionSpec<EnumSet<Diagnostic>> {
+
+        private final OptionSpec<Diagnostic> diagnostics;
+
+        public DiagnosticsOptionsSpec(OptionParser p) {
+            Joiner joiner = Joiner.on(", ");
+            this.diagnostics = p
+                    .accepts("include", Bundle.ts2diagnostics_diagnostics(joiner.join(Diagnostic.values())))
+                    .withRequiredArg()
+                    .ofType(Diagnostic.class)
+                    .withValuesSeparatedBy(',');
+        }
+
+        @Override
+        public EnumSet<Diagnostic> value(OptionSet o) {
+            return o.has(diagnostics) ? EnumSet.copyOf(diagnostics.values(o)) : EnumSet.allOf(Diagnostic.class);
+        }
+    }
+
+    @NbBundle.Messages({
+        "ts2diagnostics.p=Regular AR order of the hr diagnostic",
+        "ts2diagnostics.bp=Seasonal AR order of the hr diagnostic",
+        "ts2diagnostics.q=Regular MA order of the hr diagnostic",
+        "ts2diagnostics.bq=Seasonal MA order of the hr diagnostic"
+    })
+    private static final class HrOptionsSpec implements ComposedOptionSpec<HrTestsTool.Options> {
+
+        private final OptionSpec<Integer> p;
+        private final OptionSpec<Integer> q;
+        private final OptionSpec<Integer> bp;
+        private final OptionSpec<Integer> bq;
+
+        public HrOptionsSpec(OptionParser p) {
+            this.p = p.accepts("p", Bundle.ts2diagnostics_p()).withRequiredArg().ofType(Integer.class).defaultsTo(0);
+            this.q = p.accepts("q", Bundle.ts2diagnostics_q()).withRequiredArg().ofType(Integer.class).defaultsTo(1);
+            this.bp = p.accepts("bp", Bundle.ts2diagnostics_bp()).withRequiredArg().ofType(Integer.class).defaultsTo(0);
+            this.bq = p.accepts("bq", Bundle.ts2diagnostics_bq()).withRequiredArg().ofType(Integer.class).defaultsTo(1);
+        }
+
+        @Override
+        public HrTestsTool.Options value(OptionSet o) {
+            return new HrTestsTool.Options(p.value(o), bp.value(o), q.value(o), bq.value(o));
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static InformationSet process(TsInformation info, Diagnostic diagnostic, HrTestsTool.Options hr) {
+        switch (diagnostic) {
+            case seasonality:
+                return SeasonalityTestsTool.getDefault().create(info, new SeasonalityTestsTool.Options()).generate();
+            case differencing:
+                return DifferencingTestsTool.getDefault().create(info, new DifferencingTestsTool.Options()).generate();
+            case arma:
+                return ArmaTestsTool.getDefault().create(info, new ArmaTestsTool.Options()).generate();
+            case hr:
+                return HrTestsTool.getDefault().create(info, hr).generate();
+            case tradingdays:
+                return TradingDaysTestsTool.getDefault().create(info, new TradingDaysTestsTool.Options()).generate();
+            case outliers:
+                return OutliersTestsTool.getDefault().create(info, new OutliersTestsTool.Options()).generate();
+            case loglevel:
+                return LogLevelTestsTool.getDefault().create(info, new LogLevelTestsTool.Options()).generate();
+            default:
+                throw new IllegalArgumentException(diagnostic.name());
+        }
+    }
+
+    /**
+     * Checks if several diagnostics are computed on the TRAMO preprocessing
+     * model of the series, so that caching the model saves fits.
+     */
+    @VisibleForTesting
+    static boolean sharesPreprocessing(Set<Diagnostic> diagnostics) {
+        return diagnostics.stream().filter(Ts2Diagnostics::usesPreprocessing).count() > 1;
+    }
+
+    private static boolean usesPreprocessing(Diagnostic diagnostic) {
+        switch (diagnostic) {
+            case seasonality:
+            case differencing:
+            case arma:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Items of the diagnostics whose individual commands select their output;
+     * the others output their whole dictionary.
+     */
+    private static List<String> getFixedItems(Diagnostic diagnostic) {
+        switch (diagnostic) {
+            case seasonality:
+                return Ts2SeasonalityTests.ITEMS;
+            case tradingdays:
+                return Ts2TradingDaysTests.ITEMS;
+            case outliers:
+                return Ts2OutliersTests.ITEMS;
+            default:
+                return null;
+        }
+    }
+    //</editor-fold>
+}
@@ -30,10 +30,10 @@ import joptsimple.OptionSet;
 import be.nbb.cli.util.BasicCommand;
 import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import demetra.cli.helpers.CsvInformationSink;
 import demetra.cli.helpers.CsvOutputOptions;
 import static demetra.cli.helpers.CsvOutputOptions.newCsvOutputOptionsSpec;
 import demetra.cli.helpers.XmlUtil;
-import ec.tstoolkit.information.InformationSet;
 import java.util.ArrayList;
 import java.util.List;
 import joptsimple.OptionSpec;
@@ -75,9 +75,10 @@ public final class Ts2HrTests implements BasicCommand<Ts2HrTests.Parameters> {
             System.err.println("Processing " + input.items.size() + " time series");
         }
 
-        List<InformationSet> output = HrTestsTool.getDefault().create(input, params.spec);
-
-        params.output.write(output, false);
+        HrTestsTool tool = HrTestsTool.getDefault();
+        try (CsvInformationSink sink = params.output.openSink(false)) {
+            CsvOutputOptions.transform(input.items.iterator(), o -> tool.create(o, params.spec).generate(), sink);
+        }
     }
 
     @VisibleForTesting
@@ -18,6 +18,7 @@ package demetra.cli.jd3tests;
 
 import demetra.cli.tests.*;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
 import be.nbb.cli.util.BasicCliLauncher;
 import be.nbb.cli.util.InputOptions;
@@ -31,10 +32,10 @@ import joptsimple.OptionSet;
 import be.nbb.cli.util.BasicCommand;
 import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import demetra.cli.helpers.CsvInformationSink;
 import demetra.cli.helpers.CsvOutputOptions;
 import static demetra.cli.helpers.CsvOutputOptions.newCsvOutputOptionsSpec;
 import demetra.cli.helpers.XmlUtil;
-import ec.tstoolkit.information.InformationSet;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -52,13 +53,15 @@ public final class Ts2OutliersTests implements BasicCommand<Ts2OutliersTests.Par
         BasicCliLauncher.run(args, Parser::new, Ts2OutliersTests::new, o -> o.so);
     }
 
+    /**
+     * Items of the tests, also used by {@link Ts2Diagnostics}.
+     */
+    static final List<String> ITEMS = ImmutableList.of("ftest:3", "ftestami:3", "kruskalwallis:3", "friedman:3");
+
     private List<String> items() {
         List<String> items = new ArrayList<>();
         items.add("series");
-        items.add("ftest:3");
-        items.add("ftestami:3");
-        items.add("kruskalwallis:3");
-        items.add("friedman:3");
+        items.addAll(ITEMS);
         return items;
     }
 
@@ -79,9 +82,10 @@ public final class Ts2OutliersTests implements BasicCommand<Ts2OutliersTests.Par
             System.err.println("Processing " + input.items.size() + " time series");
         }
 
-        List<InformationSet> output = OutliersTestsTool.getDefault().create(input, params.spec);
-
-        params.output.write(output, items(), false);
+        OutliersTestsTool tool = OutliersTestsTool.getDefault();
+        try (CsvInformationSink sink = params.output.openSink(items(), false)) {
+            CsvOutputOptions.transform(input.items.iterator(), o -> tool.create(o, params.spec).generate(), sink);
+        }
     }
 
     @VisibleForTesting
@@ -30,10 +30,10 @@ import joptsimple.OptionSet;
 import be.nbb.cli.util.BasicCommand;
 import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import demetra.cli.helpers.CsvInformationSink;
 import demetra.cli.helpers.CsvOutputOptions;
 import static demetra.cli.helpers.CsvOutputOptions.newCsvOutputOptionsSpec;
 import demetra.cli.helpers.XmlUtil;
-import ec.tstoolkit.information.InformationSet;
 import java.util.Arrays;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -72,9 +72,10 @@ public final class StmAirline implements BasicCommand<StmAirline.Parameters> {
             System.err.println("Processing " + input.items.size() + " time series");
         }
 
-        List<InformationSet> output = StmAirlineTool.getDefault().create(input, params.spec);
-
-        params.output.write(output, items(), false);
+        StmAirlineTool tool = StmAirlineTool.getDefault();
+        try (CsvInformationSink sink = params.output.openSink(items(), false)) {
+            CsvOutputOptions.transform(input.items.iterator(), o -> tool.create(o, params.spec).generate(), sink);
+        }
     }
 
     @VisibleForTesting
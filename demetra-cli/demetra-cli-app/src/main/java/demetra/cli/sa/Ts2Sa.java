@@ -16,7 +16,9 @@
  */
 package demetra.cli.sa;
 
+import be.nbb.demetra.toolset.ColumnarTsCollection;
 import be.nbb.demetra.toolset.SaTool;
+import be.nbb.demetra.toolset.TsStore;
 import com.google.common.annotations.VisibleForTesting;
 import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
 import be.nbb.cli.util.BasicCliLauncher;
@@ -24,17 +26,27 @@ import be.nbb.cli.util.InputOptions;
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newInputOptionsSpec;
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec;
 import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.optional;
 import be.nbb.cli.util.OutputOptions;
 import be.nbb.cli.util.StandardOptions;
+import com.google.common.base.Joiner;
 import ec.tss.TsCollectionInformation;
 import ec.tss.xml.XmlTsCollection;
+import java.io.File;
+import java.util.Optional;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import be.nbb.cli.util.BasicCommand;
 import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import be.nbb.cli.util.jaxb.XmlItemReader;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import demetra.cli.helpers.SlowItemReport;
+import demetra.cli.helpers.TsStoreUtil;
 import demetra.cli.helpers.XmlUtil;
+import ec.tss.xml.XmlTs;
+import java.io.IOException;
 import org.openide.util.NbBundle;
 
 /**
@@ -55,35 +67,117 @@ public final class Ts2Sa implements BasicCommand<Ts2Sa.Parameters> {
         public InputOptions input;
         public SaTool.Options saOptions;
         public OutputOptions output;
+        public boolean streaming;
+        public Optional<File> previous;
+        public SaTool.RefreshPolicy refresh;
     }
 
     @Override
     public void exec(Parameters params) throws Exception {
-        TsCollectionInformation input = XmlUtil.readValue(params.input, XmlTsCollection.class);
+        boolean store = TsStoreUtil.isStore(params.input);
+
+        if ((params.streaming || store) && params.previous.isPresent()) {
+            throw new IllegalArgumentException("Incremental processing is not available in streaming mode");
+        }
+
+        if (store) {
+            execStore(params);
+            return;
+        }
+
+        if (params.streaming) {
+            execStreaming(params);
+            return;
+        }
+
+        ColumnarTsCollection input = XmlUtil.readColumnarTsCollection(params.input);
 
         if (params.so.isVerbose()) {
-            System.err.println("Processing " + input.items.size() + " time series");
+            System.err.println("Processing " + input.size() + " time series");
         }
 
-        SaTool.SaTsCollection output = SaTool.getDefault().create(input, params.saOptions);
+        SaTool.SaTsCollection output = params.previous.isPresent()
+                ? SaTool.getDefault().create(input, params.saOptions, readPrevious(params.previous.get()), params.refresh)
+                : SaTool.getDefault().create(input, params.saOptions);
+
+        if (params.so.isVerbose() && output.getReport() != null) {
+            if (params.previous.isPresent()) {
+                System.err.println("Reusing " + (output.getItems().size() - output.getReport().getCount()) + " unchanged time series");
+            }
+            System.err.println(output.getReport());
+            SlowItemReport.print(System.err, output.getReport(), input.asList(), i -> output.getItems().get(i).getInvalidDataCause());
+        }
 
         XmlUtil.writeValue(params.output, XmlSaTsCollection.class, output);
     }
 
+    private void execStreaming(Parameters params) throws IOException {
+        SaTool tool = SaTool.getDefault();
+        try (XmlItemReader<XmlTs> reader = XmlUtil.newTsReader(params.input)) {
+            XmlSaTsCollection prototype = newPrototype(reader.getHeader(XmlTsCollection.class).create(), params.saOptions);
+            try (XmlItemWriter<XmlSaTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlSaTs.class, "sa_ts")) {
+                XmlUtil.transform(reader, o -> toXml(tool.create(o.create(), params.saOptions)), writer);
+            }
+        }
+    }
+
+    private void execStore(Parameters params) throws IOException {
+        SaTool tool = SaTool.getDefault();
+        try (TsStore store = TsStoreUtil.open(params.input)) {
+            if (params.so.isVerbose()) {
+                System.err.println("Processing " + store.size() + " time series");
+            }
+            XmlSaTsCollection prototype = newPrototype(store.getHeader(), params.saOptions);
+            try (XmlItemWriter<XmlSaTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlSaTs.class, "sa_ts")) {
+                XmlUtil.transform(store.asList().iterator(), o -> toXml(tool.create(o, params.saOptions)), writer);
+            }
+        }
+    }
+
+    private static XmlSaTsCollection newPrototype(TsCollectionInformation input, SaTool.Options options) {
+        XmlSaTsCollection result = new XmlSaTsCollection();
+        result.name = input.name;
+        result.source = input.moniker.getSource();
+        result.identifier = input.moniker.getId();
+        result.algorithm = options.getAlgorithm();
+        result.spec = options.getSpec();
+        result.items = new XmlSaTs[]{new XmlSaTs()};
+        return result;
+    }
+
+    private static SaTool.SaTsCollection readPrevious(File file) throws IOException {
+        return XmlUtil.readValue(InputOptions.create(Optional.of(file), Optional.empty()), XmlSaTsCollection.class);
+    }
+
+    private static XmlSaTs toXml(SaTool.SaTs ts) {
+        XmlSaTs result = new XmlSaTs();
+        result.copy(ts);
+        return result;
+    }
+
     @VisibleForTesting
     static final class Parser extends JOptSimpleArgsParser<Parameters> {
 
-        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser, true);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<SaTool.Options> saOptions = new SaOptionsSpec(parser);
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
+        private final OptionSpec<Void> streaming = parser.accepts("stream", Bundle.ts2sa_stream());
+        private final OptionSpec<File> previous = parser.accepts("previous", Bundle.ts2sa_previous()).withRequiredArg().ofType(File.class);
+        private final OptionSpec<SaTool.RefreshPolicy> refresh = parser.accepts("refresh", Bundle.ts2sa_refresh(Joiner.on(", ").join(SaTool.RefreshPolicy.values()))).withRequiredArg().ofType(SaTool.RefreshPolicy.class);
 
         @Override
         protected Parameters parse(OptionSet o) {
+            if (o.has(refresh) && !o.has(previous)) {
+                throw new IllegalArgumentException("Option refresh requires option previous");
+            }
             Parameters result = new Parameters();
             result.input = input.value(o);
             result.saOptions = saOptions.value(o);
             result.output = output.value(o);
+            result.streaming = o.has(streaming);
+            result.previous = Optional.ofNullable(previous.value(o));
+            result.refresh = optional(o, refresh).orElse(SaTool.RefreshPolicy.full);
             result.so = so.value(o);
             return result;
         }
@@ -92,7 +186,11 @@ public final class Ts2Sa implements BasicCommand<Ts2Sa.Parameters> {
     @NbBundle.Messages({
         "ts2sa.algorithm=Algorithm",
         "ts2sa.spec=Specification",
-        "ts2sa.items=Comma-separated list of items to include"
+        "ts2sa.items=Comma-separated list of items to include",
+        "ts2sa.stream=Process time series one at a time (XML only); implied by a store input",
+        "ts2sa.previous=Previous output from which unchanged time series are reused",
+        "# {0} - policy list",
+        "ts2sa.refresh=Part of the previous model that is kept for changed time series; requires previous [{0}] (default: full)"
     })
     private static final class SaOptionsSpec implements ComposedOptionSpec<SaTool.Options> {
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.sa;
+
+import be.nbb.demetra.toolset.SaTool;
+import ec.tss.xml.IXmlConverter;
+import ec.tss.xml.XmlTsPeriod;
+import ec.tstoolkit.timeseries.regression.OutlierType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlList;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public final class XmlSaModel implements IXmlConverter<SaTool.SaModel> {
+
+    @XmlAttribute
+    public boolean log;
+    @XmlAttribute
+    public boolean mean;
+    @XmlAttribute
+    public int p;
+    @XmlAttribute
+    public int d;
+    @XmlAttribute
+    public int q;
+    @XmlAttribute
+    public int bp;
+    @XmlAttribute
+    public int bd;
+    @XmlAttribute
+    public int bq;
+    @XmlList
+    public double[] parameters;
+    @XmlAttribute
+    public boolean tradingDays;
+    @XmlAttribute
+    public boolean easter;
+    @XmlElement(name = "outlier")
+    public XmlOutlier[] outliers;
+
+    @Override
+    public SaTool.SaModel create() {
+        List<SaTool.Outlier> list = outliers != null
+                ? Arrays.stream(outliers).map(XmlOutlier::create).collect(Collectors.toList())
+                : Collections.emptyList();
+        return new SaTool.SaModel(log, mean, p, d, q, bp, bd, bq, parameters != null ? parameters : new double[0], list, tradingDays, easter);
+    }
+
+    @Override
+    public void copy(SaTool.SaModel t) {
+        log = t.isLog();
+        mean = t.isMean();
+        p = t.getP();
+        d = t.getD();
+        q = t.getQ();
+        bp = t.getBp();
+        bd = t.getBd();
+        bq = t.getBq();
+        parameters = t.getParameters();
+        tradingDays = t.isTradingDays();
+        easter = t.isEaster();
+        outliers = t.getOutliers().isEmpty() ? null : t.getOutliers().stream().map(XmlOutlier::of).toArray(XmlOutlier[]::new);
+    }
+
+    public static final class XmlOutlier implements IXmlConverter<SaTool.Outlier> {
+
+        @XmlAttribute
+        public OutlierType type;
+        @XmlElement
+        public XmlTsPeriod position;
+
+        @Override
+        public SaTool.Outlier create() {
+            return new SaTool.Outlier(type, position.create());
+        }
+
+        @Override
+        public void copy(SaTool.Outlier t) {
+            type = t.getType();
+            position = new XmlTsPeriod();
+            position.copy(t.getPosition());
+        }
+
+        static XmlOutlier of(SaTool.Outlier t) {
+            XmlOutlier result = new XmlOutlier();
+            result.copy(t);
+            return result;
+        }
+    }
+}
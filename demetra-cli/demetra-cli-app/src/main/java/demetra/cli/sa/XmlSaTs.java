@@ -43,10 +43,14 @@ public final class XmlSaTs implements IXmlConverter<SaTool.SaTs> {
     public String algorithm;
     @XmlAttribute
     public String spec;
+    @XmlAttribute
+    public String fingerprint;
     @XmlElement(name = "sa")
     public XmlTsData[] values;
     @XmlElement
     public String invalidDataCause;
+    @XmlElement
+    public XmlSaModel model;
 
     @Override
     public SaTool.SaTs create() {
@@ -55,6 +59,8 @@ public final class XmlSaTs implements IXmlConverter<SaTool.SaTs> {
         result.setMoniker(TsMoniker.createDynamicMoniker());
         result.setAlgorithm(algorithm);
         result.setSpec(spec);
+        result.setFingerprint(fingerprint);
+        result.setModel(model != null ? model.create() : null);
         if (invalidDataCause == null && values != null) {
             result.setData(Arrays.asList(values).stream().filter(o-> o.data != null ).collect(Collectors.toMap(o -> o.name, o -> o.create())));
             result.setInvalidDataCause(null);
@@ -72,6 +78,11 @@ public final class XmlSaTs implements IXmlConverter<SaTool.SaTs> {
         identifier = t.getMoniker().getId();
         algorithm = t.getAlgorithm();
         spec = t.getSpec();
+        fingerprint = t.getFingerprint();
+        if (t.getModel() != null) {
+            model = new XmlSaModel();
+            model.copy(t.getModel());
+        }
         if (t.getInvalidDataCause() == null) {
             values = t.getData().entrySet().stream().map(o -> convert(o)).toArray(o -> new XmlTsData[o]);
         } else {
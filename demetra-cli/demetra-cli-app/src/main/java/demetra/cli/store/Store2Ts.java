@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.store;
+
+import be.nbb.cli.util.BasicCliLauncher;
+import be.nbb.cli.util.BasicCommand;
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.OutputOptions;
+import be.nbb.cli.util.StandardOptions;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newInputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
+import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
+import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.TsStore;
+import com.google.common.annotations.VisibleForTesting;
+import static com.google.common.net.MediaType.XML_UTF_8;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_COLLECTION_XML;
+import demetra.cli.helpers.TsStoreUtil;
+import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.xml.XmlTs;
+import ec.tss.xml.XmlTsCollection;
+import joptsimple.OptionSet;
+import lombok.AllArgsConstructor;
+
+/**
+ * Reads time series from a memory-mapped store.
+ * <p>
+ * XML outputs are written one series at a time; other formats need the whole
+ * collection in memory.
+ *
+ * @author Philippe Charles
+ */
+public final class Store2Ts implements BasicCommand<Store2Ts.Parameters> {
+
+    @CommandRegistration
+    public static void main(String[] args) {
+        BasicCliLauncher.run(args, Parser::new, Store2Ts::new, o -> o.so);
+    }
+
+    @AllArgsConstructor
+    public static class Parameters {
+
+        StandardOptions so;
+        public InputOptions input;
+        public OutputOptions output;
+    }
+
+    @Override
+    public void exec(Parameters params) throws Exception {
+        try (TsStore store = TsStoreUtil.open(params.input)) {
+            if (params.so.isVerbose()) {
+                System.err.println("Reading " + store.size() + " time series");
+            }
+            if (XML_UTF_8.is(params.output.getMediaType()) || TS_COLLECTION_XML.is(params.output.getMediaType())) {
+                XmlTsCollection prototype = new XmlTsCollection();
+                prototype.copy(store.getHeader());
+                prototype.tslist = new XmlTs[]{new XmlTs()};
+                try (XmlItemWriter<XmlTs> writer = XmlUtil.newItemWriter(params.output, prototype, XmlTs.class, "ts")) {
+                    for (TsInformation o : store.asList()) {
+                        writer.write(toXml(o));
+                    }
+                }
+            } else {
+                TsCollectionInformation result = store.getHeader();
+                result.items.addAll(store.asList());
+                XmlUtil.writeTsCollection(params.output, result);
+            }
+        }
+    }
+
+    private static XmlTs toXml(TsInformation info) {
+        XmlTs result = new XmlTs();
+        result.copy(info);
+        return result;
+    }
+
+    @VisibleForTesting
+    static final class Parser extends JOptSimpleArgsParser<Parameters> {
+
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
+        private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
+
+        @Override
+        protected Parameters parse(OptionSet o) {
+            return new Parameters(so.value(o), input.value(o), output.value(o));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.store;
+
+import be.nbb.cli.util.BasicCliLauncher;
+import be.nbb.cli.util.BasicCommand;
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.OutputOptions;
+import be.nbb.cli.util.StandardOptions;
+import be.nbb.cli.util.jaxb.XmlItemReader;
+import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newInputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newOutputOptionsSpec;
+import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSpec;
+import be.nbb.cli.util.joptsimple.JOptSimpleArgsParser;
+import be.nbb.cli.util.proc.CommandRegistration;
+import be.nbb.demetra.toolset.TsStore;
+import com.google.common.annotations.VisibleForTesting;
+import static com.google.common.net.MediaType.XML_UTF_8;
+import static demetra.cli.helpers.DemetraMediaTypes.TS_COLLECTION_XML;
+import demetra.cli.helpers.TsStoreUtil;
+import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.xml.XmlTs;
+import ec.tss.xml.XmlTsCollection;
+import java.io.IOException;
+import joptsimple.OptionSet;
+import lombok.AllArgsConstructor;
+
+/**
+ * Writes time series into a memory-mapped store.
+ * <p>
+ * XML inputs are read one series at a time so that collections larger than
+ * the heap can be converted.
+ *
+ * @author Philippe Charles
+ */
+public final class Ts2Store implements BasicCommand<Ts2Store.Parameters> {
+
+    @CommandRegistration
+    public static void main(String[] args) {
+        BasicCliLauncher.run(args, Parser::new, Ts2Store::new, o -> o.so);
+    }
+
+    @AllArgsConstructor
+    public static class Parameters {
+
+        StandardOptions so;
+        public InputOptions input;
+        public OutputOptions output;
+    }
+
+    @Override
+    public void exec(Parameters params) throws Exception {
+        int count = XML_UTF_8.is(params.input.getMediaType()) || TS_COLLECTION_XML.is(params.input.getMediaType())
+                ? copyStreaming(params)
+                : copy(params);
+
+        if (params.so.isVerbose()) {
+            System.err.println("Stored " + count + " time series");
+        }
+    }
+
+    private static int copyStreaming(Parameters params) throws IOException {
+        try (XmlItemReader<XmlTs> reader = XmlUtil.newTsReader(params.input)) {
+            try (TsStore.Writer writer = TsStoreUtil.create(params.output, reader.getHeader(XmlTsCollection.class).create())) {
+                int result = 0;
+                XmlTs item;
+                while ((item = reader.next()) != null) {
+                    writer.add(item.create());
+                    result++;
+                }
+                writer.commit();
+                return result;
+            }
+        }
+    }
+
+    private static int copy(Parameters params) throws IOException {
+        TsCollectionInformation input = XmlUtil.readTsCollection(params.input);
+        try (TsStore.Writer writer = TsStoreUtil.create(params.output, input)) {
+            for (TsInformation o : input.items) {
+                writer.add(o);
+            }
+            writer.commit();
+        }
+        return input.items.size();
+    }
+
+    @VisibleForTesting
+    static final class Parser extends JOptSimpleArgsParser<Parameters> {
+
+        private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
+        private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
+        private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
+
+        @Override
+        protected Parameters parse(OptionSet o) {
+            return new Parameters(so.value(o), input.value(o), output.value(o));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.various;
+
+import be.nbb.demetra.toolset.BatchExecutor;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import ec.tss.TsInformation;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsAggregator;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Aggregates time series into every node of a hierarchy.
+ * <p>
+ * Each series is attached to a node by its path of codes, from the top level
+ * down; a node aggregates its own series and its children. The members of
+ * every node are first summed by chunks in parallel, then the nodes are
+ * reduced level by level from the bottom, each level in parallel, so that
+ * every series is read once whatever the depth of the hierarchy. Weights are
+ * applied to the series and therefore carried to all their ancestors.
+ *
+ * @author Philippe Charles
+ */
+final class HierarchicalAggregator {
+
+    static final String SEPARATOR = "/";
+
+    private final List<String> levels;
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param levels the names of the levels, used as metadata keys of the
+     * nodes; may be shorter than the paths
+     */
+    HierarchicalAggregator(@Nonnull List<String> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Aggregates a list of series.
+     *
+     * @param input
+     * @param paths the path of a series by position; an empty path attaches
+     * the series to the root
+     * @param weights the weight of a series by position
+     * @param rootName the name of the root node
+     * @return the root followed by the other nodes in depth-first order
+     */
+    @Nonnull
+    List<TsInformation> aggregate(@Nonnull List<TsInformation> input, @Nonnull IntFunction<List<String>> paths, @Nonnull IntToDoubleFunction weights, @Nonnull String rootName) {
+        Node root = new Node(new ArrayList<>());
+        List<List<Node>> depths = new ArrayList<>();
+        depths.add(new ArrayList<>());
+        depths.get(0).add(root);
+        for (int i = 0; i < input.size(); i++) {
+            if (input.get(i).data != null) {
+                root.lookup(paths.apply(i), depths).members.add(i);
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (List<Node> depth : depths) {
+            for (Node node : depth) {
+                for (List<Integer> members : Lists.partition(node.members, CHUNK_SIZE)) {
+                    Chunk chunk = new Chunk(members);
+                    node.chunks.add(chunk);
+                    chunks.add(chunk);
+                }
+            }
+        }
+        BatchExecutor executor = BatchExecutor.getDefault().unobserved();
+        executor.map(chunks, o -> o.sum(input, weights));
+
+        for (int i = depths.size() - 1; i >= 0; i--) {
+            executor.map(depths.get(i), Node::reduce);
+        }
+
+        List<TsInformation> result = new ArrayList<>();
+        root.collect(rootName, result);
+        return result;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int CHUNK_SIZE = 1024;
+    private static final Joiner JOINER = Joiner.on(SEPARATOR);
+
+    private static final class Chunk {
+
+        private final List<Integer> members;
+        private TsData sum;
+
+        private Chunk(List<Integer> members) {
+            this.members = members;
+        }
+
+        private Chunk sum(List<TsInformation> input, IntToDoubleFunction weights) {
+            TsAggregator agg = new TsAggregator();
+            for (int i : members) {
+                agg.add(input.get(i).data, weights.applyAsDouble(i));
+            }
+            sum = agg.sum();
+            return this;
+        }
+    }
+
+    private final class Node {
+
+        private final List<String> path;
+        private final Map<String, Node> children = new TreeMap<>();
+        private final List<Integer> members = new ArrayList<>();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private TsData sum;
+
+        private Node(List<String> path) {
+            this.path = path;
+        }
+
+        private Node lookup(List<String> codes, List<List<Node>> depths) {
+            Node result = this;
+            for (String o : codes) {
+                Node parent = result;
+                result = parent.children.computeIfAbsent(o, k -> parent.newChild(k, depths));
+            }
+            return result;
+        }
+
+        private Node newChild(String code, List<List<Node>> depths) {
+            List<String> childPath = new ArrayList<>(path);
+            childPath.add(code);
+            Node result = new Node(childPath);
+            if (depths.size() == childPath.size()) {
+                depths.add(new ArrayList<>());
+            }
+            depths.get(childPath.size()).add(result);
+            return result;
+        }
+
+        private Node reduce() {
+            TsAggregator agg = new TsAggregator();
+            int count = 0;
+            for (Chunk o : chunks) {
+                if (o.sum != null) {
+                    agg.add(o.sum);
+                    count++;
+                }
+            }
+            for (Node o : children.values()) {
+                if (o.sum != null) {
+                    agg.add(o.sum);
+                    count++;
+                }
+            }
+            sum = count > 0 ? agg.sum() : null;
+            return this;
+        }
+
+        private void collect(String name, List<TsInformation> result) {
+            TsInformation ts = new TsInformation();
+            ts.name = name;
+            ts.metaData = getMetaData();
+            ts.data = sum;
+            result.add(ts);
+            for (Node o : children.values()) {
+                o.collect(JOINER.join(o.path), result);
+            }
+        }
+
+        @Nullable
+        private MetaData getMetaData() {
+            int n = Math.min(path.size(), levels.size());
+            if (n == 0) {
+                return null;
+            }
+            MetaData result = new MetaData();
+            for (int i = 0; i < n; i++) {
+                result.put(levels.get(i), path.get(i));
+            }
+            return result;
+        }
+    }
+    //</editor-fold>
+}
@@ -30,11 +30,21 @@ import ec.tss.TsInformation;
 import ec.tss.xml.XmlTsCollection;
 import ec.tstoolkit.MetaData;
 import ec.tstoolkit.timeseries.simplets.TsData;
+import com.google.common.base.Splitter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import static java.util.Arrays.asList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
@@ -43,6 +53,7 @@ import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
 import demetra.cli.helpers.XmlUtil;
 import ec.tstoolkit.timeseries.simplets.TsAggregator;
+import lombok.Value;
 import org.openide.util.NbBundle;
 
 /**
@@ -61,6 +72,8 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
         StandardOptions so;
         public InputOptions input;
         public List<Double> weights;
+        public List<String> hierarchy;
+        public Optional<File> mapping;
         public OutputOptions output;
     }
     
@@ -72,9 +85,15 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
             throw new IllegalArgumentException("Invalid weights list size");
         }
         
+        if (!params.hierarchy.isEmpty() && params.mapping.isPresent()) {
+            throw new IllegalArgumentException("Hierarchy keys and mapping file are mutually exclusive");
+        }
+        
         TsCollectionInformation result = new TsCollectionInformation();
         
-        if (!params.weights.isEmpty()) {
+        if (!params.hierarchy.isEmpty() || params.mapping.isPresent()) {
+            result.items.addAll(processHierarchy(input.items, params));
+        } else if (!params.weights.isEmpty()) {
             result.items.add(process(input.items, params.weights));
         } else {
             result.items.add(process(input.items, null));
@@ -92,12 +111,82 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
         return result;
     }
     
+    private static List<TsInformation> processHierarchy(List<TsInformation> input, Parameters params) throws IOException {
+        IntToDoubleFunction weights = params.weights.isEmpty() ? i -> 1 : params.weights::get;
+        IntFunction<List<String>> paths;
+        List<String> levels;
+        if (params.mapping.isPresent()) {
+            Map<String, Mapping> mapping = readMapping(params.mapping.get());
+            IntToDoubleFunction seriesWeights = weights;
+            paths = i -> {
+                Mapping o = mapping.get(input.get(i).name);
+                return o != null ? o.getPath() : Collections.emptyList();
+            };
+            weights = i -> {
+                Mapping o = mapping.get(input.get(i).name);
+                return o != null ? o.getWeight() * seriesWeights.applyAsDouble(i) : seriesWeights.applyAsDouble(i);
+            };
+            levels = Collections.emptyList();
+        } else {
+            paths = i -> getPath(input.get(i).metaData, params.hierarchy);
+            levels = params.hierarchy;
+        }
+        List<TsInformation> result = new HierarchicalAggregator(levels).aggregate(input, paths, weights, "aggregate");
+        result.get(0).metaData = processMeta(input);
+        return result;
+    }
+    
+    @VisibleForTesting
+    static List<String> getPath(MetaData metaData, List<String> keys) {
+        List<String> result = new ArrayList<>();
+        if (metaData != null) {
+            for (String key : keys) {
+                String value = metaData.get(key);
+                if (value == null) {
+                    break;
+                }
+                result.add(value);
+            }
+        }
+        return result;
+    }
+    
+    @VisibleForTesting
+    static Map<String, Mapping> readMapping(File file) throws IOException {
+        Map<String, Mapping> result = new HashMap<>();
+        Splitter splitter = Splitter.on(',').trimResults();
+        Splitter pathSplitter = Splitter.on(HierarchicalAggregator.SEPARATOR).omitEmptyStrings().trimResults();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> fields = splitter.splitToList(line);
+            if (fields.size() < 2 || fields.size() > 3) {
+                throw new IllegalArgumentException("Invalid mapping line '" + line + "'");
+            }
+            double weight = fields.size() == 3 ? Double.parseDouble(fields.get(2)) : 1;
+            result.put(fields.get(0), new Mapping(pathSplitter.splitToList(fields.get(1)), weight));
+        }
+        return result;
+    }
+    
+    @Value
+    static class Mapping {
+        
+        List<String> path;
+        double weight;
+    }
+    
     @VisibleForTesting
     static MetaData processMeta(List<TsInformation> input) {
         Map<String, String> tmp = new HashMap<>();
-        if (input.get(0).metaData != null) {
+        if (!input.isEmpty() && input.get(0).metaData != null) {
             tmp.putAll(input.get(0).metaData);
             for (int i = 1; i < input.size(); i++) {
+                if (input.get(i).metaData == null) {
+                    tmp.clear();
+                    break;
+                }
                 for (Entry<String, String> entry : input.get(i).metaData.entrySet()) {
                     if (tmp.containsKey(entry.getKey())) {
                         if (!tmp.get(entry.getKey()).equals(entry.getValue())) {
@@ -113,7 +202,7 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
     @VisibleForTesting
     static TsData processData(List<TsInformation> input, List<Double> weights) {
         TsAggregator agg = new TsAggregator();
-        for (int i = 1; i < input.size(); i++) {
+        for (int i = 0; i < input.size(); i++) {
             if (weights != null) {
                 agg.add(input.get(i).data, weights.get(i));
             } else {
@@ -130,6 +219,14 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
         private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<List<Double>> weights = new WeightsSpec(parser);
+        private final OptionSpec<String> hierarchy = parser
+                .accepts("hierarchy", Bundle.tsaggregate_hierarchy())
+                .withRequiredArg()
+                .withValuesSeparatedBy(',');
+        private final OptionSpec<File> mapping = parser
+                .accepts("mapping", Bundle.tsaggregate_mapping())
+                .withRequiredArg()
+                .ofType(File.class);
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
         
         @Override
@@ -137,6 +234,8 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
             Parameters result = new Parameters();
             result.input = input.value(o);
             result.weights = weights.value(o);
+            result.hierarchy = hierarchy.values(o);
+            result.mapping = Optional.ofNullable(mapping.value(o));
             result.output = output.value(o);
             result.so = so.value(o);
             return result;
@@ -144,7 +243,9 @@ public final class TsAggregate implements BasicCommand<TsAggregate.Parameters> {
     }
     
     @NbBundle.Messages({
-        "tsaggregate.weights=Comma-separated list of weights"
+        "tsaggregate.weights=Comma-separated list of weights",
+        "tsaggregate.hierarchy=Comma-separated list of metadata keys defining the levels of a hierarchy, from the top",
+        "tsaggregate.mapping=File mapping series names to hierarchy paths (name,level1/level2[,weight] per line)"
     })
     private static final class WeightsSpec implements ComposedOptionSpec<List<Double>> {
         
@@ -27,8 +27,6 @@ import static be.nbb.cli.util.joptsimple.ComposedOptionSpec.newStandardOptionsSp
 import be.nbb.cli.util.OutputOptions;
 import be.nbb.cli.util.StandardOptions;
 import ec.tss.TsCollectionInformation;
-import ec.tss.TsInformationType;
-import ec.tss.TsMoniker;
 import ec.tss.xml.XmlTsCollection;
 import java.util.EnumSet;
 import java.util.Set;
@@ -57,33 +55,27 @@ public final class TsClean implements BasicCommand<TsClean.Parameters> {
         StandardOptions so;
         public InputOptions input;
         public EnumSet<TsItem> itemsToRemove;
+        public boolean streaming;
         public OutputOptions output;
     }
 
     @Override
     public void exec(Parameters params) throws Exception {
-        TsCollectionInformation result = XmlUtil.readValue(params.input, XmlTsCollection.class);
-        if (!params.itemsToRemove.isEmpty()) {
-            removeItems(result, params.itemsToRemove);
+        if (params.streaming) {
+            TsTransform.stream(params.input, params.output, params.itemsToRemove, TsTransform.clean(params.itemsToRemove));
+        } else {
+            TsCollectionInformation result = XmlUtil.readValue(params.input, XmlTsCollection.class);
+            if (!params.itemsToRemove.isEmpty()) {
+                removeItems(result, params.itemsToRemove);
+            }
+            XmlUtil.writeValue(params.output, XmlTsCollection.class, result);
         }
-        XmlUtil.writeValue(params.output, XmlTsCollection.class, result);
     }
 
     @VisibleForTesting
     static void removeItems(TsCollectionInformation info, Set<TsItem> items) {
-        info.name = items.contains(TsItem.name) ? null : info.name;
-        info.moniker = items.contains(TsItem.moniker) ? new TsMoniker() : info.moniker;
-        info.metaData = items.contains(TsItem.metaData) ? null : info.metaData;
-        info.invalidDataCause = items.contains(TsItem.cause) ? null : info.invalidDataCause;
-        info.type = items.contains(TsItem.type) ? TsInformationType.UserDefined : info.type;
-        info.items.forEach(o -> {
-            o.name = items.contains(TsItem.name) ? null : o.name;
-            o.moniker = items.contains(TsItem.moniker) ? new TsMoniker() : o.moniker;
-            o.metaData = o.hasMetaData() ? (items.contains(TsItem.metaData) ? null : o.metaData) : null;
-            o.invalidDataCause = items.contains(TsItem.cause) ? null : o.invalidDataCause;
-            o.type = items.contains(TsItem.type) ? TsInformationType.UserDefined : o.type;
-            o.data = o.hasData() ? (items.contains(TsItem.data) ? null : o.data) : null;
-        });
+        TsTransform.cleanHeader(info, items);
+        info.items.replaceAll(TsTransform.clean(items));
     }
 
     @VisibleForTesting
@@ -92,6 +84,7 @@ public final class TsClean implements BasicCommand<TsClean.Parameters> {
         private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<EnumSet<TsItem>> itemsToRemove = new ItemsToRemoveSpec(parser);
+        private final OptionSpec<Void> streaming = parser.accepts("stream", Bundle.tsclean_stream());
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
 
         @Override
@@ -99,6 +92,7 @@ public final class TsClean implements BasicCommand<TsClean.Parameters> {
             Parameters result = new Parameters();
             result.input = input.value(o);
             result.itemsToRemove = itemsToRemove.value(o);
+            result.streaming = o.has(streaming);
             result.output = output.value(o);
             result.so = so.value(o);
             return result;
@@ -107,9 +101,10 @@ public final class TsClean implements BasicCommand<TsClean.Parameters> {
 
     @NbBundle.Messages({
         "# {0} - items to remove",
-        "tsfilter.items=Comma-separated list of items to remove [{0}]"
+        "tsfilter.items=Comma-separated list of items to remove [{0}]",
+        "tsclean.stream=Process time series one at a time (XML only)"
     })
-    private static final class ItemsToRemoveSpec implements ComposedOptionSpec<EnumSet<TsItem>> {
+    static final class ItemsToRemoveSpec implements ComposedOptionSpec<EnumSet<TsItem>> {
 
         private final OptionSpec<TsItem> itemsToRemove;
 
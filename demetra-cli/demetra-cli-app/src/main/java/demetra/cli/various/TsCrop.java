@@ -27,11 +27,13 @@ import be.nbb.cli.util.OutputOptions;
 import be.nbb.cli.util.StandardOptions;
 import demetra.xml.TsPeriodSelectorAdapter;
 import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
 import ec.tss.xml.XmlTsCollection;
 import ec.tstoolkit.timeseries.Day;
-import ec.tstoolkit.timeseries.PeriodSelectorType;
 import ec.tstoolkit.timeseries.TsPeriodSelector;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.function.UnaryOperator;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -40,6 +42,7 @@ import be.nbb.cli.util.BasicCommand;
 import be.nbb.cli.util.proc.CommandRegistration;
 import be.nbb.cli.util.joptsimple.ComposedOptionSpec;
 import demetra.cli.helpers.XmlUtil;
+import org.openide.util.NbBundle;
 
 /**
  *
@@ -58,23 +61,34 @@ public final class TsCrop implements BasicCommand<TsCrop.Parameters> {
         public InputOptions input;
         @XmlJavaTypeAdapter(TsPeriodSelectorAdapter.class)
         public TsPeriodSelector periodSelector;
+        public EnumSet<TsItem> itemsToRemove = EnumSet.noneOf(TsItem.class);
+        public boolean streaming;
         public OutputOptions output;
     }
 
     @Override
     public void exec(Parameters params) throws Exception {
-        TsCollectionInformation result = XmlUtil.readValue(params.input, XmlTsCollection.class);
-        if (params.periodSelector.getType() != PeriodSelectorType.All) {
-            selectPeriods(result, params.periodSelector);
+        UnaryOperator<TsInformation> transform = TsTransform.crop(params.periodSelector);
+        if (!params.itemsToRemove.isEmpty()) {
+            transform = compose(transform, TsTransform.clean(params.itemsToRemove));
+        }
+        if (params.streaming) {
+            TsTransform.stream(params.input, params.output, params.itemsToRemove, transform);
+        } else {
+            TsCollectionInformation result = XmlUtil.readValue(params.input, XmlTsCollection.class);
+            TsTransform.cleanHeader(result, params.itemsToRemove);
+            result.items.replaceAll(transform);
+            XmlUtil.writeValue(params.output, XmlTsCollection.class, result);
         }
-        XmlUtil.writeValue(params.output, XmlTsCollection.class, result);
     }
 
     @VisibleForTesting
     static void selectPeriods(TsCollectionInformation info, TsPeriodSelector selector) {
-        info.items.forEach(o -> {
-            o.data = o.hasData() ? o.data.select(selector) : null;
-        });
+        info.items.replaceAll(TsTransform.crop(selector));
+    }
+
+    private static UnaryOperator<TsInformation> compose(UnaryOperator<TsInformation> first, UnaryOperator<TsInformation> second) {
+        return o -> second.apply(first.apply(o));
     }
 
     @VisibleForTesting
@@ -83,6 +97,8 @@ public final class TsCrop implements BasicCommand<TsCrop.Parameters> {
         private final ComposedOptionSpec<StandardOptions> so = newStandardOptionsSpec(parser);
         private final ComposedOptionSpec<InputOptions> input = newInputOptionsSpec(parser);
         private final ComposedOptionSpec<TsPeriodSelector> periodSelector = new PeriodSelectorOptionsSpec(parser);
+        private final ComposedOptionSpec<EnumSet<TsItem>> itemsToRemove = new TsClean.ItemsToRemoveSpec(parser);
+        private final OptionSpec<Void> streaming = parser.accepts("stream", Bundle.tscrop_stream());
         private final ComposedOptionSpec<OutputOptions> output = newOutputOptionsSpec(parser);
 
         @Override
@@ -90,12 +106,17 @@ public final class TsCrop implements BasicCommand<TsCrop.Parameters> {
             Parameters result = new Parameters();
             result.input = input.value(o);
             result.periodSelector = periodSelector.value(o);
+            result.itemsToRemove = itemsToRemove.value(o);
+            result.streaming = o.has(streaming);
             result.output = output.value(o);
             result.so = so.value(o);
             return result;
         }
     }
 
+    @NbBundle.Messages({
+        "tscrop.stream=Process time series one at a time (XML only)"
+    })
     private static final class PeriodSelectorOptionsSpec implements ComposedOptionSpec<TsPeriodSelector> {
 
         private final OptionSpec<Date> from;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.various;
+
+import be.nbb.cli.util.InputOptions;
+import be.nbb.cli.util.OutputOptions;
+import be.nbb.cli.util.jaxb.XmlItemReader;
+import be.nbb.cli.util.jaxb.XmlItemWriter;
+import demetra.cli.helpers.XmlUtil;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tss.TsMoniker;
+import ec.tss.xml.XmlTs;
+import ec.tss.xml.XmlTsCollection;
+import ec.tstoolkit.timeseries.PeriodSelectorType;
+import ec.tstoolkit.timeseries.TsPeriodSelector;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsDomain;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Per-series crop and clean transformations, applied either to a whole
+ * collection or to the series as they flow from a reader to a writer.
+ * <p>
+ * Cropping works on the domain of a series and only copies the values when
+ * the selection is a strict subset of it.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+class TsTransform {
+
+    @Nonnull
+    static UnaryOperator<TsInformation> crop(@Nonnull TsPeriodSelector selector) {
+        if (selector.getType() == PeriodSelectorType.All) {
+            return UnaryOperator.identity();
+        }
+        return o -> {
+            o.data = o.hasData() ? select(o.data, selector) : null;
+            return o;
+        };
+    }
+
+    @Nonnull
+    static UnaryOperator<TsInformation> clean(@Nonnull Set<TsItem> items) {
+        if (items.isEmpty()) {
+            return UnaryOperator.identity();
+        }
+        return o -> {
+            o.name = items.contains(TsItem.name) ? null : o.name;
+            o.moniker = items.contains(TsItem.moniker) ? new TsMoniker() : o.moniker;
+            o.metaData = o.hasMetaData() ? (items.contains(TsItem.metaData) ? null : o.metaData) : null;
+            o.invalidDataCause = items.contains(TsItem.cause) ? null : o.invalidDataCause;
+            o.type = items.contains(TsItem.type) ? TsInformationType.UserDefined : o.type;
+            o.data = o.hasData() ? (items.contains(TsItem.data) ? null : o.data) : null;
+            return o;
+        };
+    }
+
+    static void cleanHeader(@Nonnull TsCollectionInformation info, @Nonnull Set<TsItem> items) {
+        info.name = items.contains(TsItem.name) ? null : info.name;
+        info.moniker = items.contains(TsItem.moniker) ? new TsMoniker() : info.moniker;
+        info.metaData = items.contains(TsItem.metaData) ? null : info.metaData;
+        info.invalidDataCause = items.contains(TsItem.cause) ? null : info.invalidDataCause;
+        info.type = items.contains(TsItem.type) ? TsInformationType.UserDefined : info.type;
+    }
+
+    /**
+     * Selects the periods of a series; equivalent to
+     * {@link TsData#select(TsPeriodSelector)} but returns the series itself
+     * when all its periods are selected.
+     *
+     * @param data
+     * @param selector
+     * @return
+     */
+    @Nonnull
+    static TsData select(@Nonnull TsData data, @Nonnull TsPeriodSelector selector) {
+        TsDomain domain = data.getDomain();
+        TsDomain selection = domain.select(selector);
+        if (selection.getLength() == domain.getLength()) {
+            return data;
+        }
+        int offset = selection.getLength() > 0 ? selection.getStart().minus(domain.getStart()) : 0;
+        double[] values = data.getValues().internalStorage();
+        return new TsData(selection.getStart(), Arrays.copyOfRange(values, offset, offset + selection.getLength()), false);
+    }
+
+    /**
+     * Transforms the series of an XML input one at a time, in parallel but in
+     * order, without reading the whole collection.
+     *
+     * @param input an XML input
+     * @param output an XML output
+     * @param headerItems the items to remove from the header of the collection
+     * @param transform the transformation of the series
+     * @throws IOException
+     * @throws IllegalArgumentException if the input or the output is not XML
+     */
+    static void stream(@Nonnull InputOptions input, @Nonnull OutputOptions output, @Nonnull Set<TsItem> headerItems, @Nonnull UnaryOperator<TsInformation> transform) throws IOException, IllegalArgumentException {
+        try (XmlItemReader<XmlTs> reader = XmlUtil.newTsReader(input)) {
+            XmlTsCollection prototype = newPrototype(reader.getHeader(XmlTsCollection.class), headerItems);
+            try (XmlItemWriter<XmlTs> writer = XmlUtil.newItemWriter(output, prototype, XmlTs.class, "ts")) {
+                XmlUtil.transform(reader, o -> toXml(transform.apply(o.create())), writer);
+            }
+        }
+    }
+
+    private static XmlTsCollection newPrototype(@Nullable XmlTsCollection header, Set<TsItem> items) {
+        XmlTsCollection result = new XmlTsCollection();
+        if (header != null) {
+            TsCollectionInformation info = header.create();
+            info.items.clear();
+            cleanHeader(info, items);
+            result.copy(info);
+        }
+        result.tslist = new XmlTs[]{new XmlTs()};
+        return result;
+    }
+
+    private static XmlTs toXml(TsInformation info) {
+        XmlTs result = new XmlTs();
+        result.copy(info);
+        return result;
+    }
+}
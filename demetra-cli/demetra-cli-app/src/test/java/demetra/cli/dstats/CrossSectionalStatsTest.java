@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import ec.tss.TsCollectionInformation;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.EnumSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class CrossSectionalStatsTest {
+
+    @Test
+    public void testBuild() {
+        CrossSectionalStats stats = new CrossSectionalStats(EnumSet.of(DStatsItem.obs, DStatsItem.average, DStatsItem.median, DStatsItem.var));
+        stats.add(new TsData(TsFrequency.Monthly, 2010, 1, new double[]{1, 2, 3}, false));
+        stats.add(new TsData(TsFrequency.Monthly, 2010, 0, new double[]{4, 5, Double.NaN, 6}, false));
+        stats.add(null);
+
+        TsCollectionInformation result = stats.build("sample");
+        assertThat(result.items).extracting(o -> o.name).containsExactly("average", "median", "obs", "var");
+
+        TsData average = result.items.get(0).data;
+        assertThat(average.getStart().getPosition()).isEqualTo(0);
+        assertThat(average.getValues().internalStorage()).containsExactly(4, 3, 2, 4.5);
+        assertThat(result.items.get(1).data.getValues().internalStorage()).containsExactly(4, 3, 2, 4.5);
+        assertThat(result.items.get(2).data.getValues().internalStorage()).containsExactly(1, 2, 2, 2);
+        assertThat(result.items.get(3).data.getValues().internalStorage()).containsExactly(0, 4, 0, 2.25);
+    }
+
+    @Test
+    public void testFrequencies() {
+        CrossSectionalStats stats = new CrossSectionalStats(EnumSet.allOf(DStatsItem.class));
+        stats.add(new TsData(TsFrequency.Monthly, 2010, 0, new double[]{1}, false));
+        assertThatThrownBy(() -> stats.add(new TsData(TsFrequency.Quarterly, 2010, 0, new double[]{1}, false)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
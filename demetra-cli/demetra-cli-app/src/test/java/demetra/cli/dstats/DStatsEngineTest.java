@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import ec.tss.xml.XmlTs;
+import java.util.EnumSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DStatsEngineTest {
+
+    @Test
+    public void testMedian() {
+        assertThat(DStatsEngine.median(new double[]{})).isNaN();
+        assertThat(DStatsEngine.median(new double[]{Double.NaN})).isNaN();
+        assertThat(DStatsEngine.median(new double[]{3, 1, 2})).isEqualTo(2);
+        assertThat(DStatsEngine.median(new double[]{4, Double.NaN, 1, 3, 2})).isEqualTo(2.5);
+        assertThat(DStatsEngine.median(new double[]{5, 5, 1, 5, 5, 1})).isEqualTo(5);
+    }
+
+    @Test
+    public void testProcess() {
+        XmlTs ts = new XmlTs();
+        ts.name = "a";
+        ts.data = new double[]{1, Double.NaN, 3, 2};
+
+        XmlDStatsTs result = DStatsEngine.of(EnumSet.of(DStatsItem.sum, DStatsItem.average, DStatsItem.missingValues)).process(ts);
+        assertThat(result.name).isEqualTo("a");
+        assertThat(result.sum).isEqualTo(6);
+        assertThat(result.average).isEqualTo(2);
+        assertThat(result.missingValuesCount).isEqualTo(1);
+        assertThat(result.min).isNull();
+        assertThat(result.median).isNull();
+        assertThat(result.var).isNull();
+
+        result = DStatsEngine.of(EnumSet.allOf(DStatsItem.class)).process(ts);
+        assertThat(result.observationsCount).isEqualTo(4);
+        assertThat(result.dataCount).isEqualTo(3);
+        assertThat(result.min).isEqualTo(1);
+        assertThat(result.max).isEqualTo(3);
+        assertThat(result.median).isEqualTo(2);
+        assertThat(result.sumSquare).isEqualTo(14);
+        assertThat(result.var).isNotNull();
+    }
+}
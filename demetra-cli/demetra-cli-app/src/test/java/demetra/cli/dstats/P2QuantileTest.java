@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.dstats;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class P2QuantileTest {
+
+    private static final double[] PROBABILITIES = {.01, .05, .1, .25, .5, .75, .9, .95, .99};
+
+    @Test
+    public void testInterpolate() {
+        assertThat(P2Quantile.interpolate(new double[]{3}, .3)).isEqualTo(3);
+        assertThat(P2Quantile.interpolate(new double[]{1, 2, 3, 4}, .5)).isEqualTo(2.5);
+        assertThat(P2Quantile.interpolate(new double[]{1, 2, 3, 4, 5}, .5)).isEqualTo(3);
+        assertThat(P2Quantile.interpolate(new double[]{1, 2, 3, 4, 5}, .1)).isEqualTo(1.4, within(1e-12));
+        assertThat(P2Quantile.interpolate(new double[]{1, 2, 3, 4, 5}, .99)).isEqualTo(4.96, within(1e-12));
+    }
+
+    @Test
+    public void testExactUpToFiveValues() {
+        Random random = new Random(0);
+        for (double p : PROBABILITIES) {
+            for (int n = 1; n <= 5; n++) {
+                P2Quantile quantile = new P2Quantile(p, 1);
+                double[] values = new double[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = random.nextGaussian();
+                    quantile.accept(0, i + 1, values[i]);
+                }
+                Arrays.sort(values);
+                assertThat(quantile.get(0, n)).isEqualTo(P2Quantile.interpolate(values, p));
+            }
+        }
+        assertThat(new P2Quantile(.5, 1).get(0, 0)).isNaN();
+    }
+
+    @Test
+    public void testAgainstExactQuantiles() {
+        for (double p : PROBABILITIES) {
+            for (int seed = 0; seed < 10; seed++) {
+                Random random = new Random(seed);
+                assertRankError(p, 10000, random::nextDouble);
+                assertRankError(p, 10000, random::nextGaussian);
+                assertRankError(p, 10000, () -> -Math.log(1 - random.nextDouble()));
+            }
+        }
+    }
+
+    @Test
+    public void testSortedInput() {
+        for (double p : PROBABILITIES) {
+            double[] values = new double[5000];
+            P2Quantile quantile = new P2Quantile(p, 1);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i;
+                quantile.accept(0, i + 1, values[i]);
+            }
+            assertThat(quantile.get(0, values.length)).isEqualTo(P2Quantile.interpolate(values, p), within(values.length * .01));
+        }
+    }
+
+    @Test
+    public void testCells() {
+        P2Quantile quantile = new P2Quantile(.9, 2);
+        Random random = new Random(1);
+        double[] first = new double[1000];
+        double[] second = new double[1000];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = random.nextDouble();
+            second[i] = 100 + random.nextDouble();
+            quantile.accept(0, i + 1, first[i]);
+            quantile.accept(1, i + 1, second[i]);
+        }
+        double expectedFirst = quantile.get(0, first.length);
+        double expectedSecond = quantile.get(1, second.length);
+        assertThat(expectedFirst).isLessThan(1);
+        assertThat(expectedSecond).isGreaterThan(100);
+
+        quantile.resize(5, 2, 2);
+        assertThat(quantile.get(2, first.length)).isEqualTo(expectedFirst);
+        assertThat(quantile.get(3, second.length)).isEqualTo(expectedSecond);
+        assertThat(quantile.get(0, 0)).isNaN();
+    }
+
+    @Test
+    public void testInvalidProbability() {
+        assertThatThrownBy(() -> new P2Quantile(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new P2Quantile(1, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new P2Quantile(Double.NaN, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Checks that the estimate has a rank close to p in the exact
+     * distribution, which does not depend on the scale of the values.
+     */
+    private static void assertRankError(double p, int n, DoubleSupplier generator) {
+        P2Quantile quantile = new P2Quantile(p, 1);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = generator.getAsDouble();
+            quantile.accept(0, i + 1, values[i]);
+        }
+        Arrays.sort(values);
+        double estimate = quantile.get(0, n);
+        int rank = Arrays.binarySearch(values, estimate);
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        assertThat((double) rank / n).isEqualTo(p, within(.01));
+    }
+}
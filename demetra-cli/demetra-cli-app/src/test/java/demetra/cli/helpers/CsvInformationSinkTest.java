@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.helpers;
+
+import ec.tss.formatters.CsvInformationFormatter;
+import ec.tstoolkit.information.InformationSet;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class CsvInformationSinkTest {
+
+    @Test
+    public void testReadRecord() throws IOException {
+        Reader reader = new StringReader("a,\"b,c\",\"d\ne\"\r\n,\n\nx");
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("a", "\"b,c\"", "\"d\ne\"");
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("", "");
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("");
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("x");
+        assertThat(CsvInformationSink.readRecord(reader)).isNull();
+    }
+
+    @Test
+    public void testWriteRecord() throws IOException {
+        List<String> fields = asList("a", "\"b,c\"", "\"d\ne\"");
+        StringWriter writer = new StringWriter();
+        CsvInformationSink.writeRecord(writer, fields, 5);
+        CsvInformationSink.writeRecord(writer, null, 2);
+        Reader reader = new StringReader(writer.toString());
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("a", "\"b,c\"", "\"d\ne\"", "", "");
+        assertThat(CsvInformationSink.readRecord(reader)).containsExactly("", "");
+        assertThat(CsvInformationSink.readRecord(reader)).isNull();
+    }
+
+    @Test
+    public void testPadding() throws IOException {
+        StringWriter output = new StringWriter();
+        try (CsvInformationSink sink = CsvInformationSink.of(output, false)) {
+            sink.accept(row("a"));
+            sink.accept(row("a", "b"));
+            sink.accept(row("c"));
+        }
+        List<List<String>> records = readAll(output.toString());
+        assertThat(records).hasSize(4);
+        int width = records.get(0).size();
+        assertThat(width).isGreaterThanOrEqualTo(3);
+        for (List<String> o : records) {
+            assertThat(o).hasSize(width);
+        }
+    }
+
+    @Test
+    public void testFixedItems() throws IOException {
+        StringWriter expected = new StringWriter();
+        List<InformationSet> rows = asList(row("a", "b"), row("b"), row("a", "b"));
+        new CsvInformationFormatter().format(expected, rows, asList("a", "b"), false);
+
+        StringWriter output = new StringWriter();
+        try (CsvInformationSink sink = CsvInformationSink.of(output, asList("a", "b"), false)) {
+            for (InformationSet o : rows) {
+                sink.accept(o);
+            }
+        }
+        assertThat(readAll(output.toString())).isEqualTo(readAll(expected.toString()));
+    }
+
+    private static InformationSet row(String... names) {
+        InformationSet result = new InformationSet();
+        for (int i = 0; i < names.length; i++) {
+            result.set(names[i], 1.5 + i);
+        }
+        return result;
+    }
+
+    private static List<List<String>> readAll(String text) throws IOException {
+        Reader reader = new StringReader(text);
+        List<List<String>> result = new ArrayList<>();
+        List<String> record;
+        while ((record = CsvInformationSink.readRecord(reader)) != null) {
+            result.add(record);
+        }
+        return result;
+    }
+}
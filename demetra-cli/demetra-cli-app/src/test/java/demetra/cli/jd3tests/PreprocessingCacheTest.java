@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.jd3tests;
+
+import ec.tstoolkit.modelling.arima.PreprocessingModel;
+import ec.tstoolkit.modelling.arima.tramo.TramoSpecification;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class PreprocessingCacheTest {
+
+    @Test
+    public void testScope() {
+        TsData data = newSeries();
+
+        // fitted on each request outside of a scope
+        long requests = PreprocessingCache.getStats().requestCount();
+        PreprocessingModel model = PreprocessingCache.get(data, TramoSpecification.TR0);
+        assertThat(model).isNotNull();
+        assertThat(PreprocessingCache.get(data, TramoSpecification.TR0)).isNotSameAs(model);
+        assertThat(PreprocessingCache.getStats().requestCount()).isEqualTo(requests);
+
+        PreprocessingModel cached;
+        try (PreprocessingCache.Scope scope = PreprocessingCache.open()) {
+            cached = PreprocessingCache.get(data, TramoSpecification.TR0);
+            assertThat(cached).isNotNull();
+            try (PreprocessingCache.Scope nested = PreprocessingCache.open()) {
+                assertThat(PreprocessingCache.get(data, TramoSpecification.TR0)).isSameAs(cached);
+            }
+            // still cached until the last scope is closed
+            assertThat(PreprocessingCache.get(data, TramoSpecification.TR0)).isSameAs(cached);
+        }
+
+        try (PreprocessingCache.Scope scope = PreprocessingCache.open()) {
+            assertThat(PreprocessingCache.get(data, TramoSpecification.TR0)).isNotSameAs(cached);
+        }
+    }
+
+    private static TsData newSeries() {
+        Random random = new Random(0);
+        double[] values = new double[120];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + 0.5 * i + 10 * Math.sin(2 * Math.PI * i / 12) + random.nextGaussian();
+        }
+        return new TsData(TsFrequency.Monthly, 2000, 0, values, false);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.jd3tests;
+
+import ec.tstoolkit.information.InformationSet;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class Ts2DiagnosticsTest {
+
+    @Test
+    public void testItems() {
+        List<InformationSet> output = asList(
+                row("s1", "arma", "x"),
+                row("s2", "arma", "z", "x"),
+                row("s3", "hr", "y"));
+        output.get(2).set("arma", diagnostic("s3", "w"));
+
+        // grouped by diagnostic, in order of appearance within a group
+        assertThat(Ts2Diagnostics.items(output, EnumSet.of(Diagnostic.hr, Diagnostic.arma)))
+                .containsExactly("series", "arma.x", "arma.z", "arma.w", "hr.y");
+
+        List<String> expected = new ArrayList<>();
+        expected.add("series");
+        Ts2SeasonalityTests.ITEMS.forEach(o -> expected.add("seasonality." + o));
+        expected.addAll(asList("arma.x", "arma.z", "arma.w"));
+        assertThat(Ts2Diagnostics.items(output, EnumSet.of(Diagnostic.arma, Diagnostic.seasonality)))
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testItemsWithoutOutput() {
+        assertThat(Ts2Diagnostics.items(Collections.emptyList(), EnumSet.of(Diagnostic.arma))).containsExactly("series");
+        assertThat(Ts2Diagnostics.items(Collections.emptyList(), EnumSet.of(Diagnostic.outliers))).hasSize(1 + Ts2OutliersTests.ITEMS.size());
+    }
+
+    @Test
+    public void testSharesPreprocessing() {
+        assertThat(Ts2Diagnostics.sharesPreprocessing(EnumSet.allOf(Diagnostic.class))).isTrue();
+        assertThat(Ts2Diagnostics.sharesPreprocessing(EnumSet.of(Diagnostic.arma, Diagnostic.seasonality))).isTrue();
+        assertThat(Ts2Diagnostics.sharesPreprocessing(EnumSet.of(Diagnostic.arma))).isFalse();
+        assertThat(Ts2Diagnostics.sharesPreprocessing(EnumSet.of(Diagnostic.arma, Diagnostic.hr, Diagnostic.outliers))).isFalse();
+    }
+
+    private static InformationSet row(String series, String diagnostic, String... items) {
+        InformationSet result = new InformationSet();
+        result.set("series", series);
+        result.set(diagnostic, diagnostic(series, items));
+        return result;
+    }
+
+    private static InformationSet diagnostic(String series, String... items) {
+        InformationSet result = new InformationSet();
+        result.set("series", series);
+        for (int i = 0; i < items.length; i++) {
+            result.set(items[i], 1.5 + i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.various;
+
+import ec.tss.TsInformation;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class TsAggregateTest {
+
+    static TsInformation ts(String name, double value, String... path) {
+        TsInformation result = new TsInformation();
+        result.name = name;
+        result.data = new TsData(TsFrequency.Yearly, 2010, 0, new double[]{value, value}, false);
+        result.metaData = new MetaData();
+        if (path.length > 0) {
+            result.metaData.put("region", path[0]);
+        }
+        if (path.length > 1) {
+            result.metaData.put("sector", path[1]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testProcessData() {
+        List<TsInformation> input = Arrays.asList(ts("a", 1), ts("b", 2), ts("c", 4));
+        assertThat(TsAggregate.processData(input, null).get(0)).isEqualTo(7);
+        assertThat(TsAggregate.processData(input, Arrays.asList(1d, 0d, 2d)).get(0)).isEqualTo(9);
+    }
+
+    @Test
+    public void testHierarchy() {
+        List<TsInformation> input = new ArrayList<>();
+        input.add(ts("a", 1, "BE", "A"));
+        input.add(ts("b", 2, "BE", "B"));
+        input.add(ts("c", 4, "BE", "A"));
+        input.add(ts("d", 8, "FR"));
+        input.add(ts("e", 16));
+
+        List<String> levels = Arrays.asList("region", "sector");
+        List<TsInformation> result = new HierarchicalAggregator(levels)
+                .aggregate(input, i -> TsAggregate.getPath(input.get(i).metaData, levels), i -> 1, "aggregate");
+
+        assertThat(result).extracting(o -> o.name).containsExactly("aggregate", "BE", "BE/A", "BE/B", "FR");
+        assertThat(result).extracting(o -> o.data.get(0)).containsExactly(31d, 7d, 5d, 2d, 8d);
+        assertThat(result.get(2).metaData).containsEntry("region", "BE").containsEntry("sector", "A");
+    }
+}
@@ -29,6 +29,7 @@ import ec.tstoolkit.timeseries.simplets.TsData;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumSet;
 import org.assertj.core.api.Assertions;
 import org.junit.Rule;
 import org.junit.Test;
@@ -80,4 +81,48 @@ public class TsCropTest {
 
         Assertions.assertThat(result.items).hasSize(1);
     }
+
+    @Test
+    public void testExecStreaming() throws Exception {
+        TsCrop app = new TsCrop();
+
+        File in = folder.newFile();
+        File out = folder.newFile();
+
+        TsCollectionInformation sample = getSample();
+        sample.items.get(0).name = "a";
+        write(in, sample);
+
+        TsCrop.Parameters options = new TsCrop.Parameters();
+        options.input = InputOptions.of(in, XML_UTF_8);
+        options.output = OutputOptions.of(out, XML_UTF_8, false);
+        options.so = new StandardOptions(false, false, false);
+        options.periodSelector = new TsPeriodSelector();
+        options.periodSelector.last(12);
+        options.itemsToRemove = EnumSet.of(TsItem.name);
+        options.streaming = true;
+
+        app.exec(options);
+
+        TsCollectionInformation result = read(out);
+
+        Assertions.assertThat(result.items).hasSize(1);
+        Assertions.assertThat(result.items.get(0).name).isNull();
+        Assertions.assertThat(result.items.get(0).data).isEqualTo(sample.items.get(0).data.select(options.periodSelector));
+    }
+
+    @Test
+    public void testSelect() {
+        TsData data = TsData.random(TsFrequency.Monthly);
+        TsPeriodSelector selector = new TsPeriodSelector();
+
+        selector.first(data.getLength());
+        Assertions.assertThat(TsTransform.select(data, selector)).isSameAs(data);
+
+        selector.excluding(2, 3);
+        Assertions.assertThat(TsTransform.select(data, selector)).isEqualTo(data.select(selector));
+
+        selector.none();
+        Assertions.assertThat(TsTransform.select(data, selector).getLength()).isEqualTo(0);
+    }
 }
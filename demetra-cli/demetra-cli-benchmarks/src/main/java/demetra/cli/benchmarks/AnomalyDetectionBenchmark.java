@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarks;
+
+import be.nbb.demetra.toolset.AnomalyDetectionTool;
+import be.nbb.demetra.toolset.AnomalyDetectionTool.CheckLastOptions;
+import be.nbb.demetra.toolset.AnomalyDetectionTool.DefaultSpec;
+import be.nbb.demetra.toolset.AnomalyDetectionTool.OutliersOptions;
+import ec.tss.TsInformation;
+import ec.tstoolkit.modelling.DefaultTransformationType;
+import ec.tstoolkit.timeseries.regression.OutlierType;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AnomalyDetectionBenchmark {
+
+    @Param({"TR4", "TRfull"})
+    public DefaultSpec spec;
+
+    @Param({"4", "12"})
+    public int frequency;
+
+    @Param({"120", "240", "480"})
+    public int length;
+
+    private AnomalyDetectionTool tool;
+    private OutliersOptions outliersOptions;
+    private CheckLastOptions checkLastOptions;
+    private TsInformation ts;
+
+    @Setup
+    public void setup() {
+        tool = AnomalyDetectionTool.getDefault();
+        outliersOptions = new OutliersOptions(spec, 0, DefaultTransformationType.None, EnumSet.of(OutlierType.AO, OutlierType.LS, OutlierType.TC));
+        checkLastOptions = new CheckLastOptions(spec, 0, 1);
+        ts = BenchmarkData.newTs(length, frequency);
+    }
+
+    @Benchmark
+    public AnomalyDetectionTool.OutliersTs getOutliers() {
+        return tool.getOutliers(ts, outliersOptions);
+    }
+
+    @Benchmark
+    public AnomalyDetectionTool.CheckLastTs getCheckLast() {
+        return tool.getCheckLast(ts, checkLastOptions);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarks;
+
+import be.nbb.demetra.toolset.ProviderTool;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tss.tsproviders.common.random.RandomBean;
+import ec.tss.tsproviders.common.random.RandomProvider;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import javax.annotation.Nonnull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Generated input shared by the benchmarks. The series come from
+ * {@link RandomProvider} (airline model) and are then given the requested
+ * frequency so that all the parameters can be combined.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+class BenchmarkData {
+
+    static final int SEED = 0;
+
+    @Nonnull
+    static TsCollectionInformation newCollection(int count, int length, int frequency) {
+        RandomBean bean = new RandomBean();
+        bean.setSeed(SEED);
+        bean.setCount(count);
+        bean.setLength(length);
+        bean.setS(frequency);
+        RandomProvider provider = new RandomProvider();
+        try {
+            TsCollectionInformation result = ProviderTool.getDefault().getTsCollection(provider, bean, TsInformationType.All);
+            result.items.forEach(o -> o.data = withFrequency(o.data, frequency));
+            return result;
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Nonnull
+    static TsInformation newTs(int length, int frequency) {
+        return newCollection(1, length, frequency).items.get(0);
+    }
+
+    private static TsData withFrequency(TsData data, int frequency) {
+        return new TsData(TsFrequency.valueOf(frequency), 2000, 0, data.getValues().internalStorage().clone(), false);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarks;
+
+import be.nbb.demetra.toolset.BenchmarkingTool;
+import be.nbb.demetra.toolset.BenchmarkingTool.CholetteOptions;
+import be.nbb.demetra.toolset.BenchmarkingTool.DentonOptions;
+import be.nbb.demetra.toolset.BenchmarkingTool.ExpanderOptions;
+import ec.benchmarking.simplets.TsCholette;
+import ec.benchmarking.simplets.TsExpander;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a high frequency series against its yearly aggregate.
+ *
+ * @author Philippe Charles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BenchmarkingToolBenchmark {
+
+    @Param({"4", "12"})
+    public int frequency;
+
+    @Param({"120", "240", "480"})
+    public int length;
+
+    private static final int BATCH_SIZE = 100;
+
+    private BenchmarkingTool tool;
+    private TsData x;
+    private TsData y;
+    private List<TsData> xs;
+    private List<TsData> ys;
+    private DentonOptions dentonOptions;
+    private CholetteOptions choletteOptions;
+    private ExpanderOptions expanderOptions;
+
+    @Setup
+    public void setup() {
+        tool = BenchmarkingTool.getDefault();
+        x = BenchmarkData.newTs(length, frequency).data;
+        y = x.changeFrequency(TsFrequency.Yearly, TsAggregationType.Sum, true);
+        xs = BenchmarkData.newCollection(BATCH_SIZE, length, frequency).items.stream().map(o -> o.data).collect(Collectors.toList());
+        ys = xs.stream().map(o -> o.changeFrequency(TsFrequency.Yearly, TsAggregationType.Sum, true)).collect(Collectors.toList());
+        dentonOptions = new DentonOptions(false, true, 1, TsAggregationType.Sum);
+        choletteOptions = new CholetteOptions(1, 1, TsCholette.BiasCorrection.None, TsAggregationType.Sum);
+        expanderOptions = new ExpanderOptions(false, .9, false, false, TsExpander.Model.I1, 1, TsAggregationType.Sum);
+    }
+
+    @Benchmark
+    public TsData computeDenton() {
+        return tool.computeDenton(x, y, dentonOptions);
+    }
+
+    @Benchmark
+    public List<TsData> computeDentonBatch() {
+        return tool.computeDenton(xs, ys, dentonOptions);
+    }
+
+    @Benchmark
+    public TsData computeCholette() {
+        return tool.computeCholette(x, y, choletteOptions);
+    }
+
+    @Benchmark
+    public TsData expand() {
+        return tool.expand(x.getFrequency(), y, expanderOptions);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarks;
+
+import be.nbb.demetra.toolset.SaTool;
+import ec.tss.TsCollectionInformation;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Seasonal adjustment of a collection through the batch executor.
+ *
+ * @author Philippe Charles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SaToolCollectionBenchmark {
+
+    @Param({"tramoseats", "x13"})
+    public String algorithm;
+
+    @Param({"RSA0", "RSA3", "RSAfull"})
+    public String spec;
+
+    @Param({"4", "12"})
+    public int frequency;
+
+    @Param({"120", "240", "480"})
+    public int length;
+
+    @Param({"1", "100"})
+    public int count;
+
+    private SaTool tool;
+    private SaTool.Options options;
+    private TsCollectionInformation col;
+
+    @Setup
+    public void setup() {
+        tool = SaTool.getDefault();
+        options = SaToolBenchmark.newOptions(algorithm, spec);
+        col = BenchmarkData.newCollection(count, length, frequency);
+    }
+
+    @Benchmark
+    public SaTool.SaTsCollection createCollection() {
+        return tool.create(col, options);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package demetra.cli.benchmarks;
+
+import be.nbb.cli.util.Serializer;
+import be.nbb.cli.util.SerializerFactory;
+import com.google.common.net.MediaType;
+import ec.tss.xml.XmlTsCollection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips of a time series collection through the registered
+ * serializers.
+ *
+ * @author Philippe Charles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"text/xml", "application/json", "application/yaml", "application/vnd.demetra.tscollection+binary"})
+    public String mediaType;
+
+    @Param({"10", "1000"})
+    public int count;
+
+    @Param({"240"})
+    public int length;
+
+    private Serializer<XmlTsCollection> serializer;
+    private XmlTsCollection value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        serializer = SerializerFactory.of(MediaType.parse(mediaType), XmlTsCollection.class, false);
+        value = new XmlTsCollection();
+        value.copy(BenchmarkData.newCollection(count, length, 12));
+        bytes = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        serializer.serialize(value, result);
+        return result.toByteArray();
+    }
+
+    @Benchmark
+    public XmlTsCollection deserialize() throws IOException {
+        return serializer.deserialize(new ByteArrayInputStream(bytes));
+    }
+}
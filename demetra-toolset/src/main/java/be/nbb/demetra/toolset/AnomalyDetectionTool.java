@@ -25,7 +25,6 @@ import ec.tstoolkit.timeseries.regression.OutlierEstimation;
 import ec.tstoolkit.timeseries.regression.OutlierType;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import lombok.Data;
 import lombok.Value;
@@ -66,19 +65,43 @@ public interface AnomalyDetectionTool {
         String name;
         TsMoniker moniker;
         List<OutliersTs> items;
+        BatchExecutor.Report report;
     }
 
+    /**
+     * Detects the outliers of a single series. A series that exceeds the time
+     * budget of the batch executor is reported as invalid.
+     *
+     * @param info
+     * @param options
+     * @return
+     */
     @Nonnull
     OutliersTs getOutliers(@Nonnull TsInformation info, @Nonnull OutliersOptions options);
 
+    /**
+     * Detects the outliers of every series of a collection. Series that
+     * exceed the time budget of the batch executor are reported as invalid;
+     * since a detection cannot be stopped midway, the budget discards late
+     * results rather than shortening the batch.
+     *
+     * @param info
+     * @param options
+     * @return
+     */
     @Nonnull
-    default OutliersTsCollection getOutliers(@Nonnull TsCollectionInformation info, @Nonnull OutliersOptions options) {
-        OutliersTsCollection result = new OutliersTsCollection();
-        result.setName(info.name);
-        result.setMoniker(info.moniker);
-        result.setItems(info.items.parallelStream().map(o -> getOutliers(o, options)).collect(Collectors.toList()));
-        return result;
-    }
+    OutliersTsCollection getOutliers(@Nonnull TsCollectionInformation info, @Nonnull OutliersOptions options);
+
+    /**
+     * Detects the outliers of every series of a view; series are materialized
+     * one at a time.
+     *
+     * @param info
+     * @param options
+     * @return
+     */
+    @Nonnull
+    OutliersTsCollection getOutliers(@Nonnull TsCollectionView info, @Nonnull OutliersOptions options);
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="CheckLast API">
@@ -127,7 +150,7 @@ public interface AnomalyDetectionTool {
 
     @Nonnull
     default List<InformationSet> getCheckLast(TsCollectionInformation info, CheckLastOptions options) {
-        return info.items.parallelStream().map(o -> getCheckLast(o, options).generate()).collect(Collectors.toList());
+        return BatchExecutor.getDefault().map(info.items, o -> getCheckLast(o, options).generate());
     }
     //</editor-fold>
 
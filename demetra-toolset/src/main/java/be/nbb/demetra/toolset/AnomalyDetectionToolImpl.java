@@ -16,6 +16,7 @@
  */
 package be.nbb.demetra.toolset;
 
+import ec.tss.TsCollectionInformation;
 import ec.tss.TsInformation;
 import ec.tstoolkit.design.VisibleForTesting;
 import ec.tstoolkit.modelling.arima.CheckLast;
@@ -27,6 +28,8 @@ import ec.tstoolkit.modelling.arima.tramo.TramoSpecification;
 import ec.tstoolkit.timeseries.regression.OutlierEstimation;
 import ec.tstoolkit.timeseries.simplets.TsData;
 import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -39,12 +42,18 @@ final class AnomalyDetectionToolImpl implements AnomalyDetectionTool {
 
     @Override
     public OutliersTs getOutliers(TsInformation info, OutliersOptions options) {
+        return BatchExecutor.getDefault().<TsInformation, OutliersTs>withTimeout(o -> computeOutliers(o, options), AnomalyDetectionToolImpl::aborted).apply(info);
+    }
+
+    private static OutliersTs computeOutliers(TsInformation info, OutliersOptions options) {
         OutliersTs result = new OutliersTs();
         result.setName(info.name);
         result.setMoniker(info.moniker);
         String error = checkData(info.data);
         if (error == null) {
             PreprocessingModel model = newPreprocessor(options).process(info.data, null);
+            // the detection cannot be stopped midway; a late result is discarded
+            BatchExecutor.checkDeadline();
             if (model != null) {
                 OutlierEstimation[] outliers = model.outliersEstimation(true, false);
                 if (outliers != null) {
@@ -65,6 +74,25 @@ final class AnomalyDetectionToolImpl implements AnomalyDetectionTool {
         return result;
     }
 
+    @Override
+    public OutliersTsCollection getOutliers(TsCollectionInformation info, OutliersOptions options) {
+        return getOutliers(info, info.items, i -> estimateCost(info.items.get(i).data), options);
+    }
+
+    @Override
+    public OutliersTsCollection getOutliers(TsCollectionView info, OutliersOptions options) {
+        return getOutliers(info.getHeader(), info.asList(), i -> estimateCost(info.getLength(i), info.getFrequency(i)), options);
+    }
+
+    private OutliersTsCollection getOutliers(TsCollectionInformation header, List<TsInformation> items, IntToDoubleFunction cost, OutliersOptions options) {
+        OutliersTsCollection result = new OutliersTsCollection();
+        result.setName(header.name);
+        result.setMoniker(header.moniker);
+        BatchExecutor executor = BatchExecutor.getDefault();
+        result.setItems(executor.mapByCost(items, cost, executor.withTimeout(o -> computeOutliers(o, options), AnomalyDetectionToolImpl::aborted), result::setReport));
+        return result;
+    }
+
     @Override
     public CheckLastTs getCheckLast(TsInformation info, CheckLastOptions options) {
         CheckLastTs result = new CheckLastTs();
@@ -124,6 +152,27 @@ final class AnomalyDetectionToolImpl implements AnomalyDetectionTool {
         return newTramoSpecification(o).build();
     }
 
+    /**
+     * Rough relative cost of an outlier detection; it grows faster than
+     * linearly with the length of the series.
+     */
+    private static double estimateCost(int length, int frequency) {
+        return (double) length * (length + frequency);
+    }
+
+    private static double estimateCost(TsData data) {
+        return data != null ? estimateCost(data.getLength(), data.getFrequency().intValue()) : 0;
+    }
+
+    private static OutliersTs aborted(TsInformation info, String cause) {
+        OutliersTs result = new OutliersTs();
+        result.setName(info.name);
+        result.setMoniker(info.moniker);
+        result.setOutliers(null);
+        result.setInvalidDataCause(cause);
+        return result;
+    }
+
     @Nullable
     private static String checkData(@Nullable final TsData y) {
         if (y == null || y.isEmpty()) {
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.Value;
+
+/**
+ * Batch execution engine used by the collection methods of the tools.
+ * <p>
+ * Items are processed by chunks on a work-stealing pool. The pool is owned by
+ * the caller, usually the current command invocation, and the executor never
+ * shuts it down.
+ *
+ * @author Philippe Charles
+ */
+@Value
+public class BatchExecutor {
+
+    @Nonnull
+    ForkJoinPool pool;
+    @Nonnegative
+    int threads;
+    @Nonnegative
+    int chunkSize;
+    boolean ordered;
+    /**
+     * Time budget of an item in milliseconds; zero means no limit.
+     */
+    @Nonnegative
+    long timeout;
+    /**
+     * Consumer of the processing duration of every item, in nanoseconds; it
+     * is called concurrently by the worker threads. Null disables item timing.
+     */
+    @Nullable
+    LongConsumer itemListener;
+
+    /**
+     * Gets the executor of the current context. Unless a provider has been
+     * set, it runs on the common pool without time budget.
+     *
+     * @return
+     */
+    @Nonnull
+    public static BatchExecutor getDefault() {
+        Supplier<BatchExecutor> provider = defaultProvider;
+        return provider != null ? provider.get() : new BatchExecutor(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), 1, true, 0, null);
+    }
+
+    /**
+     * Sets the provider of the default executor, typically bound to the
+     * settings and pool of the current command invocation.
+     *
+     * @param provider a provider or null to restore the default
+     */
+    public static void setDefault(@Nullable Supplier<BatchExecutor> provider) {
+        defaultProvider = provider;
+    }
+
+    /**
+     * Creates a copy of this executor that does not report item durations.
+     * It is meant for internal steps of a computation whose items are not the
+     * ones processed by the command.
+     *
+     * @return
+     */
+    @Nonnull
+    public BatchExecutor unobserved() {
+        return itemListener != null ? new BatchExecutor(pool, threads, chunkSize, ordered, timeout, null) : this;
+    }
+
+    /**
+     * Applies a processor to every item of a list.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param input
+     * @param function
+     * @return the results, in input order if this executor is ordered
+     */
+    @Nonnull
+    public <X, Y> List<Y> map(@Nonnull List<X> input, @Nonnull Function<? super X, ? extends Y> function) {
+        Function<? super X, ? extends Y> processor = observed(function);
+        int size = Math.max(chunkSize, 1);
+        if (threads <= 1 || input.size() <= size) {
+            return input.stream().map(processor).collect(Collectors.toList());
+        }
+        List<List<X>> chunks = new ArrayList<>();
+        for (int i = 0; i < input.size(); i += size) {
+            chunks.add(input.subList(i, Math.min(i + size, input.size())));
+        }
+        return ordered ? mapOrdered(chunks, processor) : mapUnordered(chunks, processor);
+    }
+
+    /**
+     * Applies a processor to every item of a list, dispatching the most
+     * expensive items first so that long tasks do not end up alone at the tail
+     * of the batch. Idle workers pick the next pending item.
+     * <p>
+     * The cost is given by position so that it can be estimated without
+     * creating the items of a lazy list.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param input
+     * @param cost an estimate of the relative cost of the item at a position
+     * @param processor
+     * @param reporter an optional consumer of execution statistics
+     * @return the results in input order
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <X, Y> List<Y> mapByCost(@Nonnull List<X> input, @Nonnull IntToDoubleFunction cost, @Nonnull Function<? super X, ? extends Y> processor, @Nullable Consumer<? super Report> reporter) {
+        int size = input.size();
+        Object[] result = new Object[size];
+        long[] durations = new long[size];
+        long start = System.nanoTime();
+        if (threads <= 1) {
+            for (int i = 0; i < size; i++) {
+                result[i] = timed(input.get(i), processor, durations, i);
+            }
+        } else {
+            double[] costs = IntStream.range(0, size).mapToDouble(cost).toArray();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(size);
+            IntStream.range(0, size)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> costs[i]).reversed())
+                    .forEach(i -> tasks.add(pool.submit(() -> {
+                        result[i] = timed(input.get(i), processor, durations, i);
+                    })));
+            tasks.forEach(ForkJoinTask::join);
+        }
+        if (itemListener != null) {
+            Arrays.stream(durations).forEach(itemListener);
+        }
+        if (reporter != null) {
+            reporter.accept(Report.of(durations, System.nanoTime() - start, threads, timeout));
+        }
+        return new ArrayList<>((List<Y>) Arrays.asList(result));
+    }
+
+    /**
+     * Wraps a processor so that it gives up on items that exceed the time
+     * budget of this executor.
+     * <p>
+     * The budget is checked cooperatively: an item is computed on the calling
+     * worker thread, which is never interrupted, and the processor calls
+     * {@link #checkDeadline()} at the points where it can stop. When the
+     * budget is exceeded at one of these points, the computation stops and
+     * the fallback result is returned instead. An item therefore overruns its
+     * budget by at most the duration of the work between two checks.
+     * <p>
+     * A computation that is a single call to a library, such as a seasonal
+     * adjustment or an outlier detection, can only be checked once it has
+     * returned: the budget then does not free its worker earlier, it only
+     * replaces a late result by the fallback.
+     *
+     * @param <X>
+     * @param <Y>
+     * @param processor
+     * @param fallback the result of an item that timed out, given the item and
+     * a description of the cause
+     * @return the processor itself if this executor has no time budget
+     */
+    @Nonnull
+    public <X, Y> Function<X, Y> withTimeout(@Nonnull Function<? super X, ? extends Y> processor, @Nonnull BiFunction<? super X, String, ? extends Y> fallback) {
+        if (timeout <= 0) {
+            return processor::apply;
+        }
+        long budget = TimeUnit.MILLISECONDS.toNanos(timeout);
+        return o -> {
+            Long previous = DEADLINE.get();
+            DEADLINE.set(System.nanoTime() + budget);
+            try {
+                return processor.apply(o);
+            } catch (DeadlineExceededException ex) {
+                return fallback.apply(o, "Timed out after " + timeout + "ms");
+            } finally {
+                if (previous != null) {
+                    DEADLINE.set(previous);
+                } else {
+                    DEADLINE.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Stops the processing of the current item if it has exceeded its time
+     * budget; does nothing outside of {@link #withTimeout(Function, BiFunction)}.
+     *
+     * @throws DeadlineExceededException
+     */
+    public static void checkDeadline() throws DeadlineExceededException {
+        Long deadline = DEADLINE.get();
+        if (deadline != null && System.nanoTime() - deadline > 0) {
+            throw new DeadlineExceededException();
+        }
+    }
+
+    /**
+     * Thrown by {@link #checkDeadline()} when the time budget of an item is
+     * exceeded.
+     */
+    public static final class DeadlineExceededException extends RuntimeException {
+
+        private DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Execution statistics of a batch; durations are in milliseconds.
+     */
+    @Value
+    public static class Report {
+
+        int count;
+        int threads;
+        double makespan;
+        double totalWork;
+        double median;
+        double p95;
+        double max;
+        /**
+         * Number of items that used their whole time budget.
+         */
+        int timeouts;
+        /**
+         * Slowest items, slowest first.
+         */
+        List<Item> slowest;
+
+        /**
+         * Ratio between the total work and the makespan of the available
+         * threads; 1 means that no thread was idle.
+         *
+         * @return
+         */
+        public double getEfficiency() {
+            return makespan > 0 ? totalWork / (makespan * threads) : 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d items on %d threads in %.0fms (work %.0fms, efficiency %.0f%%); per item: median %.1fms, p95 %.1fms, max %.1fms%s",
+                    count, threads, makespan, totalWork, getEfficiency() * 100, median, p95, max, timeouts > 0 ? "; " + timeouts + " timed out" : "");
+        }
+
+        /**
+         * Position of an item in the input of the batch and its duration.
+         */
+        @Value
+        public static class Item {
+
+            int index;
+            double duration;
+        }
+
+        static Report of(long[] durations, long makespan, int threads, long timeout) {
+            long[] sorted = durations.clone();
+            Arrays.sort(sorted);
+            long budget = TimeUnit.MILLISECONDS.toNanos(timeout);
+            int timeouts = budget > 0 ? (int) Arrays.stream(sorted).filter(o -> o >= budget).count() : 0;
+            List<Item> slowest = IntStream.range(0, durations.length)
+                    .boxed()
+                    .sorted(Comparator.comparingLong((Integer i) -> durations[i]).reversed())
+                    .limit(SLOWEST_COUNT)
+                    .map(i -> new Item(i, toMillis(durations[i])))
+                    .collect(Collectors.toList());
+            return new Report(sorted.length, threads, toMillis(makespan), toMillis(Arrays.stream(sorted).sum()),
+                    toMillis(percentile(sorted, 0.5)), toMillis(percentile(sorted, 0.95)), toMillis(percentile(sorted, 1)),
+                    timeouts, slowest);
+        }
+
+        /**
+         * Maps the indexes of the slowest items to the positions of the
+         * batch items in a larger input.
+         */
+        Report withPositions(int[] positions) {
+            List<Item> items = slowest.stream().map(o -> new Item(positions[o.getIndex()], o.getDuration())).collect(Collectors.toList());
+            return new Report(count, threads, makespan, totalWork, median, p95, max, timeouts, items);
+        }
+
+        private static final int SLOWEST_COUNT = 10;
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static volatile Supplier<BatchExecutor> defaultProvider = null;
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private <X, Y> List<Y> mapOrdered(List<List<X>> chunks, Function<? super X, ? extends Y> processor) {
+        List<ForkJoinTask<List<Y>>> tasks = new ArrayList<>(chunks.size());
+        for (List<X> chunk : chunks) {
+            tasks.add(pool.submit(() -> apply(chunk, processor)));
+        }
+        List<Y> result = new ArrayList<>();
+        for (ForkJoinTask<List<Y>> task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    private <X, Y> List<Y> mapUnordered(List<List<X>> chunks, Function<? super X, ? extends Y> processor) {
+        CompletionService<List<Y>> service = new ExecutorCompletionService<>(pool);
+        for (List<X> chunk : chunks) {
+            service.submit(() -> apply(chunk, processor));
+        }
+        List<Y> result = new ArrayList<>();
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                result.addAll(service.take().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return result;
+    }
+
+    private <X, Y> Function<? super X, ? extends Y> observed(Function<? super X, ? extends Y> processor) {
+        LongConsumer listener = itemListener;
+        if (listener == null) {
+            return processor;
+        }
+        return o -> {
+            long start = System.nanoTime();
+            try {
+                return processor.apply(o);
+            } finally {
+                listener.accept(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private static <X, Y> Y timed(X item, Function<? super X, ? extends Y> processor, long[] durations, int index) {
+        long start = System.nanoTime();
+        try {
+            return processor.apply(item);
+        } finally {
+            durations[index] = System.nanoTime() - start;
+        }
+    }
+
+    private static <X, Y> List<Y> apply(List<X> chunk, Function<? super X, ? extends Y> processor) {
+        List<Y> result = new ArrayList<>(chunk.size());
+        for (X o : chunk) {
+            result.add(processor.apply(o));
+        }
+        return result;
+    }
+    //</editor-fold>
+}
@@ -22,7 +22,9 @@ import ec.tstoolkit.timeseries.TsAggregationType;
 import ec.tstoolkit.timeseries.simplets.TsData;
 import ec.tstoolkit.timeseries.simplets.TsDomain;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.Value;
 
 /**
@@ -44,6 +46,21 @@ public interface BenchmarkingTool {
 
     TsData computeDenton(@Nonnull TsFrequency freq, @Nonnull TsData y, @Nonnull DentonOptions options);
 
+    /**
+     * Benchmarks pairs of series by position. Pairs that share the same
+     * length, conversion factor and alignment of constraints may share their
+     * computations.
+     *
+     * @param x the series to benchmark
+     * @param y the aggregation constraints, one per series
+     * @param options
+     * @return the benchmarked series in the same order; an item is null if its
+     * pair cannot be processed
+     * @throws IllegalArgumentException if the lists differ in size
+     */
+    @Nonnull
+    List<TsData> computeDenton(@Nonnull List<TsData> x, @Nonnull List<TsData> y, @Nonnull DentonOptions options) throws IllegalArgumentException;
+
     @Value
     public static final class SsfDentonOptions {
 
@@ -64,6 +81,44 @@ public interface BenchmarkingTool {
 
     TsData computeCholette(@Nonnull TsData x, @Nonnull TsData y, @Nonnull CholetteOptions options);
 
+    @Value
+    public static final class ReconciliationOptions {
+
+        boolean multiplicative;
+        boolean modified;
+        int differencing;
+        TsAggregationType aggregationType;
+        double precision;
+        int maxIterations;
+    }
+
+    @Value
+    public static final class Reconciliation {
+
+        List<TsData> series;
+        TsData total;
+        int iterations;
+        double residual;
+    }
+
+    /**
+     * Benchmarks series to their own temporal constraints while keeping their
+     * sum equal to a contemporaneous total (multivariate Denton).
+     *
+     * @param x the series to benchmark, on the same domain
+     * @param y the temporal constraints, one per series, at the same
+     * frequency; an item may be null
+     * @param total the contemporaneous total or null to use the sum of the
+     * series; it is benchmarked to the sums of the constraints if needed
+     * @param options
+     * @return the benchmarked series in the same order, the total that they
+     * add up to, the number of iterations and the largest remaining
+     * contemporaneous discrepancy
+     * @throws IllegalArgumentException if the inputs are inconsistent
+     */
+    @Nonnull
+    Reconciliation reconcile(@Nonnull List<TsData> x, @Nonnull List<TsData> y, @Nullable TsData total, @Nonnull ReconciliationOptions options) throws IllegalArgumentException;
+
     @Value
     public static final class ExpanderOptions {
 
@@ -80,6 +135,22 @@ public interface BenchmarkingTool {
 
     TsData expand(@Nonnull TsDomain domain, @Nonnull TsData y, ExpanderOptions options);
 
+    /**
+     * Expands many series with the same options. Identical series are
+     * expanded once. Unless the options give a parameter, it is estimated
+     * for each distinct series; no pooled estimate is made.
+     *
+     * @param freq
+     * @param y
+     * @param options
+     * @return the expanded series in the same order
+     */
+    @Nonnull
+    List<TsData> expand(@Nonnull TsFrequency freq, @Nonnull List<TsData> y, ExpanderOptions options);
+
+    @Nonnull
+    List<TsData> expand(@Nonnull TsDomain domain, @Nonnull List<TsData> y, ExpanderOptions options);
+
     @Nonnull
     public static BenchmarkingTool getDefault() {
         return new BenchmarkingToolImpl();
@@ -26,6 +26,7 @@ import ec.tstoolkit.timeseries.simplets.TsData;
 import ec.tstoolkit.timeseries.simplets.TsDomain;
 import ec.tstoolkit.timeseries.simplets.TsFrequency;
 import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.List;
 
 /**
  *
@@ -46,6 +47,11 @@ public final class BenchmarkingToolImpl implements BenchmarkingTool {
         return result.benchmark(null, y);
     }
 
+    @Override
+    public List<TsData> computeDenton(List<TsData> x, List<TsData> y, DentonOptions options) {
+        return new DentonBatch(options, (a, b) -> computeDenton(a, b, options)).compute(x, y);
+    }
+
     @Override
     public TsData computeSsfDenton(TsData x, TsData y, SsfDentonOptions options) {
         TsDenton denton = new TsDenton();
@@ -64,6 +70,11 @@ public final class BenchmarkingToolImpl implements BenchmarkingTool {
         return cholette.process(x, y);
     }
 
+    @Override
+    public Reconciliation reconcile(List<TsData> x, List<TsData> y, TsData total, ReconciliationOptions options) {
+        return new Reconciler(options).reconcile(x, y, total);
+    }
+
     @Override
     public TsData expand(TsFrequency freq, TsData y, ExpanderOptions options) {
         return newTsExpander(options).expand(y, freq);
@@ -74,6 +85,16 @@ public final class BenchmarkingToolImpl implements BenchmarkingTool {
         return newTsExpander(options).expand(y, domain);
     }
 
+    @Override
+    public List<TsData> expand(TsFrequency freq, List<TsData> y, ExpanderOptions options) {
+        return new ExpanderBatch(o -> expand(freq, o, options)).expand(y);
+    }
+
+    @Override
+    public List<TsData> expand(TsDomain domain, List<TsData> y, ExpanderOptions options) {
+        return new ExpanderBatch(o -> expand(domain, o, options)).expand(y);
+    }
+
     //<editor-fold defaultstate="collapsed" desc="Implementation details">
     private TsDenton2 newTsDenton2(DentonOptions options) {
         TsDenton2 result = new TsDenton2();
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tss.TsMoniker;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Compact in-memory time series collection.
+ * <p>
+ * Observations of all the series are stored in a single array indexed by
+ * offsets; frequencies and starts are stored as primitive arrays and the
+ * sources and metadata are dictionary-encoded. A 500k series collection
+ * therefore costs a few arrays instead of millions of small objects. The
+ * only objects kept per series are anonymous monikers, whose identity cannot
+ * be rebuilt from their source and id.
+ * <p>
+ * Series are materialized on access: {@link #get(int)} creates a new
+ * {@link TsInformation} whose data is a copy of its slice, which becomes
+ * garbage as soon as the caller is done with it. Instances are immutable and
+ * thread-safe.
+ *
+ * @author Philippe Charles
+ */
+public final class ColumnarTsCollection implements TsCollectionView {
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nonnull
+    public static ColumnarTsCollection of(@Nonnull TsCollectionInformation info) {
+        Builder result = builder().header(info);
+        info.items.forEach(result::add);
+        return result.build();
+    }
+
+    private final TsCollectionInformation header;
+    private final int size;
+    private final String[] names;
+    private final int[] sources;
+    private final String[] ids;
+    private final String[] causes;
+    private final byte[] types;
+    private final Map<Integer, TsMoniker> anonymous;
+    private final byte[] frequencies;
+    private final int[] starts;
+    private final int[] offsets;
+    private final double[] values;
+    private final int[] metaOffsets;
+    private final int[] metaEntries;
+    private final String[] strings;
+
+    private ColumnarTsCollection(Builder b) {
+        this.header = b.header;
+        this.size = b.size;
+        this.names = Arrays.copyOf(b.names, b.size);
+        this.sources = Arrays.copyOf(b.sources, b.size);
+        this.ids = Arrays.copyOf(b.ids, b.size);
+        this.causes = Arrays.copyOf(b.causes, b.size);
+        this.types = Arrays.copyOf(b.types, b.size);
+        this.anonymous = new HashMap<>(b.anonymous);
+        this.frequencies = Arrays.copyOf(b.frequencies, b.size);
+        this.starts = Arrays.copyOf(b.starts, b.size);
+        this.offsets = Arrays.copyOf(b.offsets, b.size + 1);
+        this.values = Arrays.copyOf(b.values, b.offsets[b.size]);
+        this.metaOffsets = Arrays.copyOf(b.metaOffsets, b.size + 1);
+        this.metaEntries = Arrays.copyOf(b.metaEntries, b.metaOffsets[b.size]);
+        this.strings = new String[b.dictionary.size()];
+        b.dictionary.forEach((k, v) -> strings[v] = k);
+    }
+
+    @Override
+    public TsCollectionInformation getHeader() {
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = header.name;
+        result.moniker = header.moniker;
+        result.metaData = header.metaData;
+        result.invalidDataCause = header.invalidDataCause;
+        result.type = header.type;
+        return result;
+    }
+
+    @Nonnegative
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the total number of observations.
+     *
+     * @return
+     */
+    @Nonnegative
+    public int getObsCount() {
+        return offsets[size];
+    }
+
+    @Nullable
+    public String getName(@Nonnegative int index) {
+        return names[index];
+    }
+
+    @Override
+    public int getLength(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    @Override
+    public int getFrequency(int index) {
+        return frequencies[index];
+    }
+
+    /**
+     * Creates the data of a series.
+     *
+     * @param index
+     * @return a new object or null if the series has no data
+     */
+    @Nullable
+    public TsData getData(@Nonnegative int index) {
+        if (frequencies[index] == NO_DATA) {
+            return null;
+        }
+        int freq = frequencies[index];
+        return new TsData(TsFrequency.valueOf(freq), starts[index] / freq, starts[index] % freq, Arrays.copyOfRange(values, offsets[index], offsets[index + 1]), false);
+    }
+
+    /**
+     * Creates a series.
+     *
+     * @param index
+     * @return a new object
+     */
+    @Nonnull
+    public TsInformation get(@Nonnegative int index) {
+        TsInformation result = new TsInformation();
+        result.name = names[index];
+        result.moniker = getMoniker(index);
+        result.metaData = getMetaData(index);
+        result.invalidDataCause = causes[index];
+        result.data = getData(index);
+        result.type = types[index] != NULL_TYPE ? TYPES[types[index]] : null;
+        return result;
+    }
+
+    @Override
+    public List<TsInformation> asList() {
+        return new ListView();
+    }
+
+    /**
+     * Creates a collection containing all the series.
+     *
+     * @return
+     */
+    @Nonnull
+    public TsCollectionInformation toTsCollection() {
+        TsCollectionInformation result = getHeader();
+        for (int i = 0; i < size; i++) {
+            result.items.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Incremental builder; series are copied into growing arrays as they are
+     * added so that the source objects can be released immediately.
+     */
+    public static final class Builder {
+
+        private TsCollectionInformation header = new TsCollectionInformation();
+        private int size = 0;
+        private String[] names = new String[INITIAL_CAPACITY];
+        private int[] sources = new int[INITIAL_CAPACITY];
+        private String[] ids = new String[INITIAL_CAPACITY];
+        private String[] causes = new String[INITIAL_CAPACITY];
+        private byte[] types = new byte[INITIAL_CAPACITY];
+        private final Map<Integer, TsMoniker> anonymous = new HashMap<>();
+        private byte[] frequencies = new byte[INITIAL_CAPACITY];
+        private int[] starts = new int[INITIAL_CAPACITY];
+        private int[] offsets = new int[INITIAL_CAPACITY + 1];
+        private double[] values = new double[INITIAL_CAPACITY * 16];
+        private int[] metaOffsets = new int[INITIAL_CAPACITY + 1];
+        private int[] metaEntries = new int[INITIAL_CAPACITY];
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the properties of the collection; its items are ignored.
+         *
+         * @param info
+         * @return
+         */
+        @Nonnull
+        public Builder header(@Nonnull TsCollectionInformation info) {
+            this.header = new TsCollectionInformation();
+            header.name = info.name;
+            header.moniker = info.moniker;
+            header.metaData = info.metaData;
+            header.invalidDataCause = info.invalidDataCause;
+            header.type = info.type;
+            return this;
+        }
+
+        @Nonnull
+        public Builder add(@Nonnull TsInformation info) {
+            if (size == names.length) {
+                int capacity = names.length * 2;
+                names = Arrays.copyOf(names, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                causes = Arrays.copyOf(causes, capacity);
+                types = Arrays.copyOf(types, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                offsets = Arrays.copyOf(offsets, capacity + 1);
+                metaOffsets = Arrays.copyOf(metaOffsets, capacity + 1);
+            }
+            names[size] = info.name;
+            addMoniker(info.moniker);
+            causes[size] = info.invalidDataCause;
+            types[size] = info.type != null ? (byte) info.type.ordinal() : NULL_TYPE;
+            addData(info.data);
+            addMetaData(info.metaData);
+            size++;
+            return this;
+        }
+
+        @Nonnull
+        public ColumnarTsCollection build() {
+            return new ColumnarTsCollection(this);
+        }
+
+        private void addMoniker(TsMoniker moniker) {
+            if (moniker == null) {
+                sources[size] = NULL_MONIKER;
+                ids[size] = null;
+                return;
+            }
+            sources[size] = intern(moniker.getSource());
+            ids[size] = moniker.getId();
+            if (moniker.getSource() == null && moniker.getId() == null) {
+                anonymous.put(size, moniker);
+            }
+        }
+
+        private void addData(TsData data) {
+            int offset = offsets[size];
+            if (data == null) {
+                frequencies[size] = NO_DATA;
+                starts[size] = 0;
+                offsets[size + 1] = offset;
+                return;
+            }
+            TsPeriod start = data.getStart();
+            int freq = start.getFrequency().intValue();
+            frequencies[size] = (byte) freq;
+            starts[size] = start.getYear() * freq + start.getPosition();
+            int length = data.getLength();
+            if (offset + length > values.length || offset + length < 0) {
+                values = Arrays.copyOf(values, grow(values.length, offset + length));
+            }
+            System.arraycopy(data.getValues().internalStorage(), 0, values, offset, length);
+            offsets[size + 1] = offset + length;
+        }
+
+        private void addMetaData(MetaData metaData) {
+            int offset = metaOffsets[size];
+            int count = metaData != null ? metaData.size() * 2 : 0;
+            if (offset + count > metaEntries.length) {
+                metaEntries = Arrays.copyOf(metaEntries, grow(metaEntries.length, offset + count));
+            }
+            if (metaData != null) {
+                for (Map.Entry<String, String> o : metaData.entrySet()) {
+                    metaEntries[offset++] = intern(o.getKey());
+                    metaEntries[offset++] = intern(o.getValue());
+                }
+            }
+            metaOffsets[size + 1] = offset;
+        }
+
+        private int intern(String value) {
+            return value != null ? dictionary.computeIfAbsent(value, o -> dictionary.size()) : NULL_STRING;
+        }
+
+        private static int grow(int capacity, int required) {
+            if (required < 0) {
+                throw new IllegalStateException("Too many observations");
+            }
+            long result = Math.max((long) capacity * 2, required);
+            return (int) Math.min(result, Integer.MAX_VALUE - 8);
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int INITIAL_CAPACITY = 256;
+    private static final byte NO_DATA = 0;
+    private static final int NULL_STRING = -1;
+    private static final int NULL_MONIKER = -2;
+    private static final byte NULL_TYPE = -1;
+    private static final TsInformationType[] TYPES = TsInformationType.values();
+
+    private String getString(int index) {
+        return index != NULL_STRING ? strings[index] : null;
+    }
+
+    private TsMoniker getMoniker(int index) {
+        if (sources[index] == NULL_MONIKER) {
+            return null;
+        }
+        TsMoniker result = anonymous.get(index);
+        return result != null ? result : new TsMoniker(getString(sources[index]), ids[index]);
+    }
+
+    private MetaData getMetaData(int index) {
+        int from = metaOffsets[index];
+        int to = metaOffsets[index + 1];
+        if (from == to) {
+            return null;
+        }
+        MetaData result = new MetaData();
+        for (int i = from; i < to; i += 2) {
+            result.put(getString(metaEntries[i]), getString(metaEntries[i + 1]));
+        }
+        return result;
+    }
+
+    private final class ListView extends AbstractList<TsInformation> implements RandomAccess {
+
+        @Override
+        public TsInformation get(int index) {
+            return ColumnarTsCollection.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+    //</editor-fold>
+}
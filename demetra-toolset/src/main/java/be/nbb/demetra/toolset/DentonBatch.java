@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.BenchmarkingTool.DentonOptions;
+import static be.nbb.demetra.toolset.DentonUtil.differencing;
+import static be.nbb.demetra.toolset.DentonUtil.hasMissingValues;
+import static be.nbb.demetra.toolset.DentonUtil.indexes;
+import static be.nbb.demetra.toolset.DentonUtil.isSupported;
+import static be.nbb.demetra.toolset.DentonUtil.weight;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.TsPeriodSelector;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import lombok.Value;
+
+/**
+ * Additive Denton benchmarking of many pairs that share their system.
+ * <p>
+ * The additive solution is {@code x + G (y - J x)} where {@code J} is the
+ * aggregation matrix and {@code G} only depends on the length of the series,
+ * the conversion factor, the offset of the constraints, the differencing order
+ * and the aggregation type. {@code G} is therefore computed once per distinct
+ * shape by solving the constrained quadratic system for all the constraints
+ * at once, and then shared by all the pairs of that shape.
+ * <p>
+ * {@code G} is obtained by a dense Gauss-Jordan elimination of the
+ * {@code n + m} KKT system, which costs {@code O((n + m)^3)} operations and
+ * {@code O((n + m) (n + 2m))} doubles per shape, {@code n} being the length of
+ * the series and {@code m} the number of constraints. It is therefore limited
+ * to series of at most {@link #MAX_LENGTH} observations (50 years of monthly
+ * data).
+ * <p>
+ * Pairs that do not fit this scheme (multiplicative benchmarking, missing
+ * values, constraints that do not fall within the series, longer series,
+ * singular or ill-conditioned systems) are handed to a fallback.
+ *
+ * @author Philippe Charles
+ */
+final class DentonBatch {
+
+    /**
+     * Maximum length of the series whose gain is computed by a dense solve.
+     */
+    static final int MAX_LENGTH = 600;
+
+    private final DentonOptions options;
+    private final BiFunction<TsData, TsData, TsData> fallback;
+    private final Map<Shape, double[][]> gains = new ConcurrentHashMap<>();
+
+    DentonBatch(DentonOptions options, BiFunction<TsData, TsData, TsData> fallback) {
+        this.options = options;
+        this.fallback = fallback;
+    }
+
+    List<TsData> compute(List<TsData> x, List<TsData> y) {
+        if (x.size() != y.size()) {
+            throw new IllegalArgumentException("Expected: " + x.size() + ", found: " + y.size());
+        }
+        List<Problem> problems = BatchExecutor.getDefault().unobserved().map(indexes(x.size()), i -> prepare(x.get(i), y.get(i)));
+
+        Map<Shape, Boolean> shapes = new LinkedHashMap<>();
+        problems.forEach(o -> {
+            if (o.getShape() != null) {
+                shapes.put(o.getShape(), Boolean.TRUE);
+            }
+        });
+        BatchExecutor.getDefault().unobserved().map(new ArrayList<>(shapes.keySet()), o -> gains.computeIfAbsent(o, DentonBatch::solveGain));
+
+        return BatchExecutor.getDefault().map(indexes(x.size()), i -> solve(problems.get(i), x.get(i), y.get(i)));
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final double EPSILON = 1e-12;
+    private static final double MAX_CONDITION = 1e10;
+    private static final double TOLERANCE = 1e-8;
+
+    @Value
+    private static class Shape {
+
+        int length;
+        int ratio;
+        int offset;
+        int constraints;
+        int differencing;
+        boolean modified;
+        TsAggregationType aggregationType;
+    }
+
+    @Value
+    private static class Problem {
+
+        Shape shape;
+        TsPeriod start;
+        double[] constraints;
+    }
+
+    private Problem prepare(TsData x, TsData y) {
+        if (options.isMultiplicative() || x == null || y == null || x.isEmpty() || y.isEmpty() || x.getLength() > MAX_LENGTH || !isSupported(options.getAggregationType())) {
+            return new Problem(null, null, null);
+        }
+        int yfreq = y.getFrequency().intValue();
+        int qfreq = x.getFrequency().intValue();
+        if (qfreq % yfreq != 0) {
+            return new Problem(null, null, null);
+        }
+        TsPeriodSelector qsel = new TsPeriodSelector();
+        qsel.between(x.getStart().firstday(), x.getLastPeriod().lastday());
+        TsData constraints = y.select(qsel);
+        if (constraints.isEmpty() || hasMissingValues(x.getValues().internalStorage()) || hasMissingValues(constraints.getValues().internalStorage())) {
+            return new Problem(null, null, null);
+        }
+        TsPeriod q0 = x.getStart(), yq0 = new TsPeriod(q0.getFrequency());
+        yq0.set(constraints.getStart().firstday());
+        int ratio = qfreq / yfreq;
+        int offset = yq0.minus(q0);
+        int m = constraints.getLength();
+        if (offset < 0 || offset + m * ratio > x.getLength() || m < options.getDifferencing()) {
+            return new Problem(null, null, null);
+        }
+        Shape shape = new Shape(x.getLength(), ratio, offset, m, options.getDifferencing(), options.isModified(), options.getAggregationType());
+        return new Problem(shape, x.getStart(), constraints.getValues().internalStorage());
+    }
+
+    private TsData solve(Problem problem, TsData x, TsData y) {
+        double[][] gain = problem.getShape() != null ? gains.get(problem.getShape()) : null;
+        if (gain == null) {
+            return fallback.apply(x, y);
+        }
+        Shape shape = problem.getShape();
+        double[] values = x.getValues().internalStorage();
+        double[] residuals = problem.getConstraints().clone();
+        for (int j = 0; j < residuals.length; j++) {
+            residuals[j] -= aggregate(values, shape, j);
+        }
+        double[] result = values.clone();
+        for (int i = 0; i < result.length; i++) {
+            double[] row = gain[i];
+            double sum = 0;
+            for (int j = 0; j < residuals.length; j++) {
+                sum += row[j] * residuals[j];
+            }
+            result[i] += sum;
+        }
+        return new TsData(problem.getStart(), result, false);
+    }
+
+    private static double aggregate(double[] values, Shape shape, int j) {
+        return DentonUtil.aggregate(values, shape.getOffset() + j * shape.getRatio(), shape.getRatio(), shape.getAggregationType());
+    }
+
+    /**
+     * Solves the system [A J'; J 0] [G; L] = [0; I] where A = D'D is the
+     * quadratic form of the differences, and returns G, or null if the system
+     * is singular or too ill-conditioned for G to satisfy J G = I.
+     */
+    private static double[][] solveGain(Shape shape) {
+        int n = shape.getLength();
+        int m = shape.getConstraints();
+        int size = n + m;
+        double[][] a = new double[size][size + m];
+
+        double[] coefficients = differencing(shape.getDifferencing());
+        int d = coefficients.length - 1;
+        for (int t = shape.isModified() ? d : 0; t < n; t++) {
+            for (int k = 0; k <= d && k <= t; k++) {
+                for (int l = 0; l <= d && l <= t; l++) {
+                    a[t - k][t - l] += coefficients[k] * coefficients[l];
+                }
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            int start = shape.getOffset() + j * shape.getRatio();
+            for (int k = 0; k < shape.getRatio(); k++) {
+                double w = weight(k, shape.getRatio(), shape.getAggregationType());
+                if (w != 0) {
+                    setConstraint(a, n + j, start + k, w);
+                }
+            }
+            a[n + j][size + j] = 1;
+        }
+
+        if (!eliminate(a, size)) {
+            return null;
+        }
+        double[][] result = new double[n][];
+        for (int i = 0; i < n; i++) {
+            result[i] = Arrays.copyOfRange(a[i], size, size + m);
+        }
+        return isAccurate(result, shape) ? result : null;
+    }
+
+    /**
+     * Checks that every column of the gain meets its own constraint and none
+     * of the others, which is what the benchmarked series rely on.
+     */
+    private static boolean isAccurate(double[][] gain, Shape shape) {
+        int n = shape.getLength();
+        int m = shape.getConstraints();
+        double[] column = new double[n];
+        for (int k = 0; k < m; k++) {
+            for (int i = 0; i < n; i++) {
+                column[i] = gain[i][k];
+            }
+            for (int j = 0; j < m; j++) {
+                double expected = j == k ? 1 : 0;
+                double actual = aggregate(column, shape, j);
+                if (!(Math.abs(actual - expected) <= TOLERANCE)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void setConstraint(double[][] a, int row, int column, double weight) {
+        a[row][column] = weight;
+        a[column][row] = weight;
+    }
+
+    /**
+     * Gauss-Jordan elimination with partial pivoting of an augmented matrix.
+     * Fails if a pivot is negligible relative to the largest coefficient or
+     * if the ratio of the largest pivot to the smallest one, a cheap lower
+     * bound of the condition number, exceeds {@link #MAX_CONDITION}.
+     */
+    private static boolean eliminate(double[][] a, int size) {
+        int columns = a[0].length;
+        double threshold = 0;
+        for (int i = 0; i < size; i++) {
+            for (int c = 0; c < size; c++) {
+                threshold = Math.max(threshold, Math.abs(a[i][c]));
+            }
+        }
+        threshold *= EPSILON;
+        double smallest = Double.POSITIVE_INFINITY;
+        double largest = 0;
+        for (int p = 0; p < size; p++) {
+            int pivot = p;
+            for (int i = p + 1; i < size; i++) {
+                if (Math.abs(a[i][p]) > Math.abs(a[pivot][p])) {
+                    pivot = i;
+                }
+            }
+            double magnitude = Math.abs(a[pivot][p]);
+            if (!(magnitude > threshold)) {
+                return false;
+            }
+            smallest = Math.min(smallest, magnitude);
+            largest = Math.max(largest, magnitude);
+            if (largest > MAX_CONDITION * smallest) {
+                return false;
+            }
+            double[] tmp = a[p];
+            a[p] = a[pivot];
+            a[pivot] = tmp;
+            double[] row = a[p];
+            double inv = 1 / row[p];
+            for (int c = p; c < columns; c++) {
+                row[c] *= inv;
+            }
+            for (int i = 0; i < size; i++) {
+                double factor = a[i][p];
+                if (i != p && factor != 0) {
+                    double[] target = a[i];
+                    for (int c = p; c < columns; c++) {
+                        target[c] -= factor * row[c];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    //</editor-fold>
+}
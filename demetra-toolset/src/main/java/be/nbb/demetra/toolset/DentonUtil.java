@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tstoolkit.timeseries.TsAggregationType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Building blocks shared by the Denton solvers of this package.
+ *
+ * @author Philippe Charles
+ */
+@UtilityClass
+class DentonUtil {
+
+    static boolean isSupported(@Nonnull TsAggregationType type) {
+        switch (type) {
+            case Sum:
+            case Average:
+            case First:
+            case Last:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Nonnull
+    static List<Integer> indexes(@Nonnegative int size) {
+        List<Integer> result = new ArrayList<>(size);
+        IntStream.range(0, size).forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Computes the coefficients of a differencing operator.
+     *
+     * @param order
+     * @return the coefficients of (1 - B)^order, by increasing lag
+     */
+    @Nonnull
+    static double[] differencing(@Nonnegative int order) {
+        double[] result = {1};
+        for (int i = 0; i < order; i++) {
+            double[] tmp = new double[result.length + 1];
+            for (int k = 0; k < result.length; k++) {
+                tmp[k] += result[k];
+                tmp[k + 1] -= result[k];
+            }
+            result = tmp;
+        }
+        return result;
+    }
+
+    static boolean hasMissingValues(@Nonnull double[] values) {
+        for (double o : values) {
+            if (!Double.isFinite(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Aggregates a low frequency period.
+     *
+     * @param values
+     * @param start the position of the first value of the period
+     * @param ratio the number of values per period
+     * @param type a supported aggregation type
+     * @return
+     */
+    static double aggregate(@Nonnull double[] values, @Nonnegative int start, @Nonnegative int ratio, @Nonnull TsAggregationType type) {
+        switch (type) {
+            case First:
+                return values[start];
+            case Last:
+                return values[start + ratio - 1];
+            default:
+                double sum = 0;
+                for (int k = 0; k < ratio; k++) {
+                    sum += values[start + k];
+                }
+                return type == TsAggregationType.Average ? sum / ratio : sum;
+        }
+    }
+
+    /**
+     * Gets the weight of a value in the aggregate of its period.
+     *
+     * @param k the position of the value in its period
+     * @param ratio the number of values per period
+     * @param type a supported aggregation type
+     * @return
+     */
+    static double weight(@Nonnegative int k, @Nonnegative int ratio, @Nonnull TsAggregationType type) {
+        switch (type) {
+            case First:
+                return k == 0 ? 1 : 0;
+            case Last:
+                return k == ratio - 1 ? 1 : 0;
+            case Average:
+                return 1.0 / ratio;
+            default:
+                return 1;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import lombok.Value;
+
+/**
+ * Expands many series with the same options.
+ * <p>
+ * Identical inputs (same start and same values) are expanded once and their
+ * result is copied, which is common in large panels of short series where
+ * many of them are empty, constant or repeated. The distinct inputs are then
+ * dispatched by decreasing length so that the estimation of the longest series
+ * does not end up alone at the tail of the batch. Each distinct input is
+ * expanded on its own, including the estimation of the parameter of the
+ * model.
+ *
+ * @author Philippe Charles
+ */
+final class ExpanderBatch {
+
+    private final Function<TsData, TsData> expander;
+
+    ExpanderBatch(Function<TsData, TsData> expander) {
+        this.expander = expander;
+    }
+
+    List<TsData> expand(List<TsData> y) {
+        Map<Input, Integer> index = new HashMap<>();
+        List<TsData> distinct = new ArrayList<>();
+        int[] refs = new int[y.size()];
+        for (int i = 0; i < refs.length; i++) {
+            TsData o = y.get(i);
+            refs[i] = index.computeIfAbsent(Input.of(o), k -> {
+                distinct.add(o);
+                return distinct.size() - 1;
+            });
+        }
+
+        List<TsData> expanded = BatchExecutor.getDefault().mapByCost(distinct, i -> getCost(distinct.get(i)), expander, null);
+
+        boolean[] used = new boolean[expanded.size()];
+        List<TsData> result = new ArrayList<>(refs.length);
+        for (int ref : refs) {
+            TsData o = expanded.get(ref);
+            result.add(used[ref] ? copy(o) : o);
+            used[ref] = true;
+        }
+        return result;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    @Value
+    private static class Input {
+
+        static Input of(TsData data) {
+            return data != null ? new Input(data.getStart(), data.getValues().internalStorage()) : new Input(null, null);
+        }
+
+        TsPeriod start;
+        double[] values;
+    }
+
+    private static double getCost(TsData data) {
+        return data != null ? data.getLength() : 0;
+    }
+
+    private static TsData copy(TsData data) {
+        return data != null ? new TsData(data.getStart(), data.getValues().internalStorage().clone(), false) : null;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.BenchmarkingTool.Reconciliation;
+import be.nbb.demetra.toolset.BenchmarkingTool.ReconciliationOptions;
+import static be.nbb.demetra.toolset.DentonUtil.differencing;
+import static be.nbb.demetra.toolset.DentonUtil.hasMissingValues;
+import static be.nbb.demetra.toolset.DentonUtil.indexes;
+import static be.nbb.demetra.toolset.DentonUtil.isSupported;
+import static be.nbb.demetra.toolset.DentonUtil.weight;
+import com.google.common.collect.Lists;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsDomain;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Multivariate Denton benchmarking: series are benchmarked to their own
+ * temporal constraints while their sum is kept equal to a contemporaneous
+ * total.
+ * <p>
+ * The contemporaneous constraints are dualized: for given multipliers, every
+ * series is an independent Denton problem whose KKT system is banded once the
+ * multipliers of the temporal constraints are interleaved with the
+ * observations, and is solved in linear time. The multipliers are found by
+ * conjugate gradient on their Schur complement, whose products are sums of
+ * such solves computed in parallel. Nothing larger than a few vectors per
+ * series is kept; the systems are rebuilt at every iteration instead of being
+ * stored.
+ * <p>
+ * The total must be consistent with the temporal constraints of the series;
+ * it is first benchmarked to their sums on the periods constrained for all the
+ * series. Series whose system is singular are left unchanged. The reported
+ * residual is the largest discrepancy between the sum of the benchmarked
+ * series and the total, measured on the output rather than taken from the
+ * recursion of the conjugate gradient.
+ *
+ * @author Philippe Charles
+ */
+final class Reconciler {
+
+    private final ReconciliationOptions options;
+    private final double[] coefficients;
+
+    Reconciler(ReconciliationOptions options) {
+        if (!isSupported(options.getAggregationType())) {
+            throw new IllegalArgumentException("Aggregation type not supported: " + options.getAggregationType());
+        }
+        this.options = options;
+        this.coefficients = differencing(options.getDifferencing());
+    }
+
+    Reconciliation reconcile(List<TsData> x, List<TsData> y, TsData total) throws IllegalArgumentException {
+        if (x.isEmpty()) {
+            throw new IllegalArgumentException("No series to reconcile");
+        }
+        if (x.size() != y.size()) {
+            throw new IllegalArgumentException("Expected: " + x.size() + ", found: " + y.size());
+        }
+        if (x.get(0) == null) {
+            throw new IllegalArgumentException("Series must have the same domain");
+        }
+        TsDomain domain = x.get(0).getDomain();
+        int ratio = getRatio(domain, y);
+        List<Series> series = BatchExecutor.getDefault().map(indexes(x.size()), i -> newSeries(domain, ratio, x.get(i), y.get(i)));
+
+        List<Series> free = series.stream().filter(o -> !o.isFixed()).collect(Collectors.toList());
+        double[] target = getTotal(domain, series, total);
+        Series totalSeries = newTotal(domain, ratio, target, series, free);
+        if (totalSeries.constraints.length > 0) {
+            double[] correction = totalSeries.solve(totalSeries.residuals, null);
+            if (correction != null) {
+                for (int t = 0; t < target.length; t++) {
+                    target[t] += correction[t];
+                }
+            }
+        }
+
+        double[] rhs = target.clone();
+        for (Series o : series) {
+            subtract(rhs, o.values);
+        }
+        subtract(rhs, sum(free, o -> o.solve(o.residuals, null)));
+
+        double precision = options.getPrecision() * Math.max(1, norm(target));
+        double[] multipliers = new double[rhs.length];
+        double[] residuals = rhs;
+        double[] direction = residuals.clone();
+        double rr = dot(residuals, residuals);
+        int iterations = 0;
+        while (!free.isEmpty() && norm(residuals) > precision && iterations < options.getMaxIterations()) {
+            double[] p = direction;
+            double[] q = sum(free, o -> o.solve(null, p));
+            double pq = dot(p, q);
+            if (pq <= 0) {
+                break;
+            }
+            double alpha = rr / pq;
+            for (int t = 0; t < p.length; t++) {
+                multipliers[t] += alpha * p[t];
+                residuals[t] -= alpha * q[t];
+            }
+            double next = dot(residuals, residuals);
+            for (int t = 0; t < p.length; t++) {
+                direction[t] = residuals[t] + next / rr * p[t];
+            }
+            rr = next;
+            iterations++;
+        }
+
+        List<TsData> result = BatchExecutor.getDefault().unobserved().map(series, o -> o.toTsData(domain.getStart(), multipliers));
+        return new Reconciliation(result, new TsData(domain.getStart(), target, false), iterations, getDiscrepancy(result, target));
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int CHUNK_SIZE = 64;
+    private static final double EPSILON = 1e-13;
+
+    private static int getRatio(TsDomain domain, List<TsData> y) {
+        int ratio = 0;
+        for (TsData o : y) {
+            if (o != null && !o.isEmpty()) {
+                int freq = o.getFrequency().intValue();
+                if (domain.getFrequency().intValue() % freq != 0) {
+                    throw new IllegalArgumentException("Invalid constraint frequency: " + o.getFrequency());
+                }
+                int tmp = domain.getFrequency().intValue() / freq;
+                if (ratio != 0 && ratio != tmp) {
+                    throw new IllegalArgumentException("Constraints must have the same frequency");
+                }
+                ratio = tmp;
+            }
+        }
+        return ratio;
+    }
+
+    private Series newSeries(TsDomain domain, int ratio, TsData x, TsData y) {
+        if (x == null || !domain.equals(x.getDomain())) {
+            throw new IllegalArgumentException("Series must have the same domain");
+        }
+        double[] values = x.getValues().internalStorage().clone();
+        if (hasMissingValues(values)) {
+            throw new IllegalArgumentException("Series must not have missing values");
+        }
+        Map<Integer, Double> constraints = new HashMap<>();
+        if (y != null && !y.isEmpty()) {
+            TsPeriod start = new TsPeriod(domain.getFrequency());
+            start.set(y.getStart().firstday());
+            int first = start.minus(domain.getStart());
+            for (int j = 0; j < y.getLength(); j++) {
+                int position = first + j * ratio;
+                double value = y.get(j);
+                if (position >= 0 && position + ratio <= values.length && Double.isFinite(value)) {
+                    constraints.put(position, value);
+                }
+            }
+        }
+        Series result = new Series(values, options.isMultiplicative() ? values : null, ratio, constraints);
+        result.fixed = result.solve(result.residuals, null) == null;
+        return result;
+    }
+
+    private static double[] getTotal(TsDomain domain, List<Series> series, TsData total) {
+        if (total == null) {
+            double[] result = new double[domain.getLength()];
+            series.forEach(o -> add(result, o.values));
+            return result;
+        }
+        TsData tmp = total.fittoDomain(domain);
+        double[] result = tmp.getValues().internalStorage().clone();
+        if (hasMissingValues(result)) {
+            throw new IllegalArgumentException("Total must cover the domain of the series");
+        }
+        return result;
+    }
+
+    private Series newTotal(TsDomain domain, int ratio, double[] target, List<Series> series, List<Series> free) {
+        Map<Integer, Double> constraints = new HashMap<>();
+        if (!free.isEmpty()) {
+            free.get(0).constraints().forEach(o -> constraints.put(o, 0d));
+            for (Series o : free) {
+                constraints.keySet().retainAll(o.constraints());
+            }
+            for (Series o : series) {
+                constraints.replaceAll((k, v) -> v + (o.isFixed() ? o.aggregate(o.values, k) : o.constraint(k)));
+            }
+        }
+        return new Series(target, options.isMultiplicative() ? target : null, ratio, constraints);
+    }
+
+    private static double getDiscrepancy(List<TsData> series, double[] target) {
+        double[] tmp = target.clone();
+        series.forEach(o -> subtract(tmp, o.getValues().internalStorage()));
+        return norm(tmp);
+    }
+
+    private static double[] sum(List<Series> series, Function<Series, double[]> function) {
+        List<double[]> partials = BatchExecutor.getDefault().unobserved().map(Lists.partition(series, CHUNK_SIZE), chunk -> {
+            double[] result = null;
+            for (Series o : chunk) {
+                double[] tmp = function.apply(o);
+                if (result == null) {
+                    result = tmp.clone();
+                } else {
+                    add(result, tmp);
+                }
+            }
+            return result;
+        });
+        double[] result = null;
+        for (double[] o : partials) {
+            if (result == null) {
+                result = o;
+            } else {
+                add(result, o);
+            }
+        }
+        return result;
+    }
+
+    private static void add(double[] l, double[] r) {
+        for (int i = 0; i < l.length; i++) {
+            l[i] += r[i];
+        }
+    }
+
+    private static void subtract(double[] l, double[] r) {
+        if (r != null) {
+            for (int i = 0; i < l.length; i++) {
+                l[i] -= r[i];
+            }
+        }
+    }
+
+    private static double dot(double[] l, double[] r) {
+        double result = 0;
+        for (int i = 0; i < l.length; i++) {
+            result += l[i] * r[i];
+        }
+        return result;
+    }
+
+    private static double norm(double[] values) {
+        double result = 0;
+        for (double o : values) {
+            result = Math.max(result, Math.abs(o));
+        }
+        return result;
+    }
+
+    private final class Series {
+
+        private final double[] values;
+        private final double[] scale;
+        private final int ratio;
+        private final int[] constraints;
+        private final double[] targets;
+        private final double[] residuals;
+        private boolean fixed;
+
+        private Series(double[] values, double[] scale, int ratio, Map<Integer, Double> constraints) {
+            this.values = values;
+            this.scale = scale;
+            this.ratio = ratio;
+            this.constraints = constraints.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            this.targets = Arrays.stream(this.constraints).mapToDouble(constraints::get).toArray();
+            this.residuals = new double[this.constraints.length];
+            for (int j = 0; j < residuals.length; j++) {
+                residuals[j] = targets[j] - aggregate(values, this.constraints[j]);
+            }
+        }
+
+        private boolean isFixed() {
+            return fixed;
+        }
+
+        private List<Integer> constraints() {
+            return Arrays.stream(constraints).boxed().collect(Collectors.toList());
+        }
+
+        private double constraint(int position) {
+            return targets[Arrays.binarySearch(constraints, position)];
+        }
+
+        private double aggregate(double[] data, int position) {
+            return DentonUtil.aggregate(data, position, ratio, options.getAggregationType());
+        }
+
+        private TsData toTsData(TsPeriod start, double[] multipliers) {
+            if (fixed) {
+                return new TsData(start, values.clone(), false);
+            }
+            double[] result = solve(residuals, multipliers);
+            for (int t = 0; t < result.length; t++) {
+                result[t] += values[t];
+            }
+            return new TsData(start, result, false);
+        }
+
+        /**
+         * Computes the correction that minimizes the differences of the
+         * (relative) correction minus the multipliers, subject to the temporal
+         * constraints.
+         *
+         * @param r the residuals of the constraints or null for zero
+         * @param mu the contemporaneous multipliers or null for zero
+         * @return the correction or null if the system is singular
+         */
+        private double[] solve(double[] r, double[] mu) {
+            int n = values.length;
+            int m = constraints.length;
+            int[] position = new int[n];
+            int[] multiplier = new int[m];
+            int size = 0;
+            for (int t = 0, j = 0; t < n; t++) {
+                position[t] = size++;
+                while (j < m && constraints[j] + ratio - 1 == t) {
+                    multiplier[j++] = size++;
+                }
+            }
+
+            int d = coefficients.length - 1;
+            int band = 1;
+            for (int t = d; t < n; t++) {
+                band = Math.max(band, position[t] - position[t - d]);
+            }
+            for (int j = 0; j < m; j++) {
+                band = Math.max(band, multiplier[j] - position[constraints[j]]);
+            }
+            BandedSystem system = new BandedSystem(size, band);
+            for (int t = options.isModified() ? d : 0; t < n; t++) {
+                for (int k = 0; k <= d && k <= t; k++) {
+                    for (int l = 0; l <= d && l <= t; l++) {
+                        system.add(position[t - k], position[t - l], coefficients[k] * coefficients[l]);
+                    }
+                }
+            }
+            for (int j = 0; j < m; j++) {
+                for (int k = 0; k < ratio; k++) {
+                    int t = constraints[j] + k;
+                    double w = weight(k, ratio, options.getAggregationType()) * (scale != null ? scale[t] : 1);
+                    system.add(multiplier[j], position[t], w);
+                    system.add(position[t], multiplier[j], w);
+                }
+                if (r != null) {
+                    system.rhs[multiplier[j]] = r[j];
+                }
+            }
+            if (mu != null) {
+                for (int t = 0; t < n; t++) {
+                    system.rhs[position[t]] = mu[t] * (scale != null ? scale[t] : 1);
+                }
+            }
+            double[] solution = system.solve();
+            if (solution == null) {
+                return null;
+            }
+            double[] result = new double[n];
+            for (int t = 0; t < n; t++) {
+                result[t] = solution[position[t]] * (scale != null ? scale[t] : 1);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Square system with lower and upper bandwidths b, solved by Gaussian
+     * elimination with partial pivoting. Row i is stored from column i - b to
+     * i + 2b to make room for the fill-in of the pivoting.
+     */
+    private static final class BandedSystem {
+
+        private final int size;
+        private final int band;
+        private final double[][] rows;
+        private final double[] rhs;
+
+        private BandedSystem(int size, int band) {
+            this.size = size;
+            this.band = band;
+            this.rows = new double[size][3 * band + 1];
+            this.rhs = new double[size];
+        }
+
+        private void add(int i, int j, double value) {
+            rows[i][j - i + band] += value;
+        }
+
+        private double get(int i, int j) {
+            return rows[i][j - i + band];
+        }
+
+        private void set(int i, int j, double value) {
+            rows[i][j - i + band] = value;
+        }
+
+        private double[] solve() {
+            double threshold = 0;
+            for (double[] row : rows) {
+                for (double o : row) {
+                    threshold = Math.max(threshold, Math.abs(o));
+                }
+            }
+            threshold *= EPSILON;
+            for (int p = 0; p < size; p++) {
+                int last = Math.min(size - 1, p + band);
+                int right = Math.min(size - 1, p + 2 * band);
+                int pivot = p;
+                for (int i = p + 1; i <= last; i++) {
+                    if (Math.abs(get(i, p)) > Math.abs(get(pivot, p))) {
+                        pivot = i;
+                    }
+                }
+                if (Math.abs(get(pivot, p)) <= threshold) {
+                    return null;
+                }
+                if (pivot != p) {
+                    for (int j = p; j <= right; j++) {
+                        double tmp = get(p, j);
+                        set(p, j, get(pivot, j));
+                        set(pivot, j, tmp);
+                    }
+                    double tmp = rhs[p];
+                    rhs[p] = rhs[pivot];
+                    rhs[pivot] = tmp;
+                }
+                double diagonal = get(p, p);
+                for (int i = p + 1; i <= last; i++) {
+                    double factor = get(i, p) / diagonal;
+                    if (factor != 0) {
+                        set(i, p, 0);
+                        for (int j = p + 1; j <= right; j++) {
+                            set(i, j, get(i, j) - factor * get(p, j));
+                        }
+                        rhs[i] -= factor * rhs[p];
+                    }
+                }
+            }
+            double[] result = new double[size];
+            for (int p = size - 1; p >= 0; p--) {
+                double sum = rhs[p];
+                int right = Math.min(size - 1, p + 2 * band);
+                for (int j = p + 1; j <= right; j++) {
+                    sum -= get(p, j) * result[j];
+                }
+                result[p] = sum / get(p, p);
+            }
+            return result;
+        }
+    }
+    //</editor-fold>
+}
@@ -19,7 +19,9 @@ package be.nbb.demetra.toolset;
 import ec.tss.TsCollectionInformation;
 import ec.tss.TsInformation;
 import ec.tss.TsMoniker;
+import ec.tstoolkit.timeseries.regression.OutlierType;
 import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
@@ -40,6 +42,58 @@ public interface SaTool {
         List<String> items;
     }
 
+    /**
+     * How much of a previous model is kept when a series is processed again.
+     */
+    public enum RefreshPolicy {
+
+        /**
+         * Complete identification of the model.
+         */
+        full,
+        /**
+         * Transformation, ARIMA orders and calendar effects are kept; outliers
+         * are identified and coefficients estimated again.
+         */
+        outliers,
+        /**
+         * Transformation, ARIMA orders, calendar effects and outliers are
+         * kept; coefficients are estimated again.
+         */
+        params,
+        /**
+         * Transformation, ARIMA orders, calendar effects, outliers and ARIMA
+         * coefficients are kept; regression coefficients are estimated again.
+         */
+        fixed;
+    }
+
+    /**
+     * Estimated preprocessing model of a series.
+     */
+    @Value
+    public static class SaModel {
+
+        boolean log;
+        boolean mean;
+        int p, d, q, bp, bd, bq;
+        double[] parameters;
+        /**
+         * Outliers of the model, re-injected as pre-specified regressors when
+         * the model is frozen.
+         */
+        List<Outlier> outliers;
+        boolean tradingDays;
+        boolean easter;
+    }
+
+    @Value
+    public static class Outlier {
+
+        OutlierType type;
+        TsPeriod position;
+    }
+
     @Data
     public static class SaTs {
 
@@ -49,6 +103,8 @@ public interface SaTool {
         String spec;
         Map<String, TsData> data;
         String invalidDataCause;
+        String fingerprint;
+        SaModel model;
     }
 
     @Data
@@ -59,14 +115,76 @@ public interface SaTool {
         String algorithm;
         String spec;
         List<SaTs> items;
+        BatchExecutor.Report report;
     }
 
+    /**
+     * Creates a single series. A series that exceeds the time budget of the
+     * batch executor is reported as invalid.
+     *
+     * @param info
+     * @param options
+     * @return
+     */
     @Nonnull
     SaTs create(@Nonnull TsInformation info, @Nonnull Options options);
 
     @Nonnull
     SaTsCollection create(@Nonnull TsCollectionInformation info, @Nonnull Options options);
 
+    /**
+     * Creates a collection from a view whose series are materialized one at a
+     * time.
+     *
+     * @param info
+     * @param options
+     * @return
+     */
+    @Nonnull
+    SaTsCollection create(@Nonnull TsCollectionView info, @Nonnull Options options);
+
+    /**
+     * Creates a collection incrementally from a previous output. The items
+     * whose fingerprint (input data and options) matches an item of the
+     * previous output are copied from it; the others are processed.
+     *
+     * @param info
+     * @param options
+     * @param previous
+     * @return
+     */
+    @Nonnull
+    default SaTsCollection create(@Nonnull TsCollectionInformation info, @Nonnull Options options, @Nonnull SaTsCollection previous) {
+        return create(info, options, previous, RefreshPolicy.full);
+    }
+
+    /**
+     * Creates a collection incrementally from a previous output. Unchanged
+     * items are copied as above; changed items that have a model in the
+     * previous output are processed again according to the refresh policy.
+     *
+     * @param info
+     * @param options
+     * @param previous
+     * @param policy
+     * @return
+     */
+    @Nonnull
+    SaTsCollection create(@Nonnull TsCollectionInformation info, @Nonnull Options options, @Nonnull SaTsCollection previous, @Nonnull RefreshPolicy policy);
+
+    /**
+     * Creates a collection incrementally from a previous output and a view
+     * whose series are materialized one at a time.
+     *
+     * @param info
+     * @param options
+     * @param previous
+     * @param policy
+     * @return
+     */
+    @Nonnull
+    SaTsCollection create(@Nonnull TsCollectionView info, @Nonnull Options options, @Nonnull SaTsCollection previous, @Nonnull RefreshPolicy policy);
+
     @Nonnull
     List<TsInformation> toTs(@Nonnull SaTs ts);
 
@@ -17,6 +17,11 @@
 package be.nbb.demetra.toolset;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+import ec.satoolkit.GenericSaProcessingFactory;
 import ec.satoolkit.algorithm.implementation.TramoSeatsProcessingFactory;
 import ec.satoolkit.algorithm.implementation.X13ProcessingFactory;
 import ec.satoolkit.tramoseats.TramoSeatsSpecification;
@@ -24,18 +29,41 @@ import ec.satoolkit.x13.X13Specification;
 import ec.tss.TsCollectionInformation;
 import ec.tss.TsInformation;
 import ec.tstoolkit.MetaData;
+import ec.tstoolkit.Parameter;
+import ec.tstoolkit.ParameterType;
 import ec.tstoolkit.algorithm.CompositeResults;
 import ec.tstoolkit.algorithm.IProcessing;
+import ec.tstoolkit.data.IReadDataBlock;
 import ec.tstoolkit.design.IBuilder;
 import ec.tstoolkit.design.VisibleForTesting;
+import ec.tstoolkit.modelling.DefaultTransformationType;
+import ec.tstoolkit.modelling.RegressionTestSpec;
+import ec.tstoolkit.modelling.arima.PreprocessingModel;
+import ec.tstoolkit.modelling.arima.tramo.TramoSpecification;
+import ec.tstoolkit.modelling.arima.x13.RegArimaSpecification;
+import ec.tstoolkit.sarima.SarimaComponent;
+import ec.tstoolkit.timeseries.regression.OutlierDefinition;
 import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Value;
 
 /**
  *
@@ -46,18 +74,26 @@ final class SaToolImpl implements SaTool {
 
     @Override
     public SaTs create(TsInformation info, Options options) {
+        return BatchExecutor.getDefault().<TsInformation, SaTs>withTimeout(o -> create(o, options, getProcessing(options)), (o, cause) -> aborted(o, options, cause)).apply(info);
+    }
+
+    private static SaTs create(TsInformation info, Options options, IProcessing<TsData, CompositeResults> processing) {
         SaTs result = new SaTs();
         result.setName(info.name);
         result.setMoniker(info.moniker);
         result.setAlgorithm(options.getAlgorithm());
         result.setSpec(options.getSpec());
+        result.setFingerprint(getFingerprint(info, options));
         if (info.data != null && !info.data.isEmpty()) {
-            CompositeResults results = newProcessing(options).process(info.data);
+            CompositeResults results = processing.process(info.data);
+            // the processing cannot be stopped midway; a late result is discarded
+            BatchExecutor.checkDeadline();
             if (results != null) {
                 result.setData(options.getItems().stream()
                         .filter(o -> (results.contains(o)) && results.getData(o, TsData.class) != null)
                         .collect(Collectors.toMap(o -> o, o -> results.getData(o, TsData.class))));
                 result.setInvalidDataCause(null);
+                result.setModel(getModel(results));
             } else {
                 result.setData(null);
                 result.setInvalidDataCause("The processing returned no results !");
@@ -71,12 +107,67 @@ final class SaToolImpl implements SaTool {
 
     @Override
     public SaTsCollection create(TsCollectionInformation info, Options options) {
+        return create(info, info.items, i -> estimateCost(info.items.get(i).data, options), options);
+    }
+
+    @Override
+    public SaTsCollection create(TsCollectionView info, Options options) {
+        return create(info.getHeader(), info.asList(), i -> estimateCost(info.getLength(i), info.getFrequency(i), options), options);
+    }
+
+    private static SaTsCollection create(TsCollectionInformation header, List<TsInformation> items, IntToDoubleFunction cost, Options options) {
+        // fails early on invalid options
+        getProcessing(options);
         SaTsCollection result = new SaTsCollection();
-        result.setName(info.name);
-        result.setMoniker(info.moniker);
+        result.setName(header.name);
+        result.setMoniker(header.moniker);
+        result.setAlgorithm(options.getAlgorithm());
+        result.setSpec(options.getSpec());
+        BatchExecutor executor = BatchExecutor.getDefault();
+        result.setItems(executor.mapByCost(items, cost, executor.withTimeout(o -> create(o, options, getProcessing(options)), (o, cause) -> aborted(o, options, cause)), result::setReport));
+        return result;
+    }
+
+    @Override
+    public SaTsCollection create(TsCollectionInformation info, Options options, SaTsCollection previous, RefreshPolicy policy) {
+        return create(info, info.items, i -> estimateCost(info.items.get(i).data, options), options, previous, policy);
+    }
+
+    @Override
+    public SaTsCollection create(TsCollectionView info, Options options, SaTsCollection previous, RefreshPolicy policy) {
+        return create(info.getHeader(), info.asList(), i -> estimateCost(info.getLength(i), info.getFrequency(i), options), options, previous, policy);
+    }
+
+    private static SaTsCollection create(TsCollectionInformation header, List<TsInformation> items, IntToDoubleFunction cost, Options options, SaTsCollection previous, RefreshPolicy policy) {
+        getProcessing(options);
+        Map<String, SaTs> index = previous.getItems().stream()
+                .filter(o -> o.getFingerprint() != null)
+                .collect(Collectors.toMap(SaTs::getFingerprint, o -> o, (l, r) -> l));
+        Map<String, SaModel> models = policy != RefreshPolicy.full
+                ? previous.getItems().stream()
+                .filter(o -> o.getName() != null && o.getModel() != null)
+                .collect(Collectors.toMap(SaTs::getName, SaTs::getModel, (l, r) -> l))
+                : Collections.emptyMap();
+        String[] fingerprints = items.stream().map(o -> getFingerprint(o, options)).toArray(String[]::new);
+        int[] positions = IntStream.range(0, fingerprints.length)
+                .filter(i -> !index.containsKey(fingerprints[i]))
+                .toArray();
+        // view so that series of a lazy list are only materialized when processed
+        List<TsInformation> changed = Lists.transform(Ints.asList(positions), items::get);
+
+        SaTsCollection result = new SaTsCollection();
+        result.setName(header.name);
+        result.setMoniker(header.moniker);
         result.setAlgorithm(options.getAlgorithm());
         result.setSpec(options.getSpec());
-        result.setItems(info.items.parallelStream().map(o -> create(o, options)).collect(Collectors.toList()));
+        BatchExecutor executor = BatchExecutor.getDefault();
+        Iterator<SaTs> computed = executor.mapByCost(changed, i -> cost.applyAsDouble(positions[i]), executor.withTimeout(o -> refresh(o, options, models.get(o.name), policy), (o, cause) -> aborted(o, options, cause)), o -> result.setReport(o.withPositions(positions))).iterator();
+        List<SaTs> output = new ArrayList<>(fingerprints.length);
+        for (int i = 0; i < fingerprints.length; i++) {
+            SaTs old = index.get(fingerprints[i]);
+            output.add(old != null ? reuse(old, items.get(i), options) : computed.next());
+        }
+        result.setItems(output);
         return result;
     }
 
@@ -116,6 +207,164 @@ final class SaToolImpl implements SaTool {
     }
 
     //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    /**
+     * Rough relative cost of a processing: model identification and outlier
+     * detection grow faster than linearly with the length of the series and
+     * the periodicity adds seasonal lags.
+     */
+    private static double estimateCost(int length, int period, Options options) {
+        return getSpecWeight(options.getSpec()) * length * (length + period);
+    }
+
+    private static double estimateCost(TsData data, Options options) {
+        return data != null ? estimateCost(data.getLength(), data.getFrequency().intValue(), options) : 0;
+    }
+
+    /**
+     * Relative weight of a specification: X11 has no preprocessing, RSA0 has
+     * a fixed airline model without outlier detection, RSA1 and RSA2 detect
+     * outliers on an airline model and the other ones also identify the ARIMA
+     * model.
+     */
+    private static double getSpecWeight(String spec) {
+        String name = spec.toUpperCase(Locale.ROOT);
+        if (name.equals("X11")) {
+            return 0.5;
+        }
+        if (name.startsWith("RSA0")) {
+            return 1;
+        }
+        if (name.startsWith("RSA1") || name.startsWith("RSA2")) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Hash of everything the output of a series depends on: its data, the
+     * algorithm, the specification and the requested items. Strings are
+     * length-prefixed and lists are count-prefixed so that distinct inputs
+     * cannot produce the same byte sequence.
+     */
+    private static String getFingerprint(TsInformation info, Options options) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, options.getAlgorithm().toLowerCase());
+        putString(hasher, options.getSpec());
+        hasher.putInt(options.getItems().size());
+        options.getItems().forEach(o -> putString(hasher, o));
+        hasher.putBoolean(info.data != null);
+        if (info.data != null) {
+            TsPeriod start = info.data.getStart();
+            double[] values = info.data.getValues().internalStorage();
+            hasher.putInt(start.getFrequency().intValue()).putInt(start.getYear()).putInt(start.getPosition()).putInt(values.length);
+            for (double o : values) {
+                hasher.putDouble(o);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Processes a series again, with a partly frozen model if a previous one
+     * is available. Results of a frozen model depend on the previous output
+     * and not only on the input and options, so they get no fingerprint and
+     * are never reused as is by a later incremental run. A model whose
+     * coefficients do not match its orders, as read from a truncated or
+     * edited output, cannot be fixed and the series is fully processed.
+     */
+    private static SaTs refresh(TsInformation info, Options options, @Nullable SaModel model, RefreshPolicy policy) {
+        if (model == null || policy == RefreshPolicy.full || (policy == RefreshPolicy.fixed && !hasParameters(model))) {
+            return create(info, options, getProcessing(options));
+        }
+        SaTs result = create(info, options, newProcessing(options, model, policy));
+        result.setFingerprint(null);
+        return result;
+    }
+
+    @Nullable
+    private static SaModel getModel(CompositeResults results) {
+        PreprocessingModel model = results.get(GenericSaProcessingFactory.PREPROCESSING, PreprocessingModel.class);
+        if (model == null) {
+            return null;
+        }
+        SarimaComponent arima = model.description.getArimaComponent();
+        IReadDataBlock parameters = model.estimation.getRegArima().getArima().getParameters();
+        double[] values = new double[parameters.getLength()];
+        parameters.copyTo(values, 0);
+        // pre-specified outliers include those of a frozen model
+        List<Outlier> list = Stream.of(model.outliersEstimation(true, false), model.outliersEstimation(true, true))
+                .filter(Objects::nonNull)
+                .flatMap(Arrays::stream)
+                .map(o -> new Outlier(o.getCode(), o.getPosition()))
+                .distinct()
+                .collect(Collectors.toList());
+        return new SaModel(model.isMultiplicative(), arima.isMean(), arima.getP(), arima.getD(), arima.getQ(), arima.getBP(), arima.getBD(), arima.getBQ(), values,
+                list, !model.description.getCalendars().isEmpty(), !model.description.getMovingHolidays().isEmpty());
+    }
+
+    /**
+     * Result of a series whose processing was aborted, for instance because
+     * it exceeded its time budget. It has no fingerprint so that it is
+     * processed again by an incremental run.
+     */
+    private static SaTs aborted(TsInformation info, Options options, String cause) {
+        SaTs result = new SaTs();
+        result.setName(info.name);
+        result.setMoniker(info.moniker);
+        result.setAlgorithm(options.getAlgorithm());
+        result.setSpec(options.getSpec());
+        result.setData(null);
+        result.setInvalidDataCause(cause);
+        return result;
+    }
+
+    private static SaTs reuse(SaTs old, TsInformation info, Options options) {
+        SaTs result = new SaTs();
+        result.setName(info.name);
+        result.setMoniker(info.moniker);
+        result.setAlgorithm(options.getAlgorithm());
+        result.setSpec(options.getSpec());
+        result.setData(old.getData() == null && old.getInvalidDataCause() == null ? Collections.emptyMap() : old.getData());
+        result.setInvalidDataCause(old.getInvalidDataCause());
+        result.setFingerprint(old.getFingerprint());
+        result.setModel(old.getModel());
+        return result;
+    }
+
+    private static final int MAX_PROCESSINGS = 16;
+
+    @Value
+    private static class ProcessingKey {
+
+        String algorithm;
+        String spec;
+    }
+
+    /**
+     * Processings are built once per algorithm and specification and then
+     * reused for every series. They are kept per thread since their
+     * thread-safety is not guaranteed.
+     */
+    private static final Map<ProcessingKey, ThreadLocal<IProcessing<TsData, CompositeResults>>> PROCESSINGS = new LinkedHashMap<ProcessingKey, ThreadLocal<IProcessing<TsData, CompositeResults>>>(MAX_PROCESSINGS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ProcessingKey, ThreadLocal<IProcessing<TsData, CompositeResults>>> eldest) {
+            return size() > MAX_PROCESSINGS;
+        }
+    };
+
+    @Nonnull
+    private static IProcessing<TsData, CompositeResults> getProcessing(Options o) {
+        ThreadLocal<IProcessing<TsData, CompositeResults>> result;
+        synchronized (PROCESSINGS) {
+            result = PROCESSINGS.computeIfAbsent(new ProcessingKey(o.getAlgorithm().toLowerCase(), o.getSpec()), key -> ThreadLocal.withInitial(() -> newProcessing(o)));
+        }
+        return result.get();
+    }
+
     @Nonnull
     private static IProcessing<TsData, CompositeResults> newProcessing(Options o) {
         switch (o.getAlgorithm().toLowerCase()) {
@@ -136,6 +385,198 @@ final class SaToolImpl implements SaTool {
         }
     }
 
+    /**
+     * Builds a processing whose model is partly frozen. It is specific to a
+     * series and therefore not cached.
+     */
+    @Nonnull
+    private static IProcessing<TsData, CompositeResults> newProcessing(Options o, SaModel model, RefreshPolicy policy) {
+        switch (o.getAlgorithm().toLowerCase()) {
+            case "tramoseats":
+                TramoSeatsSpecification s = TramoSeatsSpecification.fromString(o.getSpec()).clone();
+                freeze(new TramoFreezer(s.getTramoSpecification()), model, policy);
+                return TramoSeatsProcessingFactory.instance.generateProcessing(s, null);
+            case "x13":
+                X13Specification sx = X13Specification.fromString(o.getSpec()).clone();
+                freeze(new RegArimaFreezer(sx.getRegArimaSpecification()), model, policy);
+                return X13ProcessingFactory.instance.generateProcessing(sx, null);
+            default:
+                throw new IllegalArgumentException("Unrecognized algorithm (" + o.getAlgorithm() + ") !");
+        }
+    }
+
+    private static void freeze(Freezer spec, SaModel model, RefreshPolicy policy) {
+        spec.setTransformation(model.isLog() ? DefaultTransformationType.Log : DefaultTransformationType.None);
+        spec.setOrders(model);
+        spec.setCalendar(model.isTradingDays(), model.isEaster());
+        if (policy != RefreshPolicy.outliers) {
+            spec.setOutliers(model.getOutliers().stream()
+                    .map(o -> new OutlierDefinition(o.getPosition().firstday(), o.getType()))
+                    .toArray(OutlierDefinition[]::new));
+        }
+        if (policy == RefreshPolicy.fixed) {
+            spec.setParameters(getFixedParameters(model));
+        }
+    }
+
+    private static boolean hasParameters(SaModel model) {
+        return model.getParameters() != null
+                && model.getParameters().length == model.getP() + model.getBp() + model.getQ() + model.getBq();
+    }
+
+    /**
+     * Splits the coefficients of a model (regular AR, seasonal AR, regular
+     * MA, seasonal MA) into fixed parameters.
+     */
+    private static Parameter[][] getFixedParameters(SaModel model) {
+        int[] orders = {model.getP(), model.getBp(), model.getQ(), model.getBq()};
+        Parameter[][] result = new Parameter[orders.length][];
+        int pos = 0;
+        for (int i = 0; i < orders.length; i++) {
+            result[i] = new Parameter[orders[i]];
+            for (int j = 0; j < orders[i]; j++) {
+                result[i][j] = new Parameter(model.getParameters()[pos++], ParameterType.Fixed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Common view of the Tramo and RegArima specifications used to freeze a
+     * model.
+     */
+    private interface Freezer {
+
+        void setTransformation(DefaultTransformationType function);
+
+        void setOrders(SaModel model);
+
+        void setCalendar(boolean tradingDays, boolean easter);
+
+        /**
+         * Disables outlier detection and adds outliers as pre-specified
+         * regressors.
+         */
+        void setOutliers(OutlierDefinition[] outliers);
+
+        /**
+         * Sets the regular AR, seasonal AR, regular MA and seasonal MA
+         * coefficients.
+         */
+        void setParameters(Parameter[][] parameters);
+    }
+
+    @AllArgsConstructor
+    private static final class TramoFreezer implements Freezer {
+
+        private final TramoSpecification spec;
+
+        @Override
+        public void setTransformation(DefaultTransformationType function) {
+            spec.getTransform().setFunction(function);
+        }
+
+        @Override
+        public void setOrders(SaModel model) {
+            spec.getAutoModel().setEnabled(false);
+            ec.tstoolkit.modelling.arima.tramo.ArimaSpec arima = spec.getArima();
+            arima.setP(model.getP());
+            arima.setD(model.getD());
+            arima.setQ(model.getQ());
+            arima.setBP(model.getBp());
+            arima.setBD(model.getBd());
+            arima.setBQ(model.getBq());
+            arima.setMean(model.isMean());
+        }
+
+        @Override
+        public void setCalendar(boolean tradingDays, boolean easter) {
+            ec.tstoolkit.modelling.arima.tramo.TradingDaysSpec td = spec.getRegression().getCalendar().getTradingDays();
+            td.setTest(false);
+            if (!tradingDays) {
+                td.disable();
+            }
+            ec.tstoolkit.modelling.arima.tramo.EasterSpec e = spec.getRegression().getCalendar().getEaster();
+            e.setTest(false);
+            if (!easter) {
+                e.setOption(ec.tstoolkit.modelling.arima.tramo.EasterSpec.Type.Unused);
+            }
+        }
+
+        @Override
+        public void setOutliers(OutlierDefinition[] outliers) {
+            spec.getOutliers().clearTypes();
+            for (OutlierDefinition o : outliers) {
+                spec.getRegression().add(o);
+            }
+        }
+
+        @Override
+        public void setParameters(Parameter[][] parameters) {
+            ec.tstoolkit.modelling.arima.tramo.ArimaSpec arima = spec.getArima();
+            arima.setPhi(parameters[0]);
+            arima.setBPhi(parameters[1]);
+            arima.setTheta(parameters[2]);
+            arima.setBTheta(parameters[3]);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RegArimaFreezer implements Freezer {
+
+        private final RegArimaSpecification spec;
+
+        @Override
+        public void setTransformation(DefaultTransformationType function) {
+            spec.getTransform().setFunction(function);
+        }
+
+        @Override
+        public void setOrders(SaModel model) {
+            spec.getAutoModel().setEnabled(false);
+            ec.tstoolkit.modelling.arima.x13.ArimaSpec arima = spec.getArima();
+            arima.setP(model.getP());
+            arima.setD(model.getD());
+            arima.setQ(model.getQ());
+            arima.setBP(model.getBp());
+            arima.setBD(model.getBd());
+            arima.setBQ(model.getBq());
+            arima.setMean(model.isMean());
+        }
+
+        @Override
+        public void setCalendar(boolean tradingDays, boolean easter) {
+            ec.tstoolkit.modelling.arima.x13.RegressionSpec regression = spec.getRegression();
+            regression.getTradingDays().setTest(RegressionTestSpec.None);
+            if (!tradingDays) {
+                regression.getTradingDays().disable();
+            }
+            for (ec.tstoolkit.modelling.arima.x13.MovingHolidaySpec o : regression.getMovingHolidays()) {
+                o.setTest(RegressionTestSpec.None);
+            }
+            if (!easter) {
+                regression.clearMovingHolidays();
+            }
+        }
+
+        @Override
+        public void setOutliers(OutlierDefinition[] outliers) {
+            spec.getOutliers().clearTypes();
+            for (OutlierDefinition o : outliers) {
+                spec.getRegression().add(o);
+            }
+        }
+
+        @Override
+        public void setParameters(Parameter[][] parameters) {
+            ec.tstoolkit.modelling.arima.x13.ArimaSpec arima = spec.getArima();
+            arima.setPhi(parameters[0]);
+            arima.setBPhi(parameters[1]);
+            arima.setTheta(parameters[2]);
+            arima.setBTheta(parameters[3]);
+        }
+    }
+
     private static final class MetaDataBuilder implements IBuilder<MetaData> {
 
         private final String prefix;
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import java.util.List;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Random-access time series collection whose series are created on access
+ * instead of being held as objects.
+ *
+ * @author Philippe Charles
+ */
+public interface TsCollectionView {
+
+    /**
+     * Gets the properties of the collection, without its items.
+     *
+     * @return a new collection
+     */
+    @Nonnull
+    TsCollectionInformation getHeader();
+
+    /**
+     * Gets a view of the series as a list whose items are created on access.
+     *
+     * @return an unmodifiable list
+     */
+    @Nonnull
+    List<TsInformation> asList();
+
+    /**
+     * Gets the number of observations of a series without creating it.
+     *
+     * @param index
+     * @return zero if the series has no data
+     */
+    @Nonnegative
+    int getLength(@Nonnegative int index);
+
+    /**
+     * Gets the number of periods per year of a series without creating it.
+     *
+     * @param index
+     * @return zero if the series has no data
+     */
+    @Nonnegative
+    int getFrequency(@Nonnegative int index);
+}
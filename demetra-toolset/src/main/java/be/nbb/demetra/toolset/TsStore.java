@@ -0,0 +1,559 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tss.TsMoniker;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import ec.tstoolkit.timeseries.simplets.TsPeriod;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * File-backed time series collection for out-of-core processing.
+ * <p>
+ * The file is memory-mapped so that series are read on demand through the
+ * page cache and only the series being processed live on the heap. It starts
+ * with a fixed header (magic, version, count and position of the index)
+ * followed by the collection properties, one record per series and an index
+ * of the record positions. All numbers are little-endian.
+ * <p>
+ * Stores are written sequentially with a {@link Writer} and read with random
+ * access. A store only becomes readable once its writer has been committed;
+ * an uncommitted writer deletes its file on close. An opened store is
+ * thread-safe.
+ *
+ * @author Philippe Charles
+ */
+public final class TsStore implements TsCollectionView, Closeable {
+
+    /**
+     * Opens an existing store.
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file cannot be read or is not a store
+     */
+    @Nonnull
+    public static TsStore open(@Nonnull Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a time series store: '" + file + "'");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported store version " + version);
+            }
+            long count = header.getLong();
+            long indexPosition = header.getLong();
+            if (indexPosition == 0 || count > Integer.MAX_VALUE) {
+                throw new IOException("Incomplete or invalid store: '" + file + "'");
+            }
+            return new TsStore(channel, (int) count, indexPosition);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a new store, replacing any existing file.
+     *
+     * @param file
+     * @param header the properties of the collection; its items are ignored
+     * @return
+     * @throws IOException
+     */
+    @Nonnull
+    public static Writer create(@Nonnull Path file, @Nonnull TsCollectionInformation header) throws IOException {
+        return new Writer(file, header);
+    }
+
+    private final FileChannel channel;
+    private final int size;
+    private final long indexPosition;
+    private final MappedByteBuffer[] segments;
+    private final TsCollectionInformation header;
+
+    private TsStore(FileChannel channel, int size, long indexPosition) throws IOException {
+        this.channel = channel;
+        this.size = size;
+        this.indexPosition = indexPosition;
+        long length = channel.size();
+        this.segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+        }
+        this.header = readHeader(slice(HEADER_SIZE, (int) (readPosition(0) - HEADER_SIZE)));
+    }
+
+    @Override
+    public TsCollectionInformation getHeader() {
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = header.name;
+        result.moniker = header.moniker;
+        result.metaData = header.metaData;
+        result.invalidDataCause = header.invalidDataCause;
+        result.type = TsInformationType.All;
+        return result;
+    }
+
+    @Nonnegative
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads a series.
+     *
+     * @param index
+     * @return a new object
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    @Nonnull
+    public TsInformation get(@Nonnegative int index) throws UncheckedIOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        try {
+            long position = readPosition(index);
+            long end = index + 1 < size ? readPosition(index + 1) : indexPosition;
+            return readTs(slice(position, (int) (end - position)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public List<TsInformation> asList() {
+        return new ListView();
+    }
+
+    @Override
+    public int getLength(int index) throws UncheckedIOException {
+        ByteBuffer data = readData(index);
+        if (data.get() == NO_DATA) {
+            return 0;
+        }
+        data.position(data.position() + 2 * Integer.BYTES);
+        return data.getInt();
+    }
+
+    @Override
+    public int getFrequency(int index) throws UncheckedIOException {
+        return readData(index).get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sequential writer of a store. The record positions are spooled to a
+     * temporary file so that the heap usage does not depend on the number of
+     * series.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final Path indexFile;
+        private final FileChannel index;
+        private final ByteBuffer indexBuffer;
+        private long count;
+        private long position;
+        private boolean committed;
+
+        private Writer(Path file, TsCollectionInformation header) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+            this.indexBuffer = ByteBuffer.allocate(INDEX_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.count = 0;
+            this.position = HEADER_SIZE;
+            this.committed = false;
+            Path tmp = null;
+            FileChannel tmpChannel = null;
+            try {
+                tmp = Files.createTempFile("tsstore", ".idx");
+                tmpChannel = FileChannel.open(tmp, READ, WRITE);
+                this.indexFile = tmp;
+                this.index = tmpChannel;
+                writeFully(channel, newHeader(0, 0), 0);
+                ByteBuffer buffer = newBuffer(sizeOfHeader(header));
+                writeHeader(buffer, header);
+                append(buffer);
+            } catch (IOException | RuntimeException ex) {
+                discard(tmpChannel, tmp, channel, file, ex);
+                throw ex;
+            }
+        }
+
+        @Nonnull
+        public Writer add(@Nonnull TsInformation info) throws IOException {
+            if (committed) {
+                throw new IllegalStateException("Store already committed");
+            }
+            if (!indexBuffer.hasRemaining()) {
+                flushIndex();
+            }
+            indexBuffer.putLong(position);
+            ByteBuffer buffer = newBuffer(sizeOfTs(info));
+            writeTs(buffer, info);
+            append(buffer);
+            count++;
+            return this;
+        }
+
+        /**
+         * Appends the index and completes the header, making the store
+         * readable. Must be called once all the series have been added.
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            if (committed) {
+                return;
+            }
+            flushIndex();
+            long indexPosition = position;
+            long indexSize = index.size();
+            long transferred = 0;
+            while (transferred < indexSize) {
+                transferred += index.transferTo(transferred, indexSize - transferred, channel.position(indexPosition + transferred));
+            }
+            channel.force(false);
+            writeFully(channel, newHeader(count, indexPosition), 0);
+            committed = true;
+        }
+
+        /**
+         * Releases the resources of this writer; the file is deleted if the
+         * store has not been committed.
+         *
+         * @throws IOException
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                index.close();
+                Files.deleteIfExists(indexFile);
+            } finally {
+                channel.close();
+                if (!committed) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        private static void discard(FileChannel index, Path indexFile, FileChannel channel, Path file, Exception cause) {
+            try {
+                if (index != null) {
+                    index.close();
+                    Files.deleteIfExists(indexFile);
+                }
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+
+        private void append(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            writeFully(channel, buffer, position);
+            position += length;
+        }
+
+        private void flushIndex() throws IOException {
+            indexBuffer.flip();
+            writeFully(index, indexBuffer, index.size());
+            indexBuffer.clear();
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Implementation details">
+    private static final int MAGIC = 0x44545353; // "DTSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int INDEX_BUFFER_SIZE = 8 * 8192;
+    private static final int NULL_LENGTH = -1;
+    private static final byte NO_DATA = 0;
+
+    /**
+     * Gets a view of a series that starts at its data, skipping the other
+     * fields without decoding them.
+     */
+    private ByteBuffer readData(int index) throws UncheckedIOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        try {
+            long position = readPosition(index);
+            long end = index + 1 < size ? readPosition(index + 1) : indexPosition;
+            ByteBuffer result = slice(position, (int) (end - position));
+            skipString(result);
+            skipString(result);
+            skipString(result);
+            int metaSize = result.getInt();
+            for (int i = 0; i < 2 * metaSize; i++) {
+                skipString(result);
+            }
+            skipString(result);
+            return result;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private long readPosition(int index) throws IOException {
+        if (index >= size) {
+            return indexPosition;
+        }
+        return slice(indexPosition + (long) index * Long.BYTES, Long.BYTES).getLong();
+    }
+
+    /**
+     * Gets a little-endian view of a region of the file. Regions that span two
+     * mapped segments are copied.
+     */
+    private ByteBuffer slice(long position, int length) throws IOException {
+        int segment = (int) (position / SEGMENT_SIZE);
+        int offset = (int) (position % SEGMENT_SIZE);
+        if (segment < segments.length && offset + length <= segments[segment].capacity()) {
+            ByteBuffer result = segments[segment].duplicate();
+            result.position(offset).limit(offset + length);
+            return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer result = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, result, position);
+        result.flip();
+        return result;
+    }
+
+    private static ByteBuffer newHeader(long count, long indexPosition) {
+        ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        result.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(indexPosition);
+        result.flip();
+        return result;
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of store");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static int sizeOfHeader(TsCollectionInformation col) {
+        return sizeOfString(col.name) + sizeOfMoniker(col.moniker) + sizeOfMetaData(col.metaData) + sizeOfString(col.invalidDataCause);
+    }
+
+    private static void writeHeader(ByteBuffer buffer, TsCollectionInformation col) {
+        writeString(buffer, col.name);
+        writeMoniker(buffer, col.moniker);
+        writeMetaData(buffer, col.metaData);
+        writeString(buffer, col.invalidDataCause);
+    }
+
+    private static TsCollectionInformation readHeader(ByteBuffer buffer) {
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = readString(buffer);
+        result.moniker = readMoniker(buffer);
+        result.metaData = readMetaData(buffer);
+        result.invalidDataCause = readString(buffer);
+        result.type = TsInformationType.All;
+        return result;
+    }
+
+    private static int sizeOfTs(TsInformation ts) {
+        int data = ts.data != null ? 1 + 3 * Integer.BYTES + ts.data.getLength() * Double.BYTES : 1;
+        return sizeOfString(ts.name) + sizeOfMoniker(ts.moniker) + sizeOfMetaData(ts.metaData) + sizeOfString(ts.invalidDataCause) + data;
+    }
+
+    private static void writeTs(ByteBuffer buffer, TsInformation ts) {
+        writeString(buffer, ts.name);
+        writeMoniker(buffer, ts.moniker);
+        writeMetaData(buffer, ts.metaData);
+        writeString(buffer, ts.invalidDataCause);
+        if (ts.data == null) {
+            buffer.put(NO_DATA);
+            return;
+        }
+        TsPeriod start = ts.data.getStart();
+        double[] values = ts.data.getValues().internalStorage();
+        buffer.put((byte) start.getFrequency().intValue());
+        buffer.putInt(start.getYear());
+        buffer.putInt(start.getPosition());
+        buffer.putInt(values.length);
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+    private static TsInformation readTs(ByteBuffer buffer) {
+        TsInformation result = new TsInformation();
+        result.name = readString(buffer);
+        result.moniker = readMoniker(buffer);
+        result.metaData = readMetaData(buffer);
+        result.invalidDataCause = readString(buffer);
+        byte freq = buffer.get();
+        if (freq != NO_DATA) {
+            int year = buffer.getInt();
+            int position = buffer.getInt();
+            double[] values = new double[buffer.getInt()];
+            buffer.asDoubleBuffer().get(values);
+            result.data = new TsData(TsFrequency.valueOf(freq), year, position, values, false);
+        }
+        result.type = TsInformationType.All;
+        return result;
+    }
+
+    private static int sizeOfMoniker(TsMoniker moniker) {
+        return sizeOfString(moniker != null ? moniker.getSource() : null) + sizeOfString(moniker != null ? moniker.getId() : null);
+    }
+
+    private static void writeMoniker(ByteBuffer buffer, TsMoniker moniker) {
+        writeString(buffer, moniker != null ? moniker.getSource() : null);
+        writeString(buffer, moniker != null ? moniker.getId() : null);
+    }
+
+    private static TsMoniker readMoniker(ByteBuffer buffer) {
+        String source = readString(buffer);
+        String id = readString(buffer);
+        return source == null && id == null ? new TsMoniker() : new TsMoniker(source, id);
+    }
+
+    private static int sizeOfMetaData(MetaData metaData) {
+        int result = Integer.BYTES;
+        if (metaData != null) {
+            for (Map.Entry<String, String> o : metaData.entrySet()) {
+                result += sizeOfString(o.getKey()) + sizeOfString(o.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static void writeMetaData(ByteBuffer buffer, MetaData metaData) {
+        if (metaData == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(metaData.size());
+        for (Map.Entry<String, String> o : metaData.entrySet()) {
+            writeString(buffer, o.getKey());
+            writeString(buffer, o.getValue());
+        }
+    }
+
+    private static MetaData readMetaData(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+        MetaData result = new MetaData();
+        for (int i = 0; i < size; i++) {
+            result.put(readString(buffer), readString(buffer));
+        }
+        return result;
+    }
+
+    private static int sizeOfString(String value) {
+        return Integer.BYTES + (value != null ? value.getBytes(UTF_8).length : 0);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length != NULL_LENGTH) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private final class ListView extends AbstractList<TsInformation> implements RandomAccess {
+
+        @Override
+        public TsInformation get(int index) {
+            return TsStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+    //</editor-fold>
+}
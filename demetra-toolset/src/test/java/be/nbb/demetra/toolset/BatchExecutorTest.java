@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class BatchExecutorTest {
+
+    @Test
+    public void testTimeoutStopsItem() {
+        BatchExecutor executor = newExecutor(1, 50);
+        AtomicInteger steps = new AtomicInteger();
+        Function<Integer, String> processor = executor.withTimeout(o -> {
+            if (o == 0) {
+                return "done";
+            }
+            // never ends unless its budget stops it
+            while (true) {
+                steps.incrementAndGet();
+                sleep(1);
+                BatchExecutor.checkDeadline();
+            }
+        }, (o, cause) -> cause);
+
+        long start = System.nanoTime();
+        assertThat(processor.apply(1)).isEqualTo("Timed out after 50ms");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+        assertThat(steps.get()).isGreaterThan(0);
+
+        int count = steps.get();
+        sleep(20);
+        // nothing is left running after the fallback
+        assertThat(steps.get()).isEqualTo(count);
+        assertThat(processor.apply(0)).isEqualTo("done");
+    }
+
+    @Test
+    public void testTimeoutDiscardsLateResult() {
+        BatchExecutor executor = newExecutor(1, 20);
+        Function<Integer, String> processor = executor.withTimeout(o -> {
+            // a single step that cannot be stopped
+            sleep(60);
+            BatchExecutor.checkDeadline();
+            return "late";
+        }, (o, cause) -> "fallback");
+        assertThat(processor.apply(0)).isEqualTo("fallback");
+    }
+
+    @Test
+    public void testNoTimeout() {
+        BatchExecutor executor = newExecutor(1, 0);
+        Function<Integer, String> processor = executor.withTimeout(o -> {
+            sleep(20);
+            BatchExecutor.checkDeadline();
+            return "done";
+        }, (o, cause) -> "fallback");
+        assertThat(processor.apply(0)).isEqualTo("done");
+        // outside of a budget, checking does nothing
+        BatchExecutor.checkDeadline();
+    }
+
+    @Test
+    public void testMapByCostKeepsOrder() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchExecutor executor = new BatchExecutor(pool, 4, 1, true, 0, null);
+            List<Integer> input = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+            List<Integer> result = executor.mapByCost(input, i -> (i * 37) % 100, o -> {
+                sleep(o % 3);
+                return o * 2;
+            }, null);
+            assertThat(result).isEqualTo(input.stream().map(o -> o * 2).collect(Collectors.toList()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapByCostStartsLongestFirst() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            // a single worker takes the items in dispatch order
+            BatchExecutor executor = new BatchExecutor(pool, 2, 1, true, 0, null);
+            double[] costs = {3, 10, 1, 7, 5};
+            List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> input = IntStream.range(0, costs.length).boxed().collect(Collectors.toList());
+            List<Integer> result = executor.mapByCost(input, i -> costs[i], o -> {
+                started.add(o);
+                return o;
+            }, null);
+            assertThat(started).containsExactly(1, 3, 4, 0, 2);
+            assertThat(result).isEqualTo(input);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapByCostBoundsThreads() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BatchExecutor executor = new BatchExecutor(pool, 3, 1, true, 0, null);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            Set<Thread> workers = Collections.synchronizedSet(new HashSet<>());
+            AtomicReference<BatchExecutor.Report> report = new AtomicReference<>();
+            List<Integer> input = IntStream.range(0, 30).boxed().collect(Collectors.toList());
+            executor.mapByCost(input, i -> 1, o -> {
+                workers.add(Thread.currentThread());
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                return o;
+            }, report::set);
+            assertThat(peak.get()).isBetween(1, 3);
+            assertThat(workers.size()).isBetween(1, 3);
+            assertThat(workers).doesNotContain(Thread.currentThread());
+            assertThat(report.get().getCount()).isEqualTo(30);
+            assertThat(report.get().getThreads()).isEqualTo(3);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapByCostTimeout() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            BatchExecutor executor = new BatchExecutor(pool, 2, 1, true, 20, null);
+            AtomicReference<BatchExecutor.Report> report = new AtomicReference<>();
+            List<Integer> input = IntStream.range(0, 6).boxed().collect(Collectors.toList());
+            List<String> result = executor.mapByCost(input, i -> i, executor.withTimeout(o -> {
+                if (o % 3 == 0) {
+                    sleep(60);
+                    BatchExecutor.checkDeadline();
+                }
+                return "done " + o;
+            }, (o, cause) -> "fallback " + o), report::set);
+            assertThat(result).containsExactly("fallback 0", "done 1", "done 2", "fallback 3", "done 4", "done 5");
+            assertThat(report.get().getTimeouts()).isEqualTo(2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static BatchExecutor newExecutor(int threads, long timeout) {
+        return new BatchExecutor(ForkJoinPool.commonPool(), threads, 1, true, timeout, null);
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsInformationType;
+import ec.tss.TsMoniker;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class ColumnarTsCollectionTest {
+
+    @Test
+    public void testRoundTrip() {
+        TsCollectionInformation expected = getSample();
+        ColumnarTsCollection actual = ColumnarTsCollection.of(expected);
+
+        assertThat(actual.size()).isEqualTo(expected.items.size());
+        assertThat(actual.getObsCount()).isEqualTo(12 + 8 + 0 + 5);
+        assertHeaderEquals(actual.getHeader(), expected);
+        assertThat(actual.getHeader().items).isEmpty();
+        for (int i = 0; i < expected.items.size(); i++) {
+            assertTsEquals(actual.get(i), expected.items.get(i));
+            assertThat(actual.getName(i)).isEqualTo(expected.items.get(i).name);
+        }
+        assertThat(actual.getLength(1)).isEqualTo(8);
+        assertThat(actual.getFrequency(1)).isEqualTo(4);
+        assertThat(actual.getLength(2)).isEqualTo(0);
+        assertThat(actual.getFrequency(2)).isEqualTo(0);
+        assertThat(actual.getData(2)).isNull();
+
+        TsCollectionInformation copy = actual.toTsCollection();
+        assertHeaderEquals(copy, expected);
+        assertThat(copy.items).hasSize(expected.items.size());
+        for (int i = 0; i < expected.items.size(); i++) {
+            assertTsEquals(copy.items.get(i), expected.items.get(i));
+        }
+    }
+
+    @Test
+    public void testMonikerAndType() {
+        TsCollectionInformation expected = getSample();
+        ColumnarTsCollection actual = ColumnarTsCollection.of(expected);
+
+        assertThat(actual.get(0).moniker).isEqualTo(new TsMoniker("src", "id0"));
+        assertThat(actual.get(1).moniker).isSameAs(expected.items.get(1).moniker);
+        assertThat(actual.get(2).moniker).isNull();
+        assertThat(actual.get(0).type).isEqualTo(TsInformationType.All);
+        assertThat(actual.get(1).type).isEqualTo(TsInformationType.Data);
+        assertThat(actual.get(2).type).isNull();
+    }
+
+    @Test
+    public void testDictionary() {
+        TsCollectionInformation expected = getSample();
+        ColumnarTsCollection actual = ColumnarTsCollection.of(expected);
+
+        MetaData first = actual.get(0).metaData;
+        MetaData last = actual.get(3).metaData;
+        assertThat(first).isEqualTo(last).isNotSameAs(last);
+        assertThat(first.get("unit")).isEqualTo("EUR");
+        assertThat(first.get("EUR")).isEqualTo("unit");
+        assertThat(actual.get(1).metaData).isNull();
+        // empty metadata is not stored
+        assertThat(actual.get(2).metaData).isNull();
+    }
+
+    @Test
+    public void testSlices() {
+        ColumnarTsCollection.Builder builder = ColumnarTsCollection.builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add(newTs("s" + i, new TsMoniker("src", "id" + i), new TsData(TsFrequency.Monthly, 2000, i % 12, values(i % 50, i), false), null));
+        }
+        ColumnarTsCollection actual = builder.build();
+
+        assertThat(actual.size()).isEqualTo(1000);
+        List<TsInformation> list = actual.asList();
+        assertThat(list).hasSize(1000);
+        int obs = 0;
+        for (int i = 0; i < 1000; i++) {
+            TsInformation ts = list.get(i);
+            assertThat(ts.name).isEqualTo("s" + i);
+            assertThat(ts.moniker).isEqualTo(new TsMoniker("src", "id" + i));
+            assertThat(actual.getLength(i)).isEqualTo(i % 50);
+            assertThat(ts.data).isEqualTo(new TsData(TsFrequency.Monthly, 2000, i % 12, values(i % 50, i), false));
+            obs += i % 50;
+        }
+        assertThat(actual.getObsCount()).isEqualTo(obs);
+    }
+
+    @Test
+    public void testCopyOnAccess() {
+        ColumnarTsCollection actual = ColumnarTsCollection.of(getSample());
+        actual.getData(0).getValues().set(0, -1);
+        assertThat(actual.getData(0).getValues().get(0)).isEqualTo(1);
+    }
+
+    private static TsCollectionInformation getSample() {
+        MetaData meta = new MetaData();
+        meta.put("unit", "EUR");
+        meta.put("EUR", "unit");
+
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = "sample";
+        result.moniker = new TsMoniker("src", "col");
+        result.type = TsInformationType.Data;
+        result.items.add(newTs("s0", new TsMoniker("src", "id0"), new TsData(TsFrequency.Monthly, 2000, 3, values(12, 0), false), meta));
+        result.items.add(newTs("s1", new TsMoniker(), new TsData(TsFrequency.Quarterly, 1999, 1, values(8, 100), false), null));
+        result.items.add(newTs(null, null, null, new MetaData()));
+        result.items.add(newTs("s3", new TsMoniker("other", "id3"), new TsData(TsFrequency.Yearly, 2010, 0, values(5, -10), false), meta));
+        result.items.get(0).type = TsInformationType.All;
+        result.items.get(1).type = TsInformationType.Data;
+        result.items.get(2).type = null;
+        result.items.get(2).invalidDataCause = "missing";
+        result.items.get(3).type = TsInformationType.All;
+        return result;
+    }
+
+    private static TsInformation newTs(String name, TsMoniker moniker, TsData data, MetaData metaData) {
+        TsInformation result = new TsInformation();
+        result.name = name;
+        result.moniker = moniker;
+        result.data = data;
+        result.metaData = metaData;
+        return result;
+    }
+
+    private static double[] values(int length, double first) {
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = first + i + 1;
+        }
+        return result;
+    }
+
+    private static void assertHeaderEquals(TsCollectionInformation actual, TsCollectionInformation expected) {
+        assertThat(actual.name).isEqualTo(expected.name);
+        assertThat(actual.moniker).isEqualTo(expected.moniker);
+        assertThat(actual.type).isEqualTo(expected.type);
+    }
+
+    private static void assertTsEquals(TsInformation actual, TsInformation expected) {
+        assertThat(actual.name).isEqualTo(expected.name);
+        assertThat(actual.moniker).isEqualTo(expected.moniker);
+        assertThat(actual.type).isEqualTo(expected.type);
+        assertThat(actual.invalidDataCause).isEqualTo(expected.invalidDataCause);
+        assertThat(actual.data).isEqualTo(expected.data);
+        if (expected.metaData == null || expected.metaData.isEmpty()) {
+            assertThat(actual.metaData).isNull();
+        } else {
+            assertThat(actual.metaData).isEqualTo(expected.metaData);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.BenchmarkingTool.DentonOptions;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DentonBatchTest {
+
+    private final BenchmarkingToolImpl tool = new BenchmarkingToolImpl();
+
+    @Test
+    public void testAdditive() {
+        TsFrequency[][] frequencies = {
+            {TsFrequency.Monthly, TsFrequency.Yearly},
+            {TsFrequency.Quarterly, TsFrequency.Yearly},
+            {TsFrequency.Monthly, TsFrequency.Quarterly}
+        };
+        TsAggregationType[] types = {TsAggregationType.Sum, TsAggregationType.Average, TsAggregationType.First, TsAggregationType.Last};
+        Random random = new Random(0);
+        for (TsFrequency[] o : frequencies) {
+            for (TsAggregationType type : types) {
+                for (boolean modified : new boolean[]{true, false}) {
+                    for (int differencing = 1; differencing <= 2; differencing++) {
+                        DentonOptions options = new DentonOptions(false, modified, differencing, type);
+                        List<TsData> x = new ArrayList<>();
+                        List<TsData> y = new ArrayList<>();
+                        // aligned, shifted and truncated constraints, some of them sharing their shape
+                        for (int i = 0; i < 12; i++) {
+                            x.add(newSeries(random, o[0], 1999, i % 3, 5 * o[0].intValue() + i % 2));
+                            y.add(newSeries(random, o[1], 1997, 0, 10));
+                        }
+                        assertEquivalent(x, y, options, newFallback(options, new AtomicInteger()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharedShapes() {
+        DentonOptions options = new DentonOptions(false, true, 1, TsAggregationType.Sum);
+        Random random = new Random(1);
+        List<TsData> x = new ArrayList<>();
+        List<TsData> y = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            x.add(newSeries(random, TsFrequency.Quarterly, 2000, 0, 40));
+            y.add(newSeries(random, TsFrequency.Yearly, 2000, 0, 10));
+        }
+        AtomicInteger calls = new AtomicInteger();
+        assertEquivalent(x, y, options, newFallback(options, calls));
+        assertThat(calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testMultiplicative() {
+        Random random = new Random(2);
+        for (boolean modified : new boolean[]{true, false}) {
+            DentonOptions options = new DentonOptions(true, modified, 1, TsAggregationType.Sum);
+            List<TsData> x = new ArrayList<>();
+            List<TsData> y = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                x.add(newSeries(random, TsFrequency.Monthly, 2000, i, 48));
+                y.add(newSeries(random, TsFrequency.Yearly, 2000, 0, 5));
+            }
+            AtomicInteger calls = new AtomicInteger();
+            assertEquivalent(x, y, options, newFallback(options, calls));
+            assertThat(calls.get()).isEqualTo(x.size());
+        }
+    }
+
+    @Test
+    public void testFallback() {
+        DentonOptions options = new DentonOptions(false, true, 1, TsAggregationType.Sum);
+        Random random = new Random(3);
+        TsData missing = newSeries(random, TsFrequency.Quarterly, 2000, 0, 20);
+        missing.getValues().set(3, Double.NaN);
+        List<TsData> x = new ArrayList<>();
+        List<TsData> y = new ArrayList<>();
+        x.add(newSeries(random, TsFrequency.Monthly, 1950, 0, DentonBatch.MAX_LENGTH + 12));
+        y.add(newSeries(random, TsFrequency.Yearly, 1950, 0, 60));
+        x.add(missing);
+        y.add(newSeries(random, TsFrequency.Yearly, 2000, 0, 5));
+        x.add(newSeries(random, TsFrequency.Quarterly, 2000, 0, 20));
+        y.add(newSeries(random, TsFrequency.Yearly, 2010, 0, 5));
+
+        AtomicInteger calls = new AtomicInteger();
+        List<TsData> actual = new DentonBatch(options, (a, b) -> {
+            calls.incrementAndGet();
+            return a;
+        }).compute(x, y);
+        assertThat(calls.get()).isEqualTo(x.size());
+        for (int i = 0; i < x.size(); i++) {
+            assertThat(actual.get(i)).isSameAs(x.get(i));
+        }
+    }
+
+    @Test
+    public void testNullItems() {
+        DentonOptions options = new DentonOptions(false, true, 1, TsAggregationType.Sum);
+        List<TsData> x = Collections.singletonList(null);
+        List<TsData> y = Collections.singletonList(null);
+        List<TsData> actual = new DentonBatch(options, (a, b) -> null).compute(x, y);
+        assertThat(actual).containsExactly((TsData) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch() {
+        DentonOptions options = new DentonOptions(false, true, 1, TsAggregationType.Sum);
+        Random random = new Random(4);
+        new DentonBatch(options, (a, b) -> null).compute(Collections.singletonList(newSeries(random, TsFrequency.Quarterly, 2000, 0, 8)), Collections.emptyList());
+    }
+
+    private BiFunction<TsData, TsData, TsData> newFallback(DentonOptions options, AtomicInteger calls) {
+        return (a, b) -> {
+            calls.incrementAndGet();
+            return tool.computeDenton(a, b, options);
+        };
+    }
+
+    private void assertEquivalent(List<TsData> x, List<TsData> y, DentonOptions options, BiFunction<TsData, TsData, TsData> fallback) {
+        List<TsData> actual = new DentonBatch(options, fallback).compute(x, y);
+        assertThat(actual).hasSize(x.size());
+        for (int i = 0; i < x.size(); i++) {
+            assertValuesEqual(actual.get(i), tool.computeDenton(x.get(i), y.get(i), options));
+        }
+    }
+
+    private static void assertValuesEqual(TsData actual, TsData expected) {
+        assertThat(actual.getStart()).isEqualTo(expected.getStart());
+        assertThat(actual.getLength()).isEqualTo(expected.getLength());
+        for (int i = 0; i < expected.getLength(); i++) {
+            assertThat(actual.get(i)).isCloseTo(expected.get(i), within(1e-6 * Math.max(1, Math.abs(expected.get(i)))));
+        }
+    }
+
+    private static TsData newSeries(Random random, TsFrequency freq, int firstYear, int firstPeriod, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = 100 + i + 10 * Math.sin(2 * Math.PI * i / freq.intValue()) + random.nextGaussian();
+        }
+        return new TsData(freq, firstYear, firstPeriod, values, false);
+    }
+}
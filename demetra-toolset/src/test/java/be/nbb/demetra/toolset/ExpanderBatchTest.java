@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.BenchmarkingTool.ExpanderOptions;
+import ec.benchmarking.simplets.TsExpander;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class ExpanderBatchTest {
+
+    @Test
+    public void testSameAsSingle() {
+        BenchmarkingToolImpl tool = new BenchmarkingToolImpl();
+        for (TsAggregationType type : new TsAggregationType[]{TsAggregationType.Sum, TsAggregationType.Average}) {
+            ExpanderOptions options = new ExpanderOptions(false, .9, false, false, TsExpander.Model.I1, 1, type);
+            List<TsData> y = getSample();
+
+            List<TsData> expected = y.stream().map(o -> tool.expand(TsFrequency.Quarterly, o, options)).collect(Collectors.toList());
+            List<TsData> actual = tool.expand(TsFrequency.Quarterly, y, options);
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testDeduplication() {
+        List<TsData> y = getSample();
+        y.add(null);
+        y.add(1, null);
+
+        AtomicInteger calls = new AtomicInteger();
+        Function<TsData, TsData> expander = o -> {
+            calls.incrementAndGet();
+            return o != null ? new TsData(o.getStart(), o.getValues().internalStorage().clone(), false) : null;
+        };
+
+        List<TsData> actual = new ExpanderBatch(expander).expand(y);
+        assertThat(calls.get()).isEqualTo(5);
+        assertThat(actual).isEqualTo(y);
+        // duplicated results are distinct instances
+        for (int i = 0; i < actual.size(); i++) {
+            for (int j = i + 1; j < actual.size(); j++) {
+                if (actual.get(i) != null) {
+                    assertThat(actual.get(i)).isNotSameAs(actual.get(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(new ExpanderBatch(o -> o).expand(new ArrayList<>())).isEmpty();
+    }
+
+    private static List<TsData> getSample() {
+        Random random = new Random(0);
+        TsData first = newSeries(random, 2000, 12);
+        TsData second = newSeries(random, 1995, 8);
+        List<TsData> result = new ArrayList<>();
+        result.add(first);
+        result.add(second);
+        result.add(new TsData(first.getStart(), first.getValues().internalStorage().clone(), false));
+        result.add(newSeries(random, 2000, 12));
+        result.add(first);
+        // same values, other start
+        result.add(new TsData(TsFrequency.Yearly, 1990, 0, second.getValues().internalStorage().clone(), false));
+        result.add(new TsData(second.getStart(), second.getValues().internalStorage().clone(), false));
+        return result;
+    }
+
+    private static TsData newSeries(Random random, int firstYear, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = 100 + 5 * i + 10 * random.nextGaussian();
+        }
+        return new TsData(TsFrequency.Yearly, firstYear, 0, values, false);
+    }
+}
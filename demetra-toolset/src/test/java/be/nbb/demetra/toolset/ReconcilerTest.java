@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.BenchmarkingTool.Reconciliation;
+import be.nbb.demetra.toolset.BenchmarkingTool.ReconciliationOptions;
+import ec.tstoolkit.timeseries.TsAggregationType;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class ReconcilerTest {
+
+    @Test
+    public void testDirectSolve() {
+        TsAggregationType[] types = {TsAggregationType.Sum, TsAggregationType.Average, TsAggregationType.First, TsAggregationType.Last};
+        Random random = new Random(0);
+        for (TsAggregationType type : types) {
+            for (boolean modified : new boolean[]{true, false}) {
+                for (int differencing = 1; differencing <= 2; differencing++) {
+                    ReconciliationOptions options = new ReconciliationOptions(false, modified, differencing, type, 1e-12, 1000);
+                    List<TsData> truth = new ArrayList<>();
+                    List<TsData> x = new ArrayList<>();
+                    List<TsData> y = new ArrayList<>();
+                    for (int i = 0; i < 3; i++) {
+                        truth.add(newSeries(random, TsFrequency.Quarterly, 12));
+                        x.add(perturb(random, truth.get(i), 0));
+                        y.add(aggregate(truth.get(i), type));
+                    }
+                    TsData total = sum(truth);
+
+                    Reconciliation actual = new Reconciler(options).reconcile(x, y, total);
+                    List<double[]> expected = solveDirect(x, y, total, options);
+                    for (int i = 0; i < x.size(); i++) {
+                        assertValuesEqual(actual.getSeries().get(i), expected.get(i), 1e-6);
+                    }
+                    assertValuesEqual(actual.getTotal(), total.getValues().internalStorage(), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAddsUp() {
+        Random random = new Random(1);
+        for (boolean multiplicative : new boolean[]{false, true}) {
+            ReconciliationOptions options = new ReconciliationOptions(multiplicative, true, 1, TsAggregationType.Sum, 1e-10, 1000);
+            List<TsData> x = new ArrayList<>();
+            List<TsData> y = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                TsData truth = newSeries(random, TsFrequency.Monthly, 60);
+                x.add(perturb(random, truth, i));
+                // some series without constraints
+                y.add(i % 10 == 9 ? null : aggregate(truth, TsAggregationType.Sum));
+            }
+            // a total that is not consistent with the constraints
+            TsData total = perturb(random, sum(x), 0);
+
+            Reconciliation actual = new Reconciler(options).reconcile(x, y, total);
+            assertThat(actual.getSeries()).hasSize(x.size());
+            double[] target = actual.getTotal().getValues().internalStorage();
+            double discrepancy = getDiscrepancy(actual.getSeries(), target);
+            assertThat(actual.getResidual()).isCloseTo(discrepancy, within(1e-12 * norm(target)));
+            assertThat(discrepancy).isLessThanOrEqualTo(1e-6 * norm(target));
+            for (int i = 0; i < x.size(); i++) {
+                if (y.get(i) != null) {
+                    assertValuesEqual(aggregate(actual.getSeries().get(i), TsAggregationType.Sum), y.get(i).getValues().internalStorage(), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutTotal() {
+        Random random = new Random(2);
+        ReconciliationOptions options = new ReconciliationOptions(false, true, 1, TsAggregationType.Average, 1e-10, 1000);
+        List<TsData> x = new ArrayList<>();
+        List<TsData> y = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            TsData truth = newSeries(random, TsFrequency.Quarterly, 20);
+            x.add(perturb(random, truth, i));
+            y.add(aggregate(truth, TsAggregationType.Average));
+        }
+
+        Reconciliation actual = new Reconciler(options).reconcile(x, y, null);
+        double[] target = actual.getTotal().getValues().internalStorage();
+        assertThat(actual.getResidual()).isCloseTo(getDiscrepancy(actual.getSeries(), target), within(1e-12 * norm(target)));
+        assertThat(actual.getResidual()).isLessThanOrEqualTo(1e-6 * norm(target));
+        assertValuesEqual(aggregate(actual.getTotal(), TsAggregationType.Average), sum(y).getValues().internalStorage(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        ReconciliationOptions options = new ReconciliationOptions(false, true, 1, TsAggregationType.Sum, 1e-10, 1000);
+        new Reconciler(options).reconcile(Collections.emptyList(), Collections.emptyList(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDomainMismatch() {
+        ReconciliationOptions options = new ReconciliationOptions(false, true, 1, TsAggregationType.Sum, 1e-10, 1000);
+        Random random = new Random(3);
+        List<TsData> x = new ArrayList<>();
+        x.add(newSeries(random, TsFrequency.Quarterly, 12));
+        x.add(newSeries(random, TsFrequency.Quarterly, 16));
+        new Reconciler(options).reconcile(x, Collections.nCopies(2, (TsData) null), null);
+    }
+
+    private static TsData newSeries(Random random, TsFrequency freq, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = 100 + i + 10 * Math.sin(2 * Math.PI * i / freq.intValue()) + random.nextGaussian();
+        }
+        return new TsData(freq, 2000, 0, values, false);
+    }
+
+    private static TsData perturb(Random random, TsData data, int seed) {
+        double[] values = data.getValues().internalStorage().clone();
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= 1 + 0.05 * Math.sin(seed + i) + 0.01 * random.nextGaussian();
+        }
+        return new TsData(data.getStart(), values, false);
+    }
+
+    private static TsData sum(List<TsData> series) {
+        double[] values = new double[series.get(0).getLength()];
+        for (TsData o : series) {
+            for (int t = 0; t < values.length; t++) {
+                values[t] += o.get(t);
+            }
+        }
+        return new TsData(series.get(0).getStart(), values, false);
+    }
+
+    private static TsData aggregate(TsData data, TsAggregationType type) {
+        int ratio = data.getFrequency().intValue();
+        double[] values = new double[data.getLength() / ratio];
+        for (int j = 0; j < values.length; j++) {
+            for (int k = 0; k < ratio; k++) {
+                values[j] += weight(k, ratio, type) * data.get(j * ratio + k);
+            }
+        }
+        return new TsData(TsFrequency.Yearly, data.getStart().getYear(), 0, values, false);
+    }
+
+    private static double weight(int k, int ratio, TsAggregationType type) {
+        switch (type) {
+            case First:
+                return k == 0 ? 1 : 0;
+            case Last:
+                return k == ratio - 1 ? 1 : 0;
+            case Average:
+                return 1.0 / ratio;
+            default:
+                return 1;
+        }
+    }
+
+    private static double getDiscrepancy(List<TsData> series, double[] target) {
+        double result = 0;
+        for (int t = 0; t < target.length; t++) {
+            double sum = 0;
+            for (TsData o : series) {
+                sum += o.get(t);
+            }
+            result = Math.max(result, Math.abs(sum - target[t]));
+        }
+        return result;
+    }
+
+    private static double norm(double[] values) {
+        double result = 0;
+        for (double o : values) {
+            result = Math.max(result, Math.abs(o));
+        }
+        return result;
+    }
+
+    /**
+     * Solves the additive problem as a single KKT system: the corrections of
+     * all the series minimize the sum of their squared differences subject to
+     * the temporal constraints and to the total. The temporal constraints of
+     * the last series are implied by the others and are left out.
+     */
+    private static List<double[]> solveDirect(List<TsData> x, List<TsData> y, TsData total, ReconciliationOptions options) {
+        int k = x.size();
+        int n = total.getLength();
+        int ratio = x.get(0).getFrequency().intValue() / y.get(0).getFrequency().intValue();
+        int m = n / ratio;
+        int d = options.getDifferencing();
+        double[] coefficients = new double[d + 1];
+        for (int l = 0; l <= d; l++) {
+            coefficients[l] = (l % 2 == 0 ? 1 : -1) * binomial(d, l);
+        }
+        int size = k * n + (k - 1) * m + n;
+        double[][] a = new double[size][size + 1];
+        for (int i = 0; i < k; i++) {
+            for (int t = options.isModified() ? d : 0; t < n; t++) {
+                for (int p = 0; p <= d && p <= t; p++) {
+                    for (int q = 0; q <= d && q <= t; q++) {
+                        a[i * n + t - p][i * n + t - q] += coefficients[p] * coefficients[q];
+                    }
+                }
+            }
+        }
+        int row = k * n;
+        for (int i = 0; i < k - 1; i++) {
+            double[] values = x.get(i).getValues().internalStorage();
+            for (int j = 0; j < m; j++, row++) {
+                double rhs = y.get(i).get(j);
+                for (int l = 0; l < ratio; l++) {
+                    double w = weight(l, ratio, options.getAggregationType());
+                    a[row][i * n + j * ratio + l] = w;
+                    a[i * n + j * ratio + l][row] = w;
+                    rhs -= w * values[j * ratio + l];
+                }
+                a[row][size] = rhs;
+            }
+        }
+        for (int t = 0; t < n; t++, row++) {
+            double rhs = total.get(t);
+            for (int i = 0; i < k; i++) {
+                a[row][i * n + t] = 1;
+                a[i * n + t][row] = 1;
+                rhs -= x.get(i).get(t);
+            }
+            a[row][size] = rhs;
+        }
+        double[] solution = solve(a);
+        List<double[]> result = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            double[] values = x.get(i).getValues().internalStorage().clone();
+            for (int t = 0; t < n; t++) {
+                values[t] += solution[i * n + t];
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    private static double binomial(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    private static double[] solve(double[][] a) {
+        int size = a.length;
+        for (int p = 0; p < size; p++) {
+            int pivot = p;
+            for (int i = p + 1; i < size; i++) {
+                if (Math.abs(a[i][p]) > Math.abs(a[pivot][p])) {
+                    pivot = i;
+                }
+            }
+            double[] tmp = a[p];
+            a[p] = a[pivot];
+            a[pivot] = tmp;
+            for (int i = p + 1; i < size; i++) {
+                double factor = a[i][p] / a[p][p];
+                for (int c = p; c <= size; c++) {
+                    a[i][c] -= factor * a[p][c];
+                }
+            }
+        }
+        double[] result = new double[size];
+        for (int p = size - 1; p >= 0; p--) {
+            double sum = a[p][size];
+            for (int c = p + 1; c < size; c++) {
+                sum -= a[p][c] * result[c];
+            }
+            result[p] = sum / a[p][p];
+        }
+        return result;
+    }
+
+    private static void assertValuesEqual(TsData actual, double[] expected, double tolerance) {
+        assertThat(actual.getLength()).isEqualTo(expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual.get(i)).isCloseTo(expected[i], within(tolerance * Math.max(1, Math.abs(expected[i]))));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import be.nbb.demetra.toolset.SaTool.Options;
+import be.nbb.demetra.toolset.SaTool.RefreshPolicy;
+import be.nbb.demetra.toolset.SaTool.SaModel;
+import be.nbb.demetra.toolset.SaTool.SaTs;
+import be.nbb.demetra.toolset.SaTool.SaTsCollection;
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.util.Arrays;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class SaToolTest {
+
+    private static final Options OPTIONS = new Options("tramoseats", "RSAfull", Arrays.asList("sa", "t"));
+
+    @Test
+    public void testFingerprint() {
+        SaToolImpl tool = new SaToolImpl();
+        String fingerprint = tool.create(newTs("s0", newSeries(0)), OPTIONS).getFingerprint();
+        assertThat(fingerprint).isNotNull();
+
+        // the name is not part of the input
+        assertThat(tool.create(newTs("other", newSeries(0)), OPTIONS).getFingerprint()).isEqualTo(fingerprint);
+
+        assertThat(tool.create(newTs("s0", withLastValue(newSeries(0), 1.01)), OPTIONS).getFingerprint()).isNotEqualTo(fingerprint);
+        TsData data = newSeries(0);
+        assertThat(tool.create(newTs("s0", new TsData(TsFrequency.Monthly, 2001, 0, data.getValues().internalStorage(), false)), OPTIONS).getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(tool.create(newTs("s0", newSeries(0)), new Options("tramoseats", "RSA5", OPTIONS.getItems())).getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(tool.create(newTs("s0", newSeries(0)), new Options("tramoseats", "RSAfull", Arrays.asList("sa"))).getFingerprint()).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void testReuse() {
+        SaToolImpl tool = new SaToolImpl();
+        TsCollectionInformation input = newCollection(3);
+        SaTsCollection previous = tool.create(input, OPTIONS);
+
+        SaTsCollection unchanged = tool.create(input, OPTIONS, previous, RefreshPolicy.full);
+        for (int i = 0; i < 3; i++) {
+            assertThat(unchanged.getItems().get(i).getData()).isSameAs(previous.getItems().get(i).getData());
+            assertThat(unchanged.getItems().get(i).getFingerprint()).isEqualTo(previous.getItems().get(i).getFingerprint());
+        }
+
+        input.items.get(1).data = withLastValue(input.items.get(1).data, 1.01);
+        SaTsCollection changed = tool.create(input, OPTIONS, previous, RefreshPolicy.full);
+        assertThat(changed.getItems().get(0).getData()).isSameAs(previous.getItems().get(0).getData());
+        assertThat(changed.getItems().get(1).getData()).isNotSameAs(previous.getItems().get(1).getData());
+        assertThat(changed.getItems().get(1).getFingerprint()).isEqualTo(tool.create(input.items.get(1), OPTIONS).getFingerprint());
+        assertThat(changed.getItems().get(2).getData()).isSameAs(previous.getItems().get(2).getData());
+
+        Options other = new Options("tramoseats", "RSA5", OPTIONS.getItems());
+        SaTsCollection respecified = tool.create(input, other, previous, RefreshPolicy.full);
+        for (int i = 0; i < 3; i++) {
+            assertThat(respecified.getItems().get(i).getData()).isNotSameAs(previous.getItems().get(i).getData());
+            assertThat(respecified.getItems().get(i).getSpec()).isEqualTo("RSA5");
+        }
+    }
+
+    @Test
+    public void testRefreshPolicies() {
+        SaToolImpl tool = new SaToolImpl();
+        TsCollectionInformation input = newCollection(1);
+        SaTsCollection previous = tool.create(input, OPTIONS);
+        SaModel old = previous.getItems().get(0).getModel();
+        assertThat(old).isNotNull();
+        assertThat(old.getOutliers()).isNotEmpty();
+
+        input.items.get(0).data = withLastValue(input.items.get(0).data, 1.01);
+        for (RefreshPolicy policy : new RefreshPolicy[]{RefreshPolicy.outliers, RefreshPolicy.params, RefreshPolicy.fixed}) {
+            SaTs item = tool.create(input, OPTIONS, previous, policy).getItems().get(0);
+            assertThat(item.getInvalidDataCause()).isNull();
+            // depends on the previous output
+            assertThat(item.getFingerprint()).isNull();
+
+            SaModel model = item.getModel();
+            assertThat(model.isLog()).isEqualTo(old.isLog());
+            assertThat(model.isMean()).isEqualTo(old.isMean());
+            assertThat(new int[]{model.getP(), model.getD(), model.getQ(), model.getBp(), model.getBd(), model.getBq()})
+                    .containsExactly(old.getP(), old.getD(), old.getQ(), old.getBp(), old.getBd(), old.getBq());
+            assertThat(model.isTradingDays()).isEqualTo(old.isTradingDays());
+            assertThat(model.isEaster()).isEqualTo(old.isEaster());
+            if (policy != RefreshPolicy.outliers) {
+                assertThat(model.getOutliers()).containsAll(old.getOutliers());
+            }
+            if (policy == RefreshPolicy.fixed) {
+                assertThat(model.getParameters()).hasSameSizeAs(old.getParameters());
+                for (int i = 0; i < old.getParameters().length; i++) {
+                    assertThat(model.getParameters()[i]).isCloseTo(old.getParameters()[i], within(1e-9));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRefreshWithoutParameters() {
+        SaToolImpl tool = new SaToolImpl();
+        TsCollectionInformation input = newCollection(1);
+        SaTsCollection previous = tool.create(input, OPTIONS);
+        SaModel old = previous.getItems().get(0).getModel();
+        assertThat(old.getP() + old.getBp() + old.getQ() + old.getBq()).isPositive();
+        // as read from an output whose parameters are missing
+        previous.getItems().get(0).setModel(new SaModel(old.isLog(), old.isMean(), old.getP(), old.getD(), old.getQ(), old.getBp(), old.getBd(), old.getBq(),
+                new double[0], old.getOutliers(), old.isTradingDays(), old.isEaster()));
+
+        input.items.get(0).data = withLastValue(input.items.get(0).data, 1.01);
+        SaTs item = tool.create(input, OPTIONS, previous, RefreshPolicy.fixed).getItems().get(0);
+        assertThat(item.getInvalidDataCause()).isNull();
+        // fully processed
+        assertThat(item.getFingerprint()).isEqualTo(tool.create(input.items.get(0), OPTIONS).getFingerprint());
+    }
+
+    private static TsCollectionInformation newCollection(int size) {
+        TsCollectionInformation result = new TsCollectionInformation();
+        for (int i = 0; i < size; i++) {
+            result.items.add(newTs("s" + i, newSeries(i)));
+        }
+        return result;
+    }
+
+    private static TsInformation newTs(String name, TsData data) {
+        TsInformation result = new TsInformation();
+        result.name = name;
+        result.data = data;
+        return result;
+    }
+
+    /**
+     * Trend, seasonality and noise, with an additive outlier in the middle.
+     */
+    private static TsData newSeries(int seed) {
+        Random random = new Random(seed);
+        double[] values = new double[144];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + 0.5 * i + 10 * Math.sin(2 * Math.PI * i / 12) + random.nextGaussian();
+        }
+        values[70] += 40;
+        return new TsData(TsFrequency.Monthly, 2000, 0, values, false);
+    }
+
+    private static TsData withLastValue(TsData data, double factor) {
+        double[] values = data.getValues().internalStorage().clone();
+        values[values.length - 1] *= factor;
+        return new TsData(data.getStart(), values, false);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package be.nbb.demetra.toolset;
+
+import ec.tss.TsCollectionInformation;
+import ec.tss.TsInformation;
+import ec.tss.TsMoniker;
+import ec.tstoolkit.MetaData;
+import ec.tstoolkit.timeseries.simplets.TsData;
+import ec.tstoolkit.timeseries.simplets.TsFrequency;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class TsStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("sample.dts");
+        TsCollectionInformation expected = getSample();
+        write(file, expected);
+
+        try (TsStore store = TsStore.open(file)) {
+            TsCollectionInformation header = store.getHeader();
+            assertThat(header.name).isEqualTo(expected.name);
+            assertThat(header.moniker).isEqualTo(expected.moniker);
+            assertThat(header.metaData).isEqualTo(expected.metaData);
+            assertThat(header.items).isEmpty();
+
+            assertThat(store.size()).isEqualTo(expected.items.size());
+            List<TsInformation> list = store.asList();
+            assertThat(list).hasSize(expected.items.size());
+            for (int i = 0; i < expected.items.size(); i++) {
+                assertTsEquals(store.get(i), expected.items.get(i));
+                assertTsEquals(list.get(i), expected.items.get(i));
+            }
+            assertThat(store.getLength(0)).isEqualTo(12);
+            assertThat(store.getFrequency(0)).isEqualTo(12);
+            assertThat(store.getLength(1)).isEqualTo(3);
+            assertThat(store.getFrequency(1)).isEqualTo(1);
+            assertThat(store.getLength(2)).isEqualTo(0);
+            assertThat(store.getFrequency(2)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testMany() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("many.dts");
+        int count = 20000;
+        try (TsStore.Writer writer = TsStore.create(file, new TsCollectionInformation())) {
+            for (int i = 0; i < count; i++) {
+                writer.add(newTs("s" + i, new TsMoniker("src", "id" + i), new TsData(TsFrequency.Quarterly, 1990, i % 4, values(i % 40, i), false), null));
+            }
+            writer.commit();
+        }
+
+        try (TsStore store = TsStore.open(file)) {
+            assertThat(store.size()).isEqualTo(count);
+            for (int i = 0; i < count; i += 997) {
+                TsInformation ts = store.get(i);
+                assertThat(ts.name).isEqualTo("s" + i);
+                assertThat(ts.moniker).isEqualTo(new TsMoniker("src", "id" + i));
+                assertThat(ts.data).isEqualTo(new TsData(TsFrequency.Quarterly, 1990, i % 4, values(i % 40, i), false));
+                assertThat(store.getLength(i)).isEqualTo(i % 40);
+                assertThat(store.getFrequency(i)).isEqualTo(4);
+            }
+            assertThat(store.get(count - 1).name).isEqualTo("s" + (count - 1));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("empty.dts");
+        write(file, new TsCollectionInformation());
+
+        try (TsStore store = TsStore.open(file)) {
+            assertThat(store.size()).isEqualTo(0);
+            assertThat(store.asList()).isEmpty();
+        }
+    }
+
+    @Test
+    public void testUncommitted() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("failed.dts");
+        try (TsStore.Writer writer = TsStore.create(file, new TsCollectionInformation())) {
+            writer.add(getSample().items.get(0));
+            throw new IOException("input failure");
+        } catch (IOException ex) {
+            assertThat(ex).hasMessage("input failure");
+        }
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        Path file = folder.newFile("invalid.dts").toPath();
+        Files.write(file, new byte[64]);
+        try {
+            TsStore.open(file).close();
+            fail("Expected an IOException");
+        } catch (IOException ex) {
+            assertThat(ex).hasMessageContaining("Not a time series store");
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("bounds.dts");
+        write(file, getSample());
+        try (TsStore store = TsStore.open(file)) {
+            store.get(store.size());
+        }
+    }
+
+    private static void write(Path file, TsCollectionInformation col) throws IOException {
+        try (TsStore.Writer writer = TsStore.create(file, col)) {
+            for (TsInformation o : col.items) {
+                writer.add(o);
+            }
+            writer.commit();
+        }
+    }
+
+    private static TsCollectionInformation getSample() {
+        MetaData meta = new MetaData();
+        meta.put("unit", "EUR");
+        meta.put("note", "été");
+
+        TsCollectionInformation result = new TsCollectionInformation();
+        result.name = "sample";
+        result.moniker = new TsMoniker("src", "col");
+        result.metaData = meta;
+        result.items.add(newTs("s0", new TsMoniker("src", "id0"), new TsData(TsFrequency.Monthly, 2000, 3, values(12, 0), false), meta));
+        result.items.add(newTs("s1", new TsMoniker(), new TsData(TsFrequency.Yearly, 1999, 0, new double[]{1, Double.NaN, 3}, false), null));
+        result.items.add(newTs(null, new TsMoniker("src", "id2"), null, new MetaData()));
+        result.items.get(2).invalidDataCause = "missing";
+        return result;
+    }
+
+    private static TsInformation newTs(String name, TsMoniker moniker, TsData data, MetaData metaData) {
+        TsInformation result = new TsInformation();
+        result.name = name;
+        result.moniker = moniker;
+        result.data = data;
+        result.metaData = metaData;
+        return result;
+    }
+
+    private static double[] values(int length, double first) {
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = first + i + 1;
+        }
+        return result;
+    }
+
+    private static void assertTsEquals(TsInformation actual, TsInformation expected) {
+        assertThat(actual.name).isEqualTo(expected.name);
+        assertThat(actual.moniker.getSource()).isEqualTo(expected.moniker.getSource());
+        assertThat(actual.moniker.getId()).isEqualTo(expected.moniker.getId());
+        assertThat(actual.metaData).isEqualTo(expected.metaData);
+        assertThat(actual.invalidDataCause).isEqualTo(expected.invalidDataCause);
+        if (expected.data == null) {
+            assertThat(actual.data).isNull();
+        } else {
+            assertThat(actual.data.getStart()).isEqualTo(expected.data.getStart());
+            assertThat(actual.data.getValues().internalStorage()).isEqualTo(expected.data.getValues().internalStorage());
+        }
+    }
+}